@@ -0,0 +1,14 @@
+#!/bin/sh
+
+# Start the embedded server jar, with its AppCDS archive when one was built
+# (mvn -Pembedded,appcds package). The archive only matches the jar and JDK it was
+# trained with; a stale one is reported and skipped rather than failing startup.
+APP_JAR="${APP_JAR:-target/ROOT-embedded.jar}"
+CDS_ARCHIVE="${CDS_ARCHIVE:-target/appcds/app.jsa}"
+
+CDS_OPTS=""
+if [ -f "$CDS_ARCHIVE" ]; then
+    CDS_OPTS="-XX:SharedArchiveFile=$CDS_ARCHIVE -Xshare:auto"
+fi
+
+exec java $CDS_OPTS $JAVA_OPTS -jar "$APP_JAR" "$@"
@@ -4,4 +4,15 @@
 set -e
 
 # Install requirements, and Start the server
+# "./run.sh embedded" builds and starts the runnable jar instead (see README);
+# APPCDS=true adds the experimental AppCDS training run and starts it through launch.sh
+if [ "$1" = "embedded" ]; then
+    if [ "${APPCDS:-false}" = "true" ]; then
+        mvn clean package -Pembedded,appcds
+        exec ./launch.sh
+    fi
+    mvn clean package -Pembedded
+    exec java $JAVA_OPTS -jar target/ROOT-embedded.jar
+fi
+
 mvn clean package cargo:run
@@ -0,0 +1,221 @@
+package com.globalpayments.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Builds the AppCDS archive and startup report for the runnable jar ("appcds" Maven profile)
+ *
+ *   java -cp target/ROOT-embedded.jar com.globalpayments.example.CdsArchiveBuilder target/appcds
+ *
+ * Runs StartupTraining once with -XX:ArchiveClassesAtExit to dump app.jsa, then starts the
+ * server CDS_REPORT_RUNS times without and with the archive and writes the median times to
+ * startup-report.txt. Every run is a separate JVM with this JVM's java binary, options and
+ * jar, because the archive is only used by that JDK build with that exact jar; launch.sh
+ * starts the server the same way. Runs listen on an ephemeral loopback port with placeholder
+ * credentials and a scratch data directory that is deleted afterwards, so no gateway call is
+ * made and no training data is left next to the archive.
+ */
+public final class CdsArchiveBuilder {
+
+    public static final String ARCHIVE_FILE = "app.jsa";
+    public static final String REPORT_FILE = "startup-report.txt";
+
+    private final Path outputDir;
+    private final Path workDir;
+    private final Path archive;
+    private final long timeoutSeconds;
+
+    /**
+     * Parsed timing line of one run
+     */
+    private static final class Timing {
+        final long readyMillis;
+        final long firstRequestMillis;
+        final long loadedClasses;
+
+        Timing(long readyMillis, long firstRequestMillis, long loadedClasses) {
+            this.readyMillis = readyMillis;
+            this.firstRequestMillis = firstRequestMillis;
+            this.loadedClasses = loadedClasses;
+        }
+    }
+
+    private CdsArchiveBuilder(Path outputDir, long timeoutSeconds) {
+        this.outputDir = outputDir.toAbsolutePath();
+        this.workDir = this.outputDir.resolve("work");
+        this.archive = this.outputDir.resolve(ARCHIVE_FILE);
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        AppConfig config = AppConfig.get();
+        CdsArchiveBuilder builder = new CdsArchiveBuilder(Paths.get(args.length > 0 ? args[0] : "target/appcds"),
+                config.getLong("CDS_RUN_TIMEOUT_SECONDS", 120));
+        builder.build(Math.max(1, config.getInt("CDS_TRAINING_ROUNDS", 3)), Math.max(1, config.getInt("CDS_REPORT_RUNS", 3)));
+    }
+
+    private void build(int trainingRounds, int reportRuns) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        Files.deleteIfExists(archive);
+        deleteWorkDir();
+
+        long start = System.nanoTime();
+        run("training", List.of("-XX:ArchiveClassesAtExit=" + archive), "train", trainingRounds);
+        long trainingMillis = (System.nanoTime() - start) / 1_000_000L;
+        if (!Files.isRegularFile(archive)) {
+            throw new IllegalStateException("Training run did not write " + archive + ", see training.log");
+        }
+
+        List<Timing> baseline = new ArrayList<>();
+        List<Timing> shared = new ArrayList<>();
+        for (int i = 1; i <= reportRuns; i++) {
+            baseline.add(run("baseline-" + i, List.of(), "probe", trainingRounds));
+            // -Xshare:on fails the run instead of silently starting without the archive
+            shared.add(run("appcds-" + i, List.of("-XX:SharedArchiveFile=" + archive, "-Xshare:on"), "probe", trainingRounds));
+        }
+        deleteWorkDir();
+
+        String report = report(trainingMillis, trainingRounds, baseline, shared);
+        Files.writeString(outputDir.resolve(REPORT_FILE), report, StandardCharsets.UTF_8);
+        System.out.print(report);
+    }
+
+    /**
+     * Start one server JVM and wait for its timing line; output goes to &lt;name&gt;.log
+     */
+    private Timing run(String name, List<String> cdsOptions, String mode, int trainingRounds)
+            throws IOException, InterruptedException {
+        Files.createDirectories(workDir.resolve("data"));
+        Path log = outputDir.resolve(name + ".log");
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(cdsOptions);
+        command.add("-cp");
+        command.add(jar().toString());
+        command.add(StartupTraining.class.getName());
+        command.add(mode);
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile());
+        Map<String, String> environment = processBuilder.environment();
+        environment.remove("GP_API_SERVICE_URL");
+        environment.put("GP_API_APP_ID", "cds-training");
+        environment.put("GP_API_APP_KEY", "cds-training");
+        environment.put("GP_API_ENVIRONMENT", "sandbox");
+        environment.put("GP_API_STUB_ENABLED", "false");
+        environment.put("SERVER_HOST", "127.0.0.1");
+        environment.put("SERVER_PORT", "0");
+        environment.put("CDS_TRAINING_ROUNDS", String.valueOf(trainingRounds));
+
+        Process process = processBuilder.start();
+        if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IllegalStateException(name + " run did not finish within " + timeoutSeconds + " s, see " + log);
+        }
+        if (process.exitValue() != 0) {
+            throw new IllegalStateException(name + " run exited with " + process.exitValue() + ", see " + log);
+        }
+        return timing(name, log);
+    }
+
+    private static Timing timing(String name, Path log) throws IOException {
+        for (String line : Files.readAllLines(log, StandardCharsets.UTF_8)) {
+            if (!line.startsWith(StartupTraining.TIMING_PREFIX)) {
+                continue;
+            }
+            long ready = -1;
+            long firstRequest = -1;
+            long classes = -1;
+            for (String field : line.substring(StartupTraining.TIMING_PREFIX.length()).split(" ")) {
+                String[] pair = field.split("=", 2);
+                if (pair.length != 2) {
+                    continue;
+                }
+                switch (pair[0]) {
+                    case "readyMs" -> ready = Long.parseLong(pair[1]);
+                    case "firstRequestMs" -> firstRequest = Long.parseLong(pair[1]);
+                    case "loadedClasses" -> classes = Long.parseLong(pair[1]);
+                    default -> {
+                    }
+                }
+            }
+            return new Timing(ready, firstRequest, classes);
+        }
+        throw new IllegalStateException(name + " run printed no timing line, see " + log);
+    }
+
+    private static Path jar() {
+        return Paths.get(System.getProperty("java.class.path").split(File.pathSeparator)[0]).toAbsolutePath();
+    }
+
+    private String report(long trainingMillis, int trainingRounds, List<Timing> baseline, List<Timing> shared)
+            throws IOException {
+        long baselineReady = median(baseline, timing -> timing.readyMillis);
+        long baselineFirst = median(baseline, timing -> timing.firstRequestMillis);
+        long sharedReady = median(shared, timing -> timing.readyMillis);
+        long sharedFirst = median(shared, timing -> timing.firstRequestMillis);
+
+        StringBuilder report = new StringBuilder()
+                .append("AppCDS startup report\n")
+                .append("Generated:  ").append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append('\n')
+                .append("JDK:        ").append(System.getProperty("java.vm.name")).append(' ')
+                .append(System.getProperty("java.runtime.version")).append('\n')
+                .append("Jar:        ").append(jar()).append('\n')
+                .append("Archive:    ").append(archive).append(" (").append(Files.size(archive) / 1024).append(" KB)\n")
+                .append("Training:   ").append(trainingRounds).append(" rounds in ").append(trainingMillis).append(" ms\n")
+                .append("Runs:       ").append(baseline.size()).append(" per configuration, medians from JVM start\n")
+                .append('\n')
+                .append(String.format("%-18s %12s %20s %16s%n", "", "ready (ms)", "first request (ms)", "classes loaded"))
+                .append(String.format("%-18s %12d %20d %16d%n", "without archive", baselineReady, baselineFirst,
+                        median(baseline, timing -> timing.loadedClasses)))
+                .append(String.format("%-18s %12d %20d %16d%n", "with archive", sharedReady, sharedFirst,
+                        median(shared, timing -> timing.loadedClasses)))
+                .append(String.format("%-18s %12s %20s%n", "change", change(baselineReady, sharedReady),
+                        change(baselineFirst, sharedFirst)));
+        return report.toString();
+    }
+
+    private static long median(List<Timing> timings, ToLongFunction<Timing> field) {
+        long[] values = timings.stream().mapToLong(field).toArray();
+        Arrays.sort(values);
+        return values[values.length / 2];
+    }
+
+    private static String change(long before, long after) {
+        if (before <= 0) {
+            return "n/a";
+        }
+        return String.format("%+.0f%%", (after - before) * 100.0 / before);
+    }
+
+    private void deleteWorkDir() throws IOException {
+        if (!Files.exists(workDir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(workDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
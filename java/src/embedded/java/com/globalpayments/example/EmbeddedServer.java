@@ -0,0 +1,214 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.servlets.DefaultServlet;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.catalina.webresources.DirResourceSet;
+import org.apache.catalina.webresources.JarResourceSet;
+import org.apache.catalina.webresources.StandardRoot;
+import org.apache.coyote.http11.Http11NioProtocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded Tomcat launcher, packaged as a runnable jar by the "embedded" Maven profile
+ *
+ *   mvn -Pembedded clean package && java -jar target/ROOT-embedded.jar
+ *
+ * Servlets, filters and the bootstrap listener are registered directly from the
+ * classes below, using the mappings in their annotations, so startup does no classpath
+ * or jar scanning. Filters keep the order declared in web.xml. Requests run on virtual
+ * threads (SERVER_VIRTUAL_THREADS), and HTTP/1.1 keep-alive and h2c are tuned from
+ * SERVER_* settings. index.html is served from the jar.
+ */
+public final class EmbeddedServer {
+
+    private static final List<Class<? extends HttpServlet>> SERVLETS = List.of(
+            HealthServlet.class,
+            ConfigServlet.class,
+            PaymentMethodsServlet.class,
+            PaymentMethodEventsServlet.class,
+            ChargeServlet.class,
+            MockModeServlet.class,
+            TransactionsServlet.class,
+            DeferredChargesServlet.class,
+            SettlementServlet.class,
+            MetricsServlet.class);
+
+    // Same order as the filter mappings in web.xml
+    private static final List<Class<? extends Filter>> FILTERS = List.of(
+            MetricsFilter.class,
+            TraceFilter.class,
+            RateLimitFilter.class,
+            AdmissionFilter.class);
+
+    private static final String WEBAPP_RESOURCES = "/webapp";
+
+    private EmbeddedServer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        start().getServer().await();
+    }
+
+    /**
+     * Build and start the server; returns once the application is initialized and the
+     * connector is accepting
+     */
+    static Tomcat start() throws Exception {
+        long start = System.nanoTime();
+        AppConfig config = AppConfig.get();
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+
+        ExecutorService executor = requestExecutor(config);
+        tomcat.setConnector(connector(config, executor));
+
+        Context context = tomcat.addContext("", null);
+        context.setResources(webResources(context));
+        context.addApplicationListener(AppBootstrap.class.getName());
+        context.addWelcomeFile("index.html");
+        context.addMimeMapping("html", "text/html");
+        context.addMimeMapping("js", "text/javascript");
+        context.addMimeMapping("css", "text/css");
+
+        Wrapper defaultServlet = Tomcat.addServlet(context, "default", new DefaultServlet());
+        defaultServlet.addInitParameter("listings", "false");
+        context.addServletMappingDecoded("/", "default");
+        for (Class<? extends HttpServlet> servletClass : SERVLETS) {
+            addServlet(context, servletClass);
+        }
+        for (Class<? extends Filter> filterClass : FILTERS) {
+            addFilter(context, filterClass);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(tomcat, executor), "server-shutdown"));
+        tomcat.start();
+
+        System.out.println("Embedded server listening on " + config.get("SERVER_HOST", "0.0.0.0") + ":"
+                + tomcat.getConnector().getLocalPort() + " in " + (System.nanoTime() - start) / 1_000_000L
+                + " ms (JVM start to ready: " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms, "
+                + (config.getBoolean("SERVER_VIRTUAL_THREADS", true) ? "virtual threads" : "platform threads")
+                + ", HTTP/2 " + (config.getBoolean("SERVER_HTTP2_ENABLED", true) ? "on" : "off") + ")");
+        return tomcat;
+    }
+
+    private static ExecutorService requestExecutor(AppConfig config) {
+        if (config.getBoolean("SERVER_VIRTUAL_THREADS", true)) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(Math.max(1, config.getInt("SERVER_MAX_THREADS", 200)),
+                Thread.ofPlatform().name("http-", 0).daemon(true).factory());
+    }
+
+    private static Connector connector(AppConfig config, ExecutorService executor) {
+        Connector connector = new Connector(Http11NioProtocol.class.getName());
+        connector.setPort(config.getInt("SERVER_PORT", config.getInt("PORT", 8000)));
+        connector.setProperty("address", config.get("SERVER_HOST", "0.0.0.0"));
+        connector.setURIEncoding("UTF-8");
+
+        Http11NioProtocol protocol = (Http11NioProtocol) connector.getProtocolHandler();
+        protocol.setExecutor(executor);
+        protocol.setMaxConnections(config.getInt("SERVER_MAX_CONNECTIONS", 8192));
+        protocol.setAcceptCount(config.getInt("SERVER_ACCEPT_COUNT", 100));
+        protocol.setConnectionTimeout(config.getInt("SERVER_CONNECTION_TIMEOUT_MS", 20_000));
+        protocol.setKeepAliveTimeout(config.getInt("SERVER_KEEP_ALIVE_TIMEOUT_MS", 60_000));
+        // Socket read timeout while a request body is arriving, so a stalled body cannot hold its thread
+        protocol.setDisableUploadTimeout(false);
+        protocol.setConnectionUploadTimeout(config.getInt("REQUEST_BODY_TIMEOUT_MS", 10_000));
+        protocol.setMaxKeepAliveRequests(config.getInt("SERVER_MAX_KEEP_ALIVE_REQUESTS", 1000));
+        // Bodies are bounded by RequestBody; past this, a rejected body closes the connection instead of being drained
+        protocol.setMaxSwallowSize(config.getInt("SERVER_MAX_SWALLOW_BYTES", 64 * 1024));
+
+        if (config.getBoolean("SERVER_HTTP2_ENABLED", true)) {
+            // h2c, by prior knowledge or HTTP/1.1 upgrade; TLS terminates at the load balancer
+            Http2Protocol http2 = new Http2Protocol();
+            http2.setMaxConcurrentStreams(config.getLong("SERVER_HTTP2_MAX_CONCURRENT_STREAMS", 128));
+            http2.setInitialWindowSize(config.getInt("SERVER_HTTP2_INITIAL_WINDOW_SIZE", 65_535));
+            http2.setKeepAliveTimeout(config.getLong("SERVER_KEEP_ALIVE_TIMEOUT_MS", 60_000));
+            connector.addUpgradeProtocol(http2);
+        }
+        return connector;
+    }
+
+    /**
+     * index.html from the jar's /webapp directory, or from src/main/webapp when run from an IDE
+     */
+    private static WebResourceRoot webResources(Context context) throws IOException, URISyntaxException {
+        WebResourceRoot resources = new StandardRoot(context);
+        Path location = Paths.get(EmbeddedServer.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        if (Files.isRegularFile(location)) {
+            resources.addPreResources(new JarResourceSet(resources, "/", location.toString(), WEBAPP_RESOURCES));
+        } else {
+            File webapp = new File("src/main/webapp");
+            resources.addPreResources(new DirResourceSet(resources, "/", webapp.getAbsolutePath(), "/"));
+        }
+        return resources;
+    }
+
+    private static void addServlet(Context context, Class<? extends HttpServlet> servletClass) throws ReflectiveOperationException {
+        WebServlet mapping = servletClass.getAnnotation(WebServlet.class);
+        Wrapper wrapper = Tomcat.addServlet(context, mapping.name(), servletClass.getDeclaredConstructor().newInstance());
+        wrapper.setLoadOnStartup(mapping.loadOnStartup());
+        wrapper.setAsyncSupported(mapping.asyncSupported());
+        for (String pattern : mapping.urlPatterns()) {
+            context.addServletMappingDecoded(pattern, mapping.name());
+        }
+    }
+
+    private static void addFilter(Context context, Class<? extends Filter> filterClass) throws ReflectiveOperationException {
+        WebFilter mapping = filterClass.getAnnotation(WebFilter.class);
+        FilterDef definition = new FilterDef();
+        definition.setFilterName(mapping.filterName());
+        definition.setFilter(filterClass.getDeclaredConstructor().newInstance());
+        definition.setAsyncSupported(String.valueOf(mapping.asyncSupported()));
+        context.addFilterDef(definition);
+
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName(mapping.filterName());
+        for (String pattern : mapping.urlPatterns()) {
+            filterMap.addURLPattern(pattern);
+        }
+        context.addFilterMap(filterMap);
+    }
+
+    /**
+     * Stop accepting, let in-flight requests finish, then run AppBootstrap.contextDestroyed
+     */
+    private static void shutdown(Tomcat tomcat, ExecutorService executor) {
+        try {
+            tomcat.stop();
+            tomcat.destroy();
+        } catch (LifecycleException e) {
+            System.err.println("Embedded server shutdown error: " + e.getMessage());
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
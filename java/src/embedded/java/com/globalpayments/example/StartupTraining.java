@@ -0,0 +1,189 @@
+package com.globalpayments.example;
+
+import com.google.gson.JsonParser;
+import org.apache.catalina.startup.Tomcat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Training run for the AppCDS archive, started by CdsArchiveBuilder
+ *
+ *   java -XX:ArchiveClassesAtExit=app.jsa -cp ROOT-embedded.jar com.globalpayments.example.StartupTraining train
+ *
+ * Starts the embedded server, switches it to mock mode and drives every servlet through
+ * its main and error paths over loopback, CDS_TRAINING_ROUNDS times, so the classes the
+ * first real requests need (servlet stack, filters, Gson adapters, SDK builders, storage,
+ * the event stream) are loaded when the JVM exits and dumps the archive. Nothing reaches
+ * the gateway. In probe mode it only times the first request.
+ *
+ * Requests are plain HTTP/1.0 over a socket rather than an HTTP client, so the archive
+ * holds the server's classes and the probe times the server, not the client.
+ *
+ * Both modes end with one line on stdout, times measured from JVM start:
+ *   STARTUP readyMs=... firstRequestMs=... loadedClasses=...
+ */
+public final class StartupTraining {
+
+    static final String TIMING_PREFIX = "STARTUP ";
+
+    private static final int SOCKET_TIMEOUT_MS = 10_000;
+    private static final int EVENT_WAIT_MS = 2_000;
+
+    private final int port;
+
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private StartupTraining(int port) {
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean train = args.length == 0 || "train".equals(args[0]);
+
+        Tomcat tomcat = EmbeddedServer.start();
+        long readyMillis = uptimeMillis();
+
+        StartupTraining client = new StartupTraining(tomcat.getConnector().getLocalPort());
+        expect(client.send("GET", "/payment-methods", null), 200);
+        long firstRequestMillis = uptimeMillis();
+
+        if (train) {
+            int rounds = Math.max(1, AppConfig.get().getInt("CDS_TRAINING_ROUNDS", 3));
+            for (int round = 0; round < rounds; round++) {
+                client.exercise(round);
+            }
+        }
+
+        System.out.println(TIMING_PREFIX + "readyMs=" + readyMillis + " firstRequestMs=" + firstRequestMillis
+                + " loadedClasses=" + ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount());
+        // Runs the shutdown hook, so the stop path is archived too
+        System.exit(0);
+    }
+
+    /**
+     * One pass over every endpoint in mock mode
+     */
+    private void exercise(int round) throws IOException {
+        expect(send("GET", "/", null), 200);
+        expect(send("GET", "/health", null), 200);
+        expect(send("GET", "/health/live", null), 200);
+        expect(send("GET", "/health/ready", null), 200);
+        expect(send("GET", "/config", null), 200);
+        expect(send("GET", "/mock-mode", null), 200);
+        expect(send("POST", "/mock-mode", "{\"isEnabled\":true,\"resetSimulator\":true}"), 200);
+
+        try (Socket events = open("GET", "/payment-methods/events", null)) {
+            // The retry hint is written once the subscriber is registered
+            awaitStream(events, "retry: ");
+            Response created = expect(send("POST", "/payment-methods", "{"
+                    + "\"payment_token\":\"supt_cds_training_" + round + "\","
+                    + "\"cardDetails\":{\"cardType\":\"visa\",\"cardLast4\":\"4242\",\"expiryMonth\":\"12\",\"expiryYear\":\"2030\"},"
+                    + "\"first_name\":\"Training\",\"last_name\":\"Run\",\"email\":\"training@example.com\","
+                    + "\"phone\":\"5551234567\",\"street_address\":\"1 Main St\",\"city\":\"Anytown\",\"state\":\"NY\","
+                    + "\"billing_zip\":\"12345\",\"country\":\"USA\",\"nickname\":\"Training card\",\"isDefault\":true}"), 200);
+            awaitStream(events, "event: added\n");
+
+            String id = JsonParser.parseString(created.body).getAsJsonObject()
+                    .getAsJsonObject("data").get("id").getAsString();
+            expect(send("GET", "/payment-methods", null), 200);
+            expect(send("POST", "/payment-methods", "{\"id\":\"" + id + "\",\"nickname\":\"Training card " + round + "\"}"), 200);
+            expect(send("POST", "/charge", "{\"paymentMethodId\":\"" + id + "\",\"idempotencyKey\":\"cds-training-" + round + "\"}"), 200);
+            expect(send("GET", "/transactions?paymentMethodId=" + id + "&limit=10", null), 200);
+        }
+
+        expect(send("GET", "/settlement", null), 200);
+        expect(send("GET", "/deferred-charges", null), 200);
+        expect(send("GET", "/metrics", null), 200);
+
+        // Rejection paths: validation, malformed and unknown resources
+        expectClientError(send("POST", "/charge", "{}"));
+        expectClientError(send("POST", "/charge", "{\"paymentMethodId\":\"pm_cds_missing\"}"));
+        expectClientError(send("POST", "/payment-methods", "{\"nickname\":"));
+        expectClientError(send("GET", "/deferred-charges?trackingId=def_cds_missing", null));
+    }
+
+    private Response send(String method, String path, String body) throws IOException {
+        try (Socket socket = open(method, path, body)) {
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            // Status line "HTTP/1.1 200 ..."; for an HTTP/1.0 request the body runs to end of stream
+            int status = Integer.parseInt(response.substring(9, 12));
+            int bodyStart = response.indexOf("\r\n\r\n");
+            return new Response(status, bodyStart < 0 ? "" : response.substring(bodyStart + 4));
+        }
+    }
+
+    private Socket open(String method, String path, String body) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setSoTimeout(SOCKET_TIMEOUT_MS);
+        byte[] payload = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = new StringBuilder()
+                .append(method).append(' ').append(path).append(" HTTP/1.0\r\n")
+                .append("Host: 127.0.0.1:").append(port).append("\r\n");
+        if (body != null) {
+            head.append("Content-Type: application/json\r\n")
+                    .append("Content-Length: ").append(payload.length).append("\r\n");
+        }
+        head.append("\r\n");
+
+        OutputStream out = socket.getOutputStream();
+        out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+        out.flush();
+        return socket;
+    }
+
+    /**
+     * Read the event stream until the expected text arrives; the stream never ends on its own
+     */
+    private static void awaitStream(Socket events, String expected) throws IOException {
+        events.setSoTimeout(EVENT_WAIT_MS);
+        InputStream in = events.getInputStream();
+        StringBuilder received = new StringBuilder();
+        byte[] buffer = new byte[4096];
+        try {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                received.append(new String(buffer, 0, read, StandardCharsets.UTF_8));
+                if (received.indexOf(expected) >= 0) {
+                    return;
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            // Fall through to the failure below
+        }
+        throw new IllegalStateException("'" + expected.trim() + "' not received on /payment-methods/events within "
+                + EVENT_WAIT_MS + " ms");
+    }
+
+    private static Response expect(Response response, int status) {
+        if (response.status != status) {
+            throw new IllegalStateException("Expected " + status + ", got " + response.status + ": " + response.body);
+        }
+        return response;
+    }
+
+    private static void expectClientError(Response response) {
+        if (response.status < 400 || response.status >= 500) {
+            throw new IllegalStateException("Expected a 4xx rejection, got " + response.status + ": " + response.body);
+        }
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
@@ -0,0 +1,206 @@
+package com.globalpayments.example;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive concurrency limit with a CoDel-style admission queue
+ *
+ * Requests run while fewer than the current limit are in flight; the rest wait in a
+ * short queue. The limit adapts to observed latency (additive increase while requests
+ * finish within the latency target and the limit is being used, multiplicative decrease
+ * when they do not), so it settles near the concurrency the downstream gateway can
+ * actually sustain instead of a fixed thread count.
+ *
+ * The queue follows CoDel: if even the shortest queueing delay stays above the target
+ * for a whole interval, there is a standing queue and waiting only adds latency, so the
+ * queue timeout drops from the normal timeout to the target until delays recover.
+ * Requests that cannot be admitted in time are shed, which keeps the requests that are
+ * admitted fast instead of letting every request time out.
+ *
+ * Queued requests wait on a lock condition rather than an object monitor, so waiting
+ * does not pin the carrier thread when requests run on virtual threads.
+ */
+public final class AdmissionController {
+
+    private final String name;
+    private final int defaultMaxConcurrency;
+    private final long defaultLatencyTargetMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    // Guarded by lock
+    private int inFlight;
+    private int waiting;
+    private double limit;
+    private long lastDecreaseNanos;
+    private long firstAboveTargetNanos;
+    private boolean overloaded;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder shedQueueFull = new LongAdder();
+    private final LongAdder shedTimeout = new LongAdder();
+
+    /**
+     * @param name config key segment, e.g. "GATEWAY" for ADMISSION_GATEWAY_MAX_CONCURRENCY
+     */
+    public AdmissionController(String name, int defaultMaxConcurrency, long defaultLatencyTargetMillis) {
+        this.name = name;
+        this.defaultMaxConcurrency = defaultMaxConcurrency;
+        this.defaultLatencyTargetMillis = defaultLatencyTargetMillis;
+        this.limit = maxConcurrency();
+    }
+
+    /**
+     * Wait for a slot; returns the admission time in nanos, or -1 if the request should be shed
+     */
+    public long acquire() throws InterruptedException {
+        long arrived = System.nanoTime();
+        lock.lock();
+        try {
+            if (inFlight < currentLimit() && waiting == 0) {
+                inFlight++;
+                overloaded = false;
+                firstAboveTargetNanos = 0;
+                admitted.increment();
+                return arrived;
+            }
+            if (waiting >= AppConfig.get().getInt("ADMISSION_" + name + "_MAX_QUEUE", 100)) {
+                shedQueueFull.increment();
+                return -1;
+            }
+
+            long timeout = TimeUnit.MILLISECONDS.toNanos(overloaded ? targetQueueMillis() : queueTimeoutMillis());
+            long deadline = arrived + timeout;
+            waiting++;
+            queued.increment();
+            try {
+                while (inFlight >= currentLimit()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        shedTimeout.increment();
+                        onQueueDelay(System.nanoTime() - arrived);
+                        return -1;
+                    }
+                    slotFreed.awaitNanos(remaining);
+                }
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+            long now = System.nanoTime();
+            onQueueDelay(now - arrived);
+            admitted.increment();
+            return now;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release a slot and feed the request latency into the limit
+     */
+    public void release(long admittedAt) {
+        long now = System.nanoTime();
+        long latency = now - admittedAt;
+        long latencyTarget = TimeUnit.MILLISECONDS.toNanos(
+                AppConfig.get().getLong("ADMISSION_" + name + "_LATENCY_TARGET_MS", defaultLatencyTargetMillis));
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= currentLimit();
+            inFlight--;
+            if (latency > latencyTarget) {
+                // At most one decrease per latency target so one slow burst does not collapse the limit
+                if (now - lastDecreaseNanos > latencyTarget) {
+                    limit = Math.max(minConcurrency(), limit * 0.9);
+                    lastDecreaseNanos = now;
+                }
+            } else if (saturated) {
+                limit = Math.min(maxConcurrency(), limit + 1.0 / limit);
+            }
+            slotFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * In-flight plus queued requests over the current limit; above 1 requests are waiting
+     */
+    public double saturation() {
+        lock.lock();
+        try {
+            return (double) (inFlight + waiting) / currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isOverloaded() {
+        lock.lock();
+        try {
+            return overloaded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.lock();
+        try {
+            stats.put("limit", currentLimit());
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", waiting);
+            stats.put("overloaded", overloaded);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("admitted", admitted.sum());
+        stats.put("queued", queued.sum());
+        stats.put("shedQueueFull", shedQueueFull.sum());
+        stats.put("shedTimeout", shedTimeout.sum());
+        return stats;
+    }
+
+    /**
+     * CoDel state update; caller holds lock
+     */
+    private void onQueueDelay(long delayNanos) {
+        long now = System.nanoTime();
+        if (delayNanos < TimeUnit.MILLISECONDS.toNanos(targetQueueMillis())) {
+            firstAboveTargetNanos = 0;
+            overloaded = false;
+        } else if (firstAboveTargetNanos == 0) {
+            firstAboveTargetNanos = now + TimeUnit.MILLISECONDS.toNanos(
+                    AppConfig.get().getLong("ADMISSION_INTERVAL_MS", 100));
+        } else if (now >= firstAboveTargetNanos) {
+            overloaded = true;
+        }
+    }
+
+    private int currentLimit() {
+        return Math.max(1, (int) limit);
+    }
+
+    private int maxConcurrency() {
+        return Math.max(1, AppConfig.get().getInt("ADMISSION_" + name + "_MAX_CONCURRENCY", defaultMaxConcurrency));
+    }
+
+    private int minConcurrency() {
+        return Math.max(1, Math.min(maxConcurrency(), AppConfig.get().getInt("ADMISSION_MIN_CONCURRENCY", 4)));
+    }
+
+    private long targetQueueMillis() {
+        return AppConfig.get().getLong("ADMISSION_TARGET_QUEUE_MS", 20);
+    }
+
+    private long queueTimeoutMillis() {
+        return AppConfig.get().getLong("ADMISSION_QUEUE_TIMEOUT_MS", 500);
+    }
+}
@@ -0,0 +1,85 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Admission control for /charge and /payment-methods
+ *
+ * Gateway-bound POSTs and read-only GETs get separate AdmissionControllers, so a burst
+ * of charges cannot starve listing saved cards and vice versa. Requests that are not
+ * admitted in time get 503 with Retry-After before any storage or gateway work.
+ */
+@WebFilter(filterName = "AdmissionFilter", urlPatterns = {"/charge", "/payment-methods"})
+public class AdmissionFilter implements Filter {
+
+    private static final AdmissionController gatewayController = new AdmissionController("GATEWAY", 64, 3000);
+    private static final AdmissionController readController = new AdmissionController("READ", 256, 250);
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("gateway", gatewayController.stats());
+        stats.put("read", readController.stats());
+        return stats;
+    }
+
+    /**
+     * Controllers by name, for readiness checks
+     */
+    public static Map<String, AdmissionController> controllers() {
+        Map<String, AdmissionController> controllers = new HashMap<>();
+        controllers.put("gateway", gatewayController);
+        controllers.put("read", readController);
+        return controllers;
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        if ("OPTIONS".equals(request.getMethod()) || !AppConfig.get().getBoolean("ADMISSION_CONTROL_ENABLED", true)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        AdmissionController controller = "GET".equals(request.getMethod()) ? readController : gatewayController;
+        long admittedAt;
+        try {
+            admittedAt = controller.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admittedAt = -1;
+        }
+        if (admittedAt < 0) {
+            sendOverloaded(response);
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            controller.release(admittedAt);
+        }
+    }
+
+    private void sendOverloaded(HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Expose-Headers", "X-Request-ID, Retry-After, RateLimit-Limit, RateLimit-Remaining, RateLimit-Reset");
+        response.setHeader("Retry-After", String.valueOf(AppConfig.get().getInt("ADMISSION_RETRY_AFTER_SECONDS", 1)));
+        ApiResponse.sendError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Service is busy, please retry", "OVERLOADED");
+    }
+}
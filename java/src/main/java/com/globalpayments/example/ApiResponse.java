@@ -0,0 +1,111 @@
+package com.globalpayments.example;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Response envelope shared by all endpoints: {success, data, message, error_code, timestamp}
+ *
+ * Envelopes and the DTOs they carry are written by TypeAdapters registered once on a
+ * shared Gson instance, field by field through a JsonWriter on the response writer, so
+ * a response is never built as an intermediate map tree or String. Null fields are
+ * omitted, matching what Gson wrote for the previous map-based envelopes.
+ */
+public final class ApiResponse {
+
+    /**
+     * Gson with the adapters for every response DTO
+     */
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(ApiResponse.class, new Adapter())
+            .registerTypeAdapter(PaymentMethodView.class, new PaymentMethodView.Adapter())
+            .registerTypeAdapter(ChargeView.class, new ChargeView.Adapter())
+            .create();
+
+    private final boolean success;
+    private final Object data;
+    private final String message;
+    private final String errorCode;
+    private final String timestamp;
+
+    public ApiResponse(boolean success, Object data, String message, String errorCode) {
+        this.success = success;
+        this.data = data;
+        this.message = message;
+        this.errorCode = errorCode;
+        this.timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    }
+
+    public static ApiResponse ok(Object data, String message) {
+        return new ApiResponse(true, data, message, null);
+    }
+
+    public static ApiResponse error(String message, String errorCode) {
+        return new ApiResponse(false, null, message, errorCode);
+    }
+
+    /**
+     * Serialize straight into the response body
+     */
+    public void write(HttpServletResponse response) throws IOException {
+        // Set before writing in case a large body commits the response early
+        Trace.setServerTiming(response);
+        long start = System.nanoTime();
+        // newJsonWriter applies the Gson settings (nulls skipped, HTML-safe escaping)
+        JsonWriter writer = GSON.newJsonWriter(response.getWriter());
+        GSON.getAdapter(ApiResponse.class).write(writer, this);
+        Trace.record("serialize", start);
+        // Bodies within the container's buffer are not committed yet, so serialization is included
+        Trace.setServerTiming(response);
+        writer.flush();
+    }
+
+    /**
+     * Write an error envelope with the given status
+     */
+    public static void sendError(HttpServletResponse response, int statusCode, String message, String errorCode)
+            throws IOException {
+        response.setStatus(statusCode);
+        error(message, errorCode).write(response);
+    }
+
+    private static final class Adapter extends JsonAdapters.WriteOnly<ApiResponse> {
+        @Override
+        public void write(JsonWriter out, ApiResponse value) throws IOException {
+            out.beginObject();
+            out.name("success").value(value.success);
+            if (value.data != null) {
+                out.name("data");
+                writeValue(out, value.data);
+            }
+            if (value.message != null) {
+                out.name("message").value(value.message);
+            }
+            if (value.errorCode != null) {
+                out.name("error_code").value(value.errorCode);
+            }
+            out.name("timestamp").value(value.timestamp);
+            out.endObject();
+        }
+    }
+
+    /**
+     * Write any value with the adapter for its runtime type
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static void writeValue(JsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        TypeAdapter adapter = GSON.getAdapter(value.getClass());
+        adapter.write(out, value);
+    }
+}
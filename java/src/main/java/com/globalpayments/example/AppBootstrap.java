@@ -0,0 +1,133 @@
+package com.globalpayments.example;
+
+import com.global.api.entities.StoredCredential;
+import com.global.api.entities.enums.StoredCredentialInitiator;
+import com.global.api.entities.enums.StoredCredentialSequence;
+import com.global.api.entities.enums.StoredCredentialType;
+import com.global.api.paymentMethods.CreditCardData;
+import com.google.gson.Gson;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+import javax.net.ssl.SSLContext;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Application bootstrap
+ *
+ * Configures the Global Payments SDK once at deploy time and warms up the request
+ * hot paths (SDK builders, Gson, mock responses, JSON storage, TLS) before the
+ * context starts serving, so the first requests after a deploy run at steady-state speed.
+ */
+@WebListener
+public class AppBootstrap implements ServletContextListener {
+
+    private static final Gson gson = new Gson();
+
+    private static volatile boolean ready = false;
+    private static volatile long warmupMillis = -1;
+
+    public static boolean isReady() {
+        return ready;
+    }
+
+    public static long getWarmupMillis() {
+        return warmupMillis;
+    }
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        long start = System.nanoTime();
+
+        Log.start();
+        Trace.start();
+        GpApiStubServer.startEmbeddedIfEnabled();
+
+        try {
+            PaymentUtils.configureSdk();
+        } catch (Exception e) {
+            // Servlets retry configuration in init(); mock mode remains usable
+            System.err.println("SDK bootstrap failed: " + e.getMessage());
+        }
+
+        int iterations = AppConfig.get().getInt("WARMUP_ITERATIONS", 200);
+        try {
+            warmUp(iterations);
+        } catch (Exception e) {
+            System.err.println("Warm-up error (continuing startup): " + e.getMessage());
+        }
+
+        TransactionLedger.start();
+        DeferredChargeQueue.start();
+        SettlementEngine.start();
+        TokenHealthChecker.start();
+        PaymentMethodEvents.start();
+        AppConfig.startWatching();
+        HealthMonitor.start();
+
+        warmupMillis = (System.nanoTime() - start) / 1_000_000L;
+        ready = true;
+        System.out.println("Startup bootstrap complete in " + warmupMillis + " ms (SDK configured: "
+                + PaymentUtils.isSdkConfigured() + ", warm-up iterations: " + iterations + ")");
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        ready = false;
+        HealthMonitor.stop();
+        AppConfig.stopWatching();
+        PaymentMethodEvents.stop();
+        TokenHealthChecker.stop();
+        SettlementEngine.stop();
+        DeferredChargeQueue.stop();
+        TransactionLedger.stop();
+        GpApiStubServer.stopEmbedded();
+        Trace.stop();
+        Log.stop();
+    }
+
+    /**
+     * Exercise request paths without touching the gateway or mutating stored data
+     */
+    private static void warmUp(int iterations) throws Exception {
+        // TLS provider and default trust store initialization
+        SSLContext.getDefault().getSocketFactory();
+
+        BigDecimal amount = new BigDecimal("25.00");
+        StoredCredential storedCredential = new StoredCredential()
+                .setType(StoredCredentialType.Unscheduled)
+                .setInitiator(StoredCredentialInitiator.Merchant)
+                .setSequence(StoredCredentialSequence.Subsequent);
+
+        for (int i = 0; i < iterations; i++) {
+            // SDK request builders (built but never executed)
+            CreditCardData card = new CreditCardData();
+            card.setToken("warmup_token");
+            card.verify().withCurrency("USD").withRequestMultiUseToken(true);
+            card.charge(amount).withCurrency("USD").withStoredCredential(storedCredential);
+
+            // Mock paths
+            Map<String, Object> payment = MockResponses.getPaymentResponse(amount, "pm_warmup");
+            Map<String, String> cardDetails = MockResponses.getCardDetailsFromToken(MockResponses.generateMockStoredPaymentToken());
+            MockResponses.getDeclineResponse("generic");
+
+            // Storage reads
+            List<PaymentMethodView> methods = JsonStorage.getFormattedPaymentMethods();
+
+            // Response adapters in the shape servlets produce
+            Map<String, Object> warmupMethod = new HashMap<>();
+            warmupMethod.put("id", "pm_warmup");
+            String json = ApiResponse.GSON.toJson(ApiResponse.ok(new ChargeView(payment, warmupMethod, true, "capture"), "warmup"));
+            ApiResponse.GSON.toJson(ApiResponse.ok(methods, "warmup"));
+            gson.fromJson(json, Map.class);
+            gson.toJson(cardDetails);
+        }
+
+        PaymentUtils.determineCardBrandFromType("visa");
+        PaymentUtils.sanitizePostalCode("12345-6789");
+    }
+}
@@ -0,0 +1,314 @@
+package com.globalpayments.example;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import io.github.cdimascio.dotenv.DotenvEntry;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Application configuration
+ *
+ * Immutable snapshot of the .env file (overridden by process environment variables).
+ * The current snapshot is published through a single volatile reference, so request
+ * code reads configuration with one volatile load via {@link #get()}. When the .env
+ * file changes, a new snapshot is loaded and swapped in atomically and registered
+ * listeners (such as the SDK configuration) are notified.
+ *
+ * Values are trimmed and parsed as numbers and booleans once, when the snapshot is
+ * built, so the typed getters on request paths are map lookups. A value that is not a
+ * valid number is logged once per snapshot, the first time it is read as one, and the
+ * caller's default is used.
+ */
+public final class AppConfig {
+
+    private static final String ENV_FILE = ".env";
+
+    private static volatile AppConfig current = load();
+    private static final List<Consumer<AppConfig>> listeners = new CopyOnWriteArrayList<>();
+    private static volatile WatchService watchService;
+
+    // Trimmed, non-empty values and their parsed forms
+    private final Map<String, String> values;
+    private final Map<String, Long> longs;
+    private final Map<String, Double> doubles;
+    private final Map<String, Boolean> booleans;
+    private final Set<String> reportedInvalid = ConcurrentHashMap.newKeySet();
+    private final long version;
+
+    private final String appId;
+    private final String appKey;
+    private final String environment;
+
+    private AppConfig(Map<String, String> rawValues, long version) {
+        Map<String, String> trimmed = new HashMap<>();
+        Map<String, Long> parsedLongs = new HashMap<>();
+        Map<String, Double> parsedDoubles = new HashMap<>();
+        Map<String, Boolean> parsedBooleans = new HashMap<>();
+        for (Map.Entry<String, String> entry : rawValues.entrySet()) {
+            String value = entry.getValue() != null ? entry.getValue().trim() : "";
+            if (value.isEmpty()) {
+                continue;
+            }
+            trimmed.put(entry.getKey(), value);
+            parsedBooleans.put(entry.getKey(), Boolean.parseBoolean(value));
+            if (!looksNumeric(value)) {
+                continue;
+            }
+            try {
+                parsedLongs.put(entry.getKey(), Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                // Not an integer; may still be a decimal
+            }
+            try {
+                parsedDoubles.put(entry.getKey(), Double.parseDouble(value));
+            } catch (NumberFormatException e) {
+                // Reported when read as a number
+            }
+        }
+        this.values = Collections.unmodifiableMap(trimmed);
+        this.longs = Collections.unmodifiableMap(parsedLongs);
+        this.doubles = Collections.unmodifiableMap(parsedDoubles);
+        this.booleans = Collections.unmodifiableMap(parsedBooleans);
+        this.version = version;
+        this.appId = values.get("GP_API_APP_ID");
+        this.appKey = values.get("GP_API_APP_KEY");
+        this.environment = values.getOrDefault("GP_API_ENVIRONMENT", "sandbox");
+    }
+
+    /**
+     * Current configuration snapshot
+     */
+    public static AppConfig get() {
+        return current;
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public String getAppKey() {
+        return appKey;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public boolean isProduction() {
+        return "production".equalsIgnoreCase(environment);
+    }
+
+    /**
+     * Whether live gateway credentials are configured
+     */
+    public boolean hasAppKey() {
+        return appKey != null && !appKey.trim().isEmpty();
+    }
+
+    /**
+     * Whether the local GP API stub server should run (never in production)
+     */
+    public boolean isStubEnabled() {
+        return getBoolean("GP_API_STUB_ENABLED", false) && !isProduction();
+    }
+
+    /**
+     * GP API base URL override: GP_API_SERVICE_URL, else the local stub when enabled,
+     * else null to use the SDK's endpoint for the configured environment
+     */
+    public String getServiceUrl() {
+        String serviceUrl = get("GP_API_SERVICE_URL", null);
+        if (serviceUrl != null) {
+            return serviceUrl;
+        }
+        if (isStubEnabled()) {
+            return "https://127.0.0.1:" + getInt("GP_API_STUB_PORT", 8089) + GpApiStubServer.BASE_PATH;
+        }
+        return null;
+    }
+
+    /**
+     * Monotonic snapshot version, incremented on every reload
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = values.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Long value = longs.get(key);
+        if (value != null && value == value.intValue()) {
+            return value.intValue();
+        }
+        return invalid(key, "integer", defaultValue);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Long value = longs.get(key);
+        if (value != null) {
+            return value;
+        }
+        return invalid(key, "integer", defaultValue);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        Double value = doubles.get(key);
+        if (value != null) {
+            return value;
+        }
+        return invalid(key, "number", defaultValue);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Boolean value = booleans.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Default for a key that is unset or not a valid number, reporting an invalid value
+     * once per snapshot
+     */
+    private <T> T invalid(String key, String expected, T defaultValue) {
+        String value = values.get(key);
+        if (value != null && reportedInvalid.add(key)) {
+            Log.warn("Invalid configuration value, using default", "key", key, "expected", expected,
+                    "value", value, "default", defaultValue, "version", version);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Cheap pre-check so values such as paths and keys are not parsed as numbers
+     */
+    private static boolean looksNumeric(String value) {
+        char first = value.charAt(0);
+        return Character.isDigit(first) || first == '-' || first == '+' || first == '.';
+    }
+
+    /**
+     * Register a callback invoked with the new snapshot after each reload
+     */
+    public static void addListener(Consumer<AppConfig> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Re-read the .env file and atomically publish the new snapshot
+     */
+    public static synchronized AppConfig reload() {
+        AppConfig previous = current;
+        AppConfig next = load(previous.version + 1);
+        current = next;
+
+        for (Consumer<AppConfig> listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (Exception e) {
+                Log.error("Configuration listener failed", e);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Start watching the .env file for changes on a daemon thread
+     */
+    public static synchronized void startWatching() {
+        if (watchService != null || !current.getBoolean("CONFIG_WATCH_ENABLED", true)) {
+            return;
+        }
+
+        Path envFile = Paths.get(ENV_FILE).toAbsolutePath();
+        Path directory = envFile.getParent();
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            directory.register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = service;
+
+            Thread watcher = new Thread(() -> watch(service, envFile.getFileName()), "config-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+            Log.info("Watching for configuration changes", "file", envFile);
+        } catch (IOException e) {
+            Log.warn("Configuration hot reload disabled", "error", e.getMessage());
+        }
+    }
+
+    public static synchronized void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                Log.warn("Error stopping configuration watcher", "error", e.getMessage());
+            }
+            watchService = null;
+        }
+    }
+
+    private static void watch(WatchService service, Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (fileName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+
+                if (changed) {
+                    // Editors often write in several steps; let the file settle before reading it
+                    Thread.sleep(200);
+                    try {
+                        AppConfig config = reload();
+                        Log.info("Configuration reloaded", "version", config.version);
+                    } catch (Exception e) {
+                        Log.error("Configuration reload failed, keeping previous values", e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Watcher stopped
+        }
+    }
+
+    private static AppConfig load() {
+        return load(1);
+    }
+
+    private static AppConfig load(long version) {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+
+        Map<String, String> values = new HashMap<>(System.getenv());
+        for (DotenvEntry entry : dotenv.entries(Dotenv.Filter.DECLARED_IN_ENV_FILE)) {
+            // Process environment takes precedence over the file, as with Dotenv.get
+            values.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        return new AppConfig(values, version);
+    }
+}
@@ -0,0 +1,44 @@
+package com.globalpayments.example;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * POST /charge body: the fields the charge flow uses; anything else is skipped unread
+ */
+public final class ChargeRequest {
+
+    public String paymentMethodId;
+    public String captureMode;
+    public boolean deferOnOutage;
+    public String idempotencyKey;
+
+    static final class Adapter extends JsonAdapters.ReadOnly<ChargeRequest> {
+        @Override
+        public ChargeRequest read(JsonReader in) throws IOException {
+            ChargeRequest request = new ChargeRequest();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "paymentMethodId":
+                        request.paymentMethodId = RequestBody.nextString(in);
+                        break;
+                    case "captureMode":
+                        request.captureMode = RequestBody.nextString(in);
+                        break;
+                    case "deferOnOutage":
+                        request.deferOnOutage = Boolean.TRUE.equals(RequestBody.nextBoolean(in));
+                        break;
+                    case "idempotencyKey":
+                        request.idempotencyKey = RequestBody.nextString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return request;
+        }
+    }
+}
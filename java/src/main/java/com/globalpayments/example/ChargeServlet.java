@@ -1,7 +1,5 @@
 package com.globalpayments.example;
 
-import com.google.gson.Gson;
-import io.github.cdimascio.dotenv.Dotenv;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -14,19 +12,18 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Charge Endpoint
  * 
  * POST /charge - Process immediate payment ($25.00)
+ *                - captureMode: "authorize" to authorize now and capture in a settlement batch
+ *                - deferOnOutage: queue the charge (202 + trackingId) if the gateway is unreachable
+ *                - idempotencyKey (or Idempotency-Key header): deduplicates retries of the same charge
  */
-@WebServlet(name = "ChargeServlet", urlPatterns = {"/charge"})
+@WebServlet(name = "ChargeServlet", urlPatterns = {"/charge"}, loadOnStartup = 1)
 public class ChargeServlet extends HttpServlet {
     
-    private static final Gson gson = new Gson();
-    private final Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
-    
     @Override
     public void init() throws ServletException {
         try {
@@ -42,98 +39,176 @@ public class ChargeServlet extends HttpServlet {
         
         handleCORS(response);
         
+        RequestMode.Mode mode = RequestMode.resolve(request);
+        if (mode == null) {
+            sendErrorResponse(response, 403, "Mock mode override not authorized", "MOCK_MODE_FORBIDDEN");
+            return;
+        }
+        RequestMode.record("charge", mode, response);
+        
         try {
-            // Parse JSON input
-            String jsonString = request.getReader().lines().collect(Collectors.joining());
-            @SuppressWarnings("unchecked")
-            Map<String, Object> data = gson.fromJson(jsonString, Map.class);
-
-            System.out.println("💳 CHARGE REQUEST RECEIVED:");
-            System.out.println("   ⏰ Timestamp: " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            System.out.println("   🔍 Request Data: " + gson.toJson(data));
+            ChargeRequest data;
+            try {
+                data = RequestBody.read(request, ChargeRequest.class);
+            } catch (RequestBody.BodyException e) {
+                Log.warn("Charge rejected: invalid body", "reason", e.getMessage());
+                sendErrorResponse(response, e.getStatusCode(), e.getMessage(), e.getErrorCode());
+                return;
+            }
 
-            if (data == null || isEmpty((String) data.get("paymentMethodId"))) {
-                System.err.println("❌ VALIDATION ERROR: Missing paymentMethodId");
+            if (isEmpty(data.paymentMethodId)) {
+                Log.warn("Charge rejected: missing paymentMethodId", "mode", mode);
                 sendErrorResponse(response, 400, "Payment method ID is required", "VALIDATION_ERROR");
                 return;
             }
 
-            String paymentMethodId = (String) data.get("paymentMethodId");
-            System.out.println("   🆔 Payment Method ID: " + paymentMethodId);
+            String paymentMethodId = data.paymentMethodId;
+
+            // Authorize now and capture in a settlement batch (see SettlementEngine)
+            boolean authorizeOnly;
+            try {
+                authorizeOnly = SettlementEngine.isAuthorizeOnly(data.captureMode);
+            } catch (IllegalArgumentException e) {
+                Log.warn("Charge rejected: invalid captureMode", "captureMode", data.captureMode);
+                sendErrorResponse(response, 400, e.getMessage(), "VALIDATION_ERROR");
+                return;
+            }
+            if (authorizeOnly && !SettlementEngine.isRunning()) {
+                // Nothing could capture the authorization, so do not ask the gateway for one
+                Log.warn("Charge rejected: settlement engine is not running", "paymentMethodId", paymentMethodId);
+                sendErrorResponse(response, 503, "Authorize-only charges are unavailable", "SETTLEMENT_UNAVAILABLE");
+                return;
+            }
 
             Map<String, Object> paymentMethod = JsonStorage.findPaymentMethod(paymentMethodId);
             if (paymentMethod == null) {
-                System.err.println("❌ PAYMENT METHOD NOT FOUND: " + paymentMethodId);
+                Log.warn("Charge rejected: payment method not found", "paymentMethodId", paymentMethodId);
                 sendErrorResponse(response, 404, "Payment method not found", "NOT_FOUND");
                 return;
             }
 
-            System.out.println("   💳 Card: " + paymentMethod.get("cardBrand") + " ending in " + paymentMethod.get("last4"));
-            System.out.println("   🔐 Stored Payment Token: " + ((String) paymentMethod.get("storedPaymentToken")).substring(0, Math.min(8, ((String) paymentMethod.get("storedPaymentToken")).length())) + "...");
-
             BigDecimal amount = new BigDecimal("25.00");
             String currency = "USD";
-            System.out.println("   💵 Amount: $" + amount + " " + currency);
+            Log.info("Charge request received", "paymentMethodId", paymentMethodId, "brand", paymentMethod.get("cardBrand"),
+                    "last4", paymentMethod.get("last4"), "amount", amount, "currency", currency, "mode", mode);
+
+            if (VelocityLimiter.appliesTo(mode)) {
+                VelocityLimiter.Decision velocity = VelocityLimiter.check(paymentMethodId, ClientAddress.of(request), amount);
+                if (!velocity.isAllowed()) {
+                    Log.warn("Charge rejected: velocity limit", "paymentMethodId", paymentMethodId, "reason", velocity.reason);
+                    recordTransaction(paymentMethodId, amount, currency, mode, "rejected", null, velocity.reason, "Velocity limit exceeded");
+                    response.setHeader("Retry-After", String.valueOf(velocity.retryAfterSeconds));
+                    sendErrorResponse(response, 429, "Too many charges: velocity limit exceeded", velocity.reason);
+                    return;
+                }
+            }
+
+            // Opt-in store-and-forward for gateway outages (see DeferredChargeQueue); deferred charges are sales
+            boolean deferOnOutage = !authorizeOnly && data.deferOnOutage && DeferredChargeQueue.isRunning();
+            String idempotencyKey = request.getHeader("Idempotency-Key");
+            if (isEmpty(idempotencyKey)) {
+                idempotencyKey = data.idempotencyKey;
+            }
             
             Map<String, Object> transactionResult = null;
             boolean mockMode = false;
 
-            // Check if mock mode is enabled globally
-            if (MockModeServlet.isMockModeEnabled()) {
+            // Mock mode is resolved per request (global default or authorized override)
+            if (mode == RequestMode.Mode.MOCK) {
                 mockMode = true;
-                String last4 = (String) paymentMethod.get("last4");
-
-                System.out.println("🟡 MOCK MODE - Generating mock payment response");
-                System.out.println("   🎭 Card ending in: " + last4);
-                transactionResult = MockResponses.getPaymentResponse(amount, paymentMethodId);
-                System.out.println("✅ MOCK PAYMENT COMPLETE");
+                MockGatewaySimulator.Outcome outcome = MockGatewaySimulator.simulateCharge(
+                        amount, (String) paymentMethod.get("storedPaymentToken"));
+                if (outcome.timedOut) {
+                    Log.warn("Mock charge timed out", "paymentMethodId", paymentMethodId, "latencyMs", outcome.latencyMs);
+                    recordTransaction(paymentMethodId, amount, currency, mode, "timeout", null, "GATEWAY_TIMEOUT", "Gateway timeout");
+                    sendErrorResponse(response, 504, "Payment failed: Gateway timeout", "GATEWAY_TIMEOUT");
+                    return;
+                }
+                if (!outcome.approved) {
+                    Map<String, String> decline = MockResponses.getDeclineResponse(outcome.declineReason);
+                    Log.info("Mock charge declined", "paymentMethodId", paymentMethodId, "reason", decline.get("responseMessage"));
+                    recordTransaction(paymentMethodId, amount, currency, mode, "declined", null, decline.get("errorCode"), decline.get("responseMessage"));
+                    sendErrorResponse(response, 422, "Payment failed: " + decline.get("responseMessage"), decline.get("errorCode"));
+                    return;
+                }
+                transactionResult = authorizeOnly
+                        ? MockResponses.getAuthorizationResponse(amount, paymentMethodId)
+                        : MockResponses.getPaymentResponse(amount, paymentMethodId);
+                Log.info("Mock charge approved", "paymentMethodId", paymentMethodId,
+                        "transactionId", transactionResult.get("transactionId"), "latencyMs", outcome.latencyMs);
             } else {
                 // Live mode - no fallback to mock
-                String appKey = dotenv.get("GP_API_APP_KEY");
-                if (appKey != null && !appKey.trim().isEmpty()) {
+                if (AppConfig.get().hasAppKey()) {
+                    if (deferOnOutage) {
+                        DeferredChargeQueue.DeferredCharge existing = DeferredChargeQueue.findByIdempotencyKey(idempotencyKey);
+                        if (existing != null) {
+                            Log.info("Duplicate deferred charge", "trackingId", existing.getTrackingId());
+                            sendDeferredResponse(response, existing, "Charge already queued");
+                            return;
+                        }
+                        if (DeferredChargeQueue.hasPending(paymentMethodId)) {
+                            // Earlier deferred charges for this card must go first
+                            DeferredChargeQueue.DeferredCharge charge = DeferredChargeQueue.enqueue(paymentMethodId, amount, currency, idempotencyKey);
+                            Log.info("Charge queued behind pending deferred charges", "trackingId", charge.getTrackingId());
+                            sendDeferredResponse(response, charge, "Charge queued behind earlier deferred charges");
+                            return;
+                        }
+                    }
                     try {
                         String storedPaymentToken = (String) paymentMethod.get("storedPaymentToken");
                         String networkTransactionId = (String) paymentMethod.get("networkTransactionId");
-                        System.out.println("🟢 LIVE MODE - Processing payment via GP API...");
-                        transactionResult = PaymentUtils.processPaymentWithSDK(storedPaymentToken, amount, currency, networkTransactionId);
-                        System.out.println("✅ LIVE PAYMENT COMPLETE");
+                        if (deferOnOutage) {
+                            // Queued on an outage under the same idempotency key as the live attempt
+                            DeferredChargeQueue.Outcome outcome = DeferredChargeQueue.chargeOrDefer(paymentMethodId,
+                                    storedPaymentToken, networkTransactionId, amount, currency, idempotencyKey);
+                            if (outcome.isDeferred()) {
+                                Log.warn("Gateway unavailable, charge deferred", "trackingId", outcome.deferred.getTrackingId());
+                                sendDeferredResponse(response, outcome.deferred, "Gateway unavailable; charge queued for retry");
+                                return;
+                            }
+                            transactionResult = outcome.result;
+                        } else {
+                            transactionResult = authorizeOnly
+                                    ? PaymentUtils.authorizePaymentWithSDK(storedPaymentToken, amount, currency, networkTransactionId, idempotencyKey)
+                                    : PaymentUtils.processPaymentWithSDK(storedPaymentToken, amount, currency, networkTransactionId, idempotencyKey);
+                        }
+                        Log.info("Live charge approved", "paymentMethodId", paymentMethodId,
+                                "transactionId", transactionResult.get("transactionId"));
                     } catch (Exception e) {
-                        System.err.println("❌ LIVE MODE - Payment processing failed:");
-                        System.err.println("   Error: " + e.getMessage());
-                        e.printStackTrace();
+                        Log.error("Live charge failed", e, "paymentMethodId", paymentMethodId);
+                        recordTransaction(paymentMethodId, amount, currency, mode, "failed", null, "PAYMENT_ERROR", e.getMessage());
                         sendErrorResponse(response, 422, "Payment failed: " + e.getMessage(), "PAYMENT_ERROR");
                         return;
                     }
                 } else {
-                    System.err.println("❌ CONFIGURATION ERROR - No GP_API_APP_KEY found in environment");
+                    Log.error("Charge rejected: GP_API_APP_KEY is not configured");
                     sendErrorResponse(response, 503, "Payment service not configured", "CONFIGURATION_ERROR");
                     return;
                 }
             }
             
-            // Build response
-            Map<String, Object> responseData = new HashMap<>(transactionResult);
-            
-            Map<String, Object> paymentMethodInfo = new HashMap<>();
-            paymentMethodInfo.put("id", paymentMethod.get("id"));
-            paymentMethodInfo.put("type", "card");
-            paymentMethodInfo.put("brand", paymentMethod.get("cardBrand"));
-            paymentMethodInfo.put("last4", paymentMethod.get("last4"));
-            paymentMethodInfo.put("nickname", paymentMethod.get("nickname") != null ? paymentMethod.get("nickname") : "");
-            
-            responseData.put("paymentMethod", paymentMethodInfo);
-            responseData.put("mockMode", mockMode);
-            
-            Map<String, Object> finalResponse = new HashMap<>();
-            finalResponse.put("success", true);
-            finalResponse.put("data", responseData);
-            finalResponse.put("message", "Payment processed successfully");
-            finalResponse.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            
-            response.getWriter().write(gson.toJson(finalResponse));
+            if (authorizeOnly) {
+                try {
+                    SettlementEngine.recordAuthorization((String) transactionResult.get("transactionId"), paymentMethodId, amount, currency, mode);
+                } catch (IOException | IllegalStateException e) {
+                    // The authorization would never be captured; it lapses at the gateway unsettled
+                    Log.error("Authorization not recorded for settlement", e, "paymentMethodId", paymentMethodId,
+                            "transactionId", transactionResult.get("transactionId"));
+                    recordTransaction(paymentMethodId, amount, currency, mode, "failed", transactionResult,
+                            "SETTLEMENT_UNAVAILABLE", "Authorization could not be recorded for settlement");
+                    sendErrorResponse(response, 503, "Payment failed: authorization could not be recorded for settlement",
+                            "SETTLEMENT_UNAVAILABLE");
+                    return;
+                }
+            }
+            recordTransaction(paymentMethodId, amount, currency, mode, authorizeOnly ? "authorized" : "approved", transactionResult, null, null);
+
+            ChargeView charge = new ChargeView(transactionResult, paymentMethod, mockMode, authorizeOnly ? "authorize" : "capture");
+            ApiResponse.ok(charge, authorizeOnly ? "Payment authorized; capture pending settlement" : "Payment processed successfully")
+                    .write(response);
             
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("Charge request failed", e);
             sendErrorResponse(response, 500, "Payment processing failed", "SERVER_ERROR");
         }
     }
@@ -150,25 +225,44 @@ public class ChargeServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID, Idempotency-Key, " + RequestMode.MODE_HEADER + ", " + RequestMode.KEY_HEADER);
+        response.setHeader("Access-Control-Expose-Headers", RequestMode.RESPONSE_HEADER + ", X-Request-ID, Retry-After, RateLimit-Limit, RateLimit-Remaining, RateLimit-Reset");
     }
     
+    private void sendDeferredResponse(HttpServletResponse response, DeferredChargeQueue.DeferredCharge charge, String message)
+            throws IOException {
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+
+        Map<String, Object> responseData = charge.toMap();
+        responseData.put("deferred", true);
+
+        ApiResponse.ok(responseData, message).write(response);
+    }
+
     private void sendErrorResponse(HttpServletResponse response, int statusCode, String message, String errorCode) 
             throws IOException {
-        response.setStatus(statusCode);
-        
-        Map<String, Object> errorResponse = new HashMap<>();
-        errorResponse.put("success", false);
-        errorResponse.put("message", message);
-        errorResponse.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-        
-        if (errorCode != null) {
-            errorResponse.put("error_code", errorCode);
-        }
-        
-        response.getWriter().write(gson.toJson(errorResponse));
+        ApiResponse.sendError(response, statusCode, message, errorCode);
     }
     
+    /**
+     * Queue the charge outcome for the transaction ledger (written off the response path)
+     */
+    private void recordTransaction(String paymentMethodId, BigDecimal amount, String currency, RequestMode.Mode mode,
+                                   String status, Map<String, Object> result, String errorCode, String message) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("transactionId", result != null ? result.get("transactionId") : null);
+        entry.put("paymentMethodId", paymentMethodId);
+        entry.put("amount", amount.toPlainString());
+        entry.put("currency", currency);
+        entry.put("status", status);
+        entry.put("mode", mode.tag());
+        entry.put("responseCode", result != null ? result.get("responseCode") : null);
+        entry.put("responseMessage", result != null ? result.get("responseMessage") : message);
+        entry.put("errorCode", errorCode);
+        entry.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        TransactionLedger.record(entry);
+    }
+
     private boolean isEmpty(String str) {
         return str == null || str.trim().isEmpty();
     }
@@ -0,0 +1,50 @@
+package com.globalpayments.example;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Completed charge as returned by /charge: the gateway (or mock) result fields followed
+ * by the charged payment method and the mode flags. The result map is written as-is
+ * rather than copied into a response map.
+ */
+public final class ChargeView {
+
+    public final Map<String, Object> result;
+    public final Map<String, Object> paymentMethod;
+    public final boolean mockMode;
+    public final String captureMode;
+
+    public ChargeView(Map<String, Object> result, Map<String, Object> paymentMethod, boolean mockMode, String captureMode) {
+        this.result = result;
+        this.paymentMethod = paymentMethod;
+        this.mockMode = mockMode;
+        this.captureMode = captureMode;
+    }
+
+    static final class Adapter extends JsonAdapters.WriteOnly<ChargeView> {
+        @Override
+        public void write(JsonWriter out, ChargeView value) throws IOException {
+            out.beginObject();
+            for (Map.Entry<String, Object> entry : value.result.entrySet()) {
+                out.name(entry.getKey());
+                ApiResponse.writeValue(out, entry.getValue());
+            }
+
+            Map<String, Object> method = value.paymentMethod;
+            out.name("paymentMethod").beginObject();
+            out.name("id").value((String) method.get("id"));
+            out.name("type").value("card");
+            out.name("brand").value((String) method.get("cardBrand"));
+            out.name("last4").value((String) method.get("last4"));
+            out.name("nickname").value(method.get("nickname") != null ? (String) method.get("nickname") : "");
+            out.endObject();
+
+            out.name("mockMode").value(value.mockMode);
+            out.name("captureMode").value(value.captureMode);
+            out.endObject();
+        }
+    }
+}
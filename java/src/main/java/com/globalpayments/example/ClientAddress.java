@@ -0,0 +1,184 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Client address for per-client limits, behind reverse proxies
+ *
+ * X-Forwarded-For is only read when the request comes from one of TRUSTED_PROXIES
+ * (comma-separated addresses or CIDR ranges). The header is then walked from the
+ * right, skipping hops that are themselves trusted proxies; the first other hop is
+ * the address the nearest trusted proxy saw, so anything the client wrote to the
+ * left of it is ignored. With no trusted proxies configured the remote address is used.
+ */
+public final class ClientAddress {
+
+    private static volatile Proxies proxies = new Proxies("", Collections.emptyList());
+
+    /**
+     * Parsed TRUSTED_PROXIES, kept until the setting changes
+     */
+    private static final class Proxies {
+        final String setting;
+        final List<Range> ranges;
+
+        Proxies(String setting, List<Range> ranges) {
+            this.setting = setting;
+            this.ranges = ranges;
+        }
+
+        boolean contains(String address) {
+            if (ranges.isEmpty()) {
+                return false;
+            }
+            byte[] bytes = parse(address);
+            if (bytes == null) {
+                return false;
+            }
+            for (Range range : ranges) {
+                if (range.contains(bytes)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Range {
+        final byte[] network;
+        final int prefixLength;
+
+        Range(byte[] network, int prefixLength) {
+            this.network = network;
+            this.prefixLength = prefixLength;
+        }
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - remainingBits);
+            return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
+
+    private ClientAddress() {
+    }
+
+    /**
+     * Address of the client that sent this request
+     */
+    public static String of(HttpServletRequest request) {
+        String remoteAddress = request.getRemoteAddr();
+        Proxies trusted = trustedProxies();
+        if (!trusted.contains(remoteAddress)) {
+            return remoteAddress;
+        }
+
+        // Repeated headers form one list in order, so collect every hop before walking right to left
+        List<String> hops = new ArrayList<>();
+        Enumeration<String> headers = request.getHeaders("X-Forwarded-For");
+        while (headers != null && headers.hasMoreElements()) {
+            for (String hop : headers.nextElement().split(",")) {
+                String address = stripPort(hop.trim());
+                if (!address.isEmpty()) {
+                    hops.add(address);
+                }
+            }
+        }
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            if (!trusted.contains(hops.get(i))) {
+                return hops.get(i);
+            }
+        }
+        // Every hop is a trusted proxy: the left-most one is the closest to the client
+        return hops.isEmpty() ? remoteAddress : hops.get(0);
+    }
+
+    private static Proxies trustedProxies() {
+        String setting = AppConfig.get().get("TRUSTED_PROXIES", "");
+        Proxies current = proxies;
+        if (current.setting.equals(setting)) {
+            return current;
+        }
+        List<Range> ranges = new ArrayList<>();
+        for (String entry : setting.split(",")) {
+            String value = entry.trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            int slash = value.indexOf('/');
+            byte[] network = parse(slash >= 0 ? value.substring(0, slash) : value);
+            int prefixLength = -1;
+            if (network != null) {
+                try {
+                    prefixLength = slash >= 0 ? Integer.parseInt(value.substring(slash + 1)) : network.length * 8;
+                } catch (NumberFormatException e) {
+                    prefixLength = -1;
+                }
+            }
+            if (network == null || prefixLength < 0 || prefixLength > network.length * 8) {
+                Log.warn("Ignoring invalid TRUSTED_PROXIES entry", "entry", value);
+                continue;
+            }
+            ranges.add(new Range(network, prefixLength));
+        }
+        current = new Proxies(setting, Collections.unmodifiableList(ranges));
+        proxies = current;
+        return current;
+    }
+
+    /**
+     * Bytes of an IP literal, or null for anything else (host names are never resolved)
+     */
+    private static byte[] parse(String address) {
+        if (address == null || address.isEmpty()) {
+            return null;
+        }
+        boolean ipv6 = address.indexOf(':') >= 0;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            boolean allowed = c == '.' || Character.digit(c, 16) >= 0 || (ipv6 && (c == ':' || c == '%'));
+            if (!allowed || (!ipv6 && Character.isLetter(c))) {
+                return null;
+            }
+        }
+        try {
+            return InetAddress.getByName(address).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * "203.0.113.7:4711" -> "203.0.113.7", "[2001:db8::1]:4711" -> "2001:db8::1"
+     */
+    private static String stripPort(String hop) {
+        if (hop.startsWith("[")) {
+            int end = hop.indexOf(']');
+            return end > 0 ? hop.substring(1, end) : hop;
+        }
+        int colon = hop.indexOf(':');
+        if (colon >= 0 && colon == hop.lastIndexOf(':')) {
+            return hop.substring(0, colon);
+        }
+        return hop;
+    }
+}
@@ -1,11 +1,6 @@
 package com.globalpayments.example;
 
-import com.global.api.entities.enums.Channel;
-import com.global.api.entities.enums.Environment;
 import com.global.api.serviceConfigs.GpApiConfig;
-import com.global.api.services.GpApiService;
-import com.google.gson.Gson;
-import io.github.cdimascio.dotenv.Dotenv;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -13,8 +8,6 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,12 +16,9 @@ import java.util.Map;
  *
  * GET /config - Generate GP API access token for frontend tokenization
  */
-@WebServlet(name = "ConfigServlet", urlPatterns = {"/config"})
+@WebServlet(name = "ConfigServlet", urlPatterns = {"/config"}, loadOnStartup = 1)
 public class ConfigServlet extends HttpServlet {
 
-    private static final Gson gson = new Gson();
-    private static final Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
-
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
@@ -39,55 +29,33 @@ public class ConfigServlet extends HttpServlet {
         // Add CORS headers
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID");
+        response.setHeader("Access-Control-Expose-Headers", "X-Request-ID, Retry-After, RateLimit-Limit, RateLimit-Remaining, RateLimit-Reset");
 
         try {
-            String environment = dotenv.get("GP_API_ENVIRONMENT", "sandbox");
-            boolean isProduction = "production".equalsIgnoreCase(environment);
-
             // Configure GP API for session token generation
-            GpApiConfig config = new GpApiConfig();
-            config.setAppId(dotenv.get("GP_API_APP_ID"));
-            config.setAppKey(dotenv.get("GP_API_APP_KEY"));
-            config.setEnvironment(isProduction ? Environment.PRODUCTION : Environment.TEST);
-            config.setChannel(Channel.CardNotPresent);
-            config.setCountry("US");
+            GpApiConfig config = PaymentUtils.createGpApiConfig(AppConfig.get());
             config.setPermissions(new String[]{"PMT_POST_Create_Single"});
 
             // Generate session token for client-side use
-            var accessTokenInfo = GpApiService.generateTransactionKey(config);
+            String accessToken = PaymentUtils.generateAccessToken(config);
 
-            if (accessTokenInfo == null || accessTokenInfo.getAccessToken() == null || accessTokenInfo.getAccessToken().isEmpty()) {
+            if (accessToken == null || accessToken.isEmpty()) {
                 throw new Exception("Failed to generate session token");
             }
 
-            String accessToken = accessTokenInfo.getAccessToken();
-
-            System.out.println("Session token generated successfully: " +
-                accessToken.substring(0, Math.min(8, accessToken.length())) + "...");
+            Log.debug("Session token generated");
 
             Map<String, Object> data = new HashMap<>();
             data.put("accessToken", accessToken);
 
-            Map<String, Object> responseData = new HashMap<>();
-            responseData.put("success", true);
-            responseData.put("data", data);
-            responseData.put("message", "Configuration retrieved successfully");
-            responseData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-
-            response.getWriter().write(gson.toJson(responseData));
+            ApiResponse.ok(data, "Configuration retrieved successfully").write(response);
 
         } catch (Exception e) {
-            System.err.println("Configuration error: " + e.getMessage());
-
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "Error loading configuration: " + e.getMessage());
-            errorResponse.put("errorCode", "CONFIG_ERROR");
-            errorResponse.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            Log.error("Session token generation failed", e);
 
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            response.getWriter().write(gson.toJson(errorResponse));
+            ApiResponse.sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                    "Error loading configuration: " + e.getMessage(), "CONFIG_ERROR");
         }
     }
 
@@ -97,7 +65,7 @@ public class ConfigServlet extends HttpServlet {
 
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID");
         response.setStatus(HttpServletResponse.SC_OK);
     }
 }
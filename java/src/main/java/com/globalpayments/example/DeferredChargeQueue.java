@@ -0,0 +1,581 @@
+package com.globalpayments.example;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Store-and-forward queue for charges deferred during gateway outages
+ *
+ * When DEFERRED_CHARGES_ENABLED is set and a /charge request opts in with
+ * "deferOnOutage", a live charge that fails because the gateway is unreachable is
+ * written to a journal under data/deferred (and fsynced) before the client gets 202
+ * with a tracking ID. Worker threads replay queued charges at
+ * DEFERRED_CHARGE_RATE_PER_SECOND, backing off while the gateway is still down.
+ *
+ * Charges for the same payment method run strictly in order, one at a time. The
+ * idempotency key (the client's, or one generated by chargeOrDefer) is fixed before the
+ * live attempt and sent to the gateway on that attempt and every replay, so a live
+ * attempt that timed out after the gateway charged the card is not charged again. It
+ * also deduplicates resubmissions locally. The journal is replayed and compacted on
+ * startup; finished charges are forgotten RETENTION_MILLIS after they finish.
+ */
+public final class DeferredChargeQueue {
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_PROCESSING = "processing";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_FAILED = "failed";
+
+    private static final Path QUEUE_DIR = Paths.get("data", "deferred");
+    private static final Path JOURNAL = QUEUE_DIR.resolve("journal.jsonl");
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    private static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final Gson gson = new Gson();
+
+    private static final Object lock = new Object();
+    // Pending charges per payment method in arrival order; guarded by lock
+    private static final LinkedHashMap<String, ArrayDeque<DeferredCharge>> pending = new LinkedHashMap<>();
+    private static final Set<String> inFlight = new HashSet<>();
+
+    private static final ConcurrentHashMap<String, DeferredCharge> byTrackingId = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, DeferredCharge> byIdempotencyKey = new ConcurrentHashMap<>();
+    // Finished charges in finishing order, for the retention cutoff; guarded by lock
+    private static final ArrayDeque<DeferredCharge> finishedOrder = new ArrayDeque<>();
+
+    // Gateway call for live attempts and replays; replaced in tests
+    static volatile ChargeGateway gateway = PaymentUtils::processPaymentWithSDK;
+
+    private static final LongAdder enqueued = new LongAdder();
+    private static final LongAdder completed = new LongAdder();
+    private static final LongAdder failed = new LongAdder();
+    private static final LongAdder retries = new LongAdder();
+
+    private static FileChannel journal;
+    private static final List<Thread> workers = new ArrayList<>();
+    private static volatile boolean running = false;
+
+    private static volatile long pausedUntil = 0;
+    private static long backoffMillis = 0;
+    private static long nextPermitAt = 0;
+
+    /**
+     * A deferred charge and its current state
+     */
+    public static final class DeferredCharge {
+        String trackingId;
+        String idempotencyKey;
+        String paymentMethodId;
+        String amount;
+        String currency;
+        String createdAt;
+        long createdAtMillis;
+        volatile String status;
+        volatile int attempts;
+        volatile String transactionId;
+        volatile String errorCode;
+        volatile String message;
+        volatile long finishedAtMillis;
+
+        public String getTrackingId() {
+            return trackingId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("trackingId", trackingId);
+            map.put("idempotencyKey", idempotencyKey);
+            map.put("paymentMethodId", paymentMethodId);
+            map.put("amount", amount);
+            map.put("currency", currency);
+            map.put("createdAt", createdAt);
+            map.put("status", status);
+            map.put("attempts", attempts);
+            map.put("transactionId", transactionId);
+            map.put("errorCode", errorCode);
+            map.put("message", message);
+            return map;
+        }
+    }
+
+    /**
+     * Result of chargeOrDefer: the gateway result, or the charge queued in its place
+     */
+    public static final class Outcome {
+        public final Map<String, Object> result;
+        public final DeferredCharge deferred;
+
+        private Outcome(Map<String, Object> result, DeferredCharge deferred) {
+            this.result = result;
+            this.deferred = deferred;
+        }
+
+        public boolean isDeferred() {
+            return deferred != null;
+        }
+    }
+
+    interface ChargeGateway {
+        Map<String, Object> charge(String storedPaymentToken, BigDecimal amount, String currency,
+                                   String networkTransactionId, String idempotencyKey) throws Exception;
+    }
+
+    private DeferredChargeQueue() {
+    }
+
+    public static boolean isEnabled() {
+        return AppConfig.get().getBoolean("DEFERRED_CHARGES_ENABLED", false);
+    }
+
+    /**
+     * Replay the journal and start the workers
+     */
+    public static synchronized void start() {
+        if (running || !isEnabled()) {
+            return;
+        }
+        try {
+            Files.createDirectories(QUEUE_DIR);
+            replayJournal();
+            compactJournal();
+            journal = FileChannel.open(JOURNAL, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            Log.warn("Deferred charge queue disabled", "error", e.getMessage());
+            return;
+        }
+
+        running = true;
+        int workerCount = Math.max(1, AppConfig.get().getInt("DEFERRED_CHARGE_WORKERS", 2));
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(DeferredChargeQueue::workLoop, "deferred-charge-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        Log.info("Deferred charge queue started", "pending", pendingCount(), "workers", workerCount);
+    }
+
+    public static synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            Log.warn("Error closing deferred charge journal", "error", e.getMessage());
+        }
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Whether a payment method still has deferred charges waiting, in which case new
+     * deferrable charges must queue behind them to keep their order
+     */
+    public static boolean hasPending(String paymentMethodId) {
+        synchronized (lock) {
+            ArrayDeque<DeferredCharge> queue = pending.get(paymentMethodId);
+            return queue != null && !queue.isEmpty();
+        }
+    }
+
+    /**
+     * Charge already submitted with this idempotency key, if any
+     */
+    public static DeferredCharge findByIdempotencyKey(String idempotencyKey) {
+        return idempotencyKey != null ? byIdempotencyKey.get(idempotencyKey) : null;
+    }
+
+    public static DeferredCharge find(String trackingId) {
+        return byTrackingId.get(trackingId);
+    }
+
+    /**
+     * Charge now, or queue the charge if the gateway is unavailable
+     *
+     * The idempotency key is settled before the live attempt and the queued charge reuses
+     * it: a timeout does not mean the gateway declined, so the replay must be recognised
+     * as the same charge. Failures other than an outage are rethrown.
+     */
+    public static Outcome chargeOrDefer(String paymentMethodId, String storedPaymentToken, String networkTransactionId,
+                                        BigDecimal amount, String currency, String idempotencyKey) throws Exception {
+        String key = idempotencyKey != null && !idempotencyKey.isEmpty() ? idempotencyKey : IdGenerator.next("idem_");
+        try {
+            return new Outcome(gateway.charge(storedPaymentToken, amount, currency, networkTransactionId, key), null);
+        } catch (Exception e) {
+            if (!PaymentUtils.isGatewayUnavailable(e)) {
+                throw e;
+            }
+            return new Outcome(null, enqueue(paymentMethodId, amount, currency, key));
+        }
+    }
+
+    /**
+     * Durably enqueue a charge; returns the existing charge when the idempotency key was seen before
+     */
+    public static DeferredCharge enqueue(String paymentMethodId, BigDecimal amount, String currency,
+                                         String idempotencyKey) throws IOException {
+        if (!running) {
+            throw new IOException("Deferred charge queue is not running");
+        }
+        synchronized (lock) {
+            DeferredCharge existing = findByIdempotencyKey(idempotencyKey);
+            if (existing != null) {
+                return existing;
+            }
+
+            DeferredCharge charge = new DeferredCharge();
+            charge.trackingId = IdGenerator.next("dfr_");
+            charge.idempotencyKey = idempotencyKey != null ? idempotencyKey : charge.trackingId;
+            charge.paymentMethodId = paymentMethodId;
+            charge.amount = amount.toPlainString();
+            charge.currency = currency;
+            charge.createdAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            charge.createdAtMillis = System.currentTimeMillis();
+            charge.status = STATUS_QUEUED;
+
+            // Written and forced to disk before the caller acknowledges the charge
+            appendJournal("enqueued", charge, true);
+            track(charge);
+            pending.computeIfAbsent(paymentMethodId, k -> new ArrayDeque<>()).addLast(charge);
+            enqueued.increment();
+            lock.notifyAll();
+            return charge;
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("running", running);
+        stats.put("pending", pendingCount());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("retries", retries.sum());
+        stats.put("pausedForMs", Math.max(0, pausedUntil - System.currentTimeMillis()));
+        return stats;
+    }
+
+    private static int pendingCount() {
+        synchronized (lock) {
+            int count = 0;
+            for (ArrayDeque<DeferredCharge> queue : pending.values()) {
+                count += queue.size();
+            }
+            return count;
+        }
+    }
+
+    private static void workLoop() {
+        while (running) {
+            try {
+                DeferredCharge charge = take();
+                if (charge == null) {
+                    continue;
+                }
+                acquirePermit();
+                process(charge);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                Log.error("Deferred charge worker error", e);
+            }
+        }
+    }
+
+    /**
+     * Next charge whose payment method has nothing in flight, or null after a short wait
+     */
+    private static DeferredCharge take() throws InterruptedException {
+        synchronized (lock) {
+            long pauseLeft = pausedUntil - System.currentTimeMillis();
+            if (pauseLeft > 0) {
+                lock.wait(pauseLeft);
+                return null;
+            }
+            Iterator<Map.Entry<String, ArrayDeque<DeferredCharge>>> it = pending.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, ArrayDeque<DeferredCharge>> entry = it.next();
+                if (entry.getValue().isEmpty()) {
+                    it.remove();
+                    continue;
+                }
+                if (inFlight.add(entry.getKey())) {
+                    // Rotate the payment method to the back so others get a turn
+                    it.remove();
+                    pending.put(entry.getKey(), entry.getValue());
+                    DeferredCharge charge = entry.getValue().peekFirst();
+                    charge.status = STATUS_PROCESSING;
+                    return charge;
+                }
+            }
+            lock.wait(1000);
+            return null;
+        }
+    }
+
+    private static void acquirePermit() throws InterruptedException {
+        double ratePerSecond = AppConfig.get().getDouble("DEFERRED_CHARGE_RATE_PER_SECOND", 5.0);
+        long interval = ratePerSecond > 0 ? (long) (1000 / ratePerSecond) : 0;
+        long wait;
+        synchronized (DeferredChargeQueue.class) {
+            long now = System.currentTimeMillis();
+            long permitAt = Math.max(now, nextPermitAt);
+            nextPermitAt = permitAt + interval;
+            wait = permitAt - now;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+
+    private static void process(DeferredCharge charge) throws IOException {
+        charge.attempts++;
+        Map<String, Object> paymentMethod = JsonStorage.findPaymentMethod(charge.paymentMethodId);
+        if (paymentMethod == null) {
+            finish(charge, STATUS_FAILED, null, "NOT_FOUND", "Payment method not found");
+            return;
+        }
+
+        try {
+            Map<String, Object> result = gateway.charge(
+                    (String) paymentMethod.get("storedPaymentToken"),
+                    new BigDecimal(charge.amount),
+                    charge.currency,
+                    (String) paymentMethod.get("networkTransactionId"),
+                    charge.idempotencyKey);
+            synchronized (lock) {
+                backoffMillis = 0;
+            }
+            Log.info("Deferred charge completed", "trackingId", charge.trackingId, "transactionId", result.get("transactionId"));
+            finish(charge, STATUS_COMPLETED, (String) result.get("transactionId"), null, "Approved");
+        } catch (Exception e) {
+            if (PaymentUtils.isGatewayUnavailable(e)) {
+                retries.increment();
+                synchronized (lock) {
+                    backoffMillis = backoffMillis == 0 ? 1000 : Math.min(MAX_BACKOFF_MILLIS, backoffMillis * 2);
+                    pausedUntil = System.currentTimeMillis() + backoffMillis;
+                    charge.status = STATUS_QUEUED;
+                    inFlight.remove(charge.paymentMethodId);
+                    lock.notifyAll();
+                }
+                Log.warn("Gateway still unavailable, deferred charges paused", "backoffMs", backoffMillis);
+                return;
+            }
+            Log.warn("Deferred charge failed", "trackingId", charge.trackingId, "error", e.getMessage());
+            finish(charge, STATUS_FAILED, null, "PAYMENT_ERROR", e.getMessage());
+        }
+    }
+
+    private static void finish(DeferredCharge charge, String status, String transactionId,
+                               String errorCode, String message) throws IOException {
+        charge.transactionId = transactionId;
+        charge.errorCode = errorCode;
+        charge.message = message;
+        charge.finishedAtMillis = System.currentTimeMillis();
+        charge.status = status;
+
+        synchronized (lock) {
+            appendJournal(status, charge, false);
+            ArrayDeque<DeferredCharge> queue = pending.get(charge.paymentMethodId);
+            if (queue != null) {
+                queue.remove(charge);
+            }
+            inFlight.remove(charge.paymentMethodId);
+            finishedOrder.addLast(charge);
+            pruneFinished();
+            lock.notifyAll();
+        }
+        (STATUS_COMPLETED.equals(status) ? completed : failed).increment();
+
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("transactionId", transactionId);
+        entry.put("paymentMethodId", charge.paymentMethodId);
+        entry.put("amount", charge.amount);
+        entry.put("currency", charge.currency);
+        entry.put("status", STATUS_COMPLETED.equals(status) ? "approved" : "failed");
+        entry.put("mode", RequestMode.Mode.LIVE.tag());
+        entry.put("responseMessage", message);
+        entry.put("errorCode", errorCode);
+        entry.put("deferredTrackingId", charge.trackingId);
+        entry.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        TransactionLedger.record(entry);
+    }
+
+    /**
+     * Forget charges that finished more than RETENTION_MILLIS ago; callers hold lock
+     */
+    private static void pruneFinished() {
+        long cutoff = System.currentTimeMillis() - RETENTION_MILLIS;
+        while (!finishedOrder.isEmpty() && finishedOrder.peekFirst().finishedAtMillis < cutoff) {
+            DeferredCharge charge = finishedOrder.pollFirst();
+            byTrackingId.remove(charge.trackingId, charge);
+            byIdempotencyKey.remove(charge.idempotencyKey, charge);
+        }
+    }
+
+    private static void track(DeferredCharge charge) {
+        byTrackingId.put(charge.trackingId, charge);
+        byIdempotencyKey.put(charge.idempotencyKey, charge);
+    }
+
+    // Callers hold lock. Outcome records are not forced: if one is lost in a crash the
+    // charge is replayed with the same idempotency key, which the gateway deduplicates.
+    private static void appendJournal(String event, DeferredCharge charge, boolean force) throws IOException {
+        Map<String, Object> record = charge.toMap();
+        record.put("event", event);
+        record.put("createdAtMillis", charge.createdAtMillis);
+        record.put("finishedAtMillis", charge.finishedAtMillis);
+        ByteBuffer buffer = ByteBuffer.wrap((gson.toJson(record) + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        if (force) {
+            journal.force(false);
+        }
+    }
+
+    private static void replayJournal() throws IOException {
+        if (!Files.exists(JOURNAL)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(JOURNAL, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Map<?, ?> record;
+                try {
+                    record = gson.fromJson(line, Map.class);
+                } catch (RuntimeException e) {
+                    Log.warn("Skipping unreadable deferred charge journal entry");
+                    continue;
+                }
+                if (record == null || record.get("trackingId") == null) {
+                    continue;
+                }
+                String trackingId = (String) record.get("trackingId");
+                DeferredCharge charge = byTrackingId.get(trackingId);
+                if (charge == null) {
+                    charge = new DeferredCharge();
+                    charge.trackingId = trackingId;
+                    charge.idempotencyKey = (String) record.get("idempotencyKey");
+                    charge.paymentMethodId = (String) record.get("paymentMethodId");
+                    charge.amount = (String) record.get("amount");
+                    charge.currency = (String) record.get("currency");
+                    charge.createdAt = (String) record.get("createdAt");
+                    charge.createdAtMillis = toLong(record.get("createdAtMillis"));
+                    track(charge);
+                }
+                charge.status = (String) record.get("status");
+                charge.attempts = (int) toLong(record.get("attempts"));
+                charge.transactionId = (String) record.get("transactionId");
+                charge.errorCode = (String) record.get("errorCode");
+                charge.message = (String) record.get("message");
+                charge.finishedAtMillis = toLong(record.get("finishedAtMillis"));
+            }
+        }
+
+        // Anything not finished goes back on the queue in its original order
+        List<DeferredCharge> unfinished = new ArrayList<>();
+        for (DeferredCharge charge : byTrackingId.values()) {
+            if (!STATUS_COMPLETED.equals(charge.status) && !STATUS_FAILED.equals(charge.status)) {
+                charge.status = STATUS_QUEUED;
+                unfinished.add(charge);
+            }
+        }
+        unfinished.sort((a, b) -> a.trackingId.compareTo(b.trackingId));
+        synchronized (lock) {
+            for (DeferredCharge charge : unfinished) {
+                pending.computeIfAbsent(charge.paymentMethodId, k -> new ArrayDeque<>()).addLast(charge);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the journal with one record per pending or recently finished charge
+     */
+    private static void compactJournal() throws IOException {
+        long cutoff = System.currentTimeMillis() - RETENTION_MILLIS;
+        byTrackingId.values().removeIf(charge -> charge.finishedAtMillis > 0 && charge.finishedAtMillis < cutoff);
+        byIdempotencyKey.values().removeIf(charge -> !byTrackingId.containsKey(charge.trackingId));
+
+        List<DeferredCharge> retained = new ArrayList<>(byTrackingId.values());
+        List<DeferredCharge> finished = new ArrayList<>();
+        for (DeferredCharge charge : retained) {
+            if (charge.finishedAtMillis > 0) {
+                finished.add(charge);
+            }
+        }
+        finished.sort((a, b) -> Long.compare(a.finishedAtMillis, b.finishedAtMillis));
+        synchronized (lock) {
+            finishedOrder.clear();
+            finishedOrder.addAll(finished);
+        }
+
+        retained.sort((a, b) -> a.trackingId.compareTo(b.trackingId));
+        Path compacted = QUEUE_DIR.resolve("journal.jsonl.tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (DeferredCharge charge : retained) {
+                Map<String, Object> record = charge.toMap();
+                record.put("event", "snapshot");
+                record.put("createdAtMillis", charge.createdAtMillis);
+                record.put("finishedAtMillis", charge.finishedAtMillis);
+                writer.write(gson.toJson(record));
+                writer.write('\n');
+            }
+        }
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(compacted, JOURNAL, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
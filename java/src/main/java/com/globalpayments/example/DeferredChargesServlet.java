@@ -0,0 +1,64 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Deferred Charges Endpoint
+ *
+ * GET /deferred-charges?trackingId=... - Status of a charge queued during a gateway outage
+ * GET /deferred-charges                 - Queue statistics
+ */
+@WebServlet(name = "DeferredChargesServlet", urlPatterns = {"/deferred-charges"}, loadOnStartup = 1)
+public class DeferredChargesServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        handleCORS(response);
+
+        String trackingId = request.getParameter("trackingId");
+        Object data;
+        String message;
+        if (trackingId == null || trackingId.trim().isEmpty()) {
+            data = DeferredChargeQueue.stats();
+            message = "Deferred charge queue statistics";
+        } else {
+            DeferredChargeQueue.DeferredCharge charge = DeferredChargeQueue.find(trackingId.trim());
+            if (charge == null) {
+                sendErrorResponse(response, 404, "Deferred charge not found", "NOT_FOUND");
+                return;
+            }
+            data = charge.toMap();
+            message = "Deferred charge is " + charge.getStatus();
+        }
+
+        ApiResponse.ok(data, message).write(response);
+    }
+
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        handleCORS(response);
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    private void handleCORS(HttpServletResponse response) {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID");
+    }
+
+    private void sendErrorResponse(HttpServletResponse response, int statusCode, String message, String errorCode)
+            throws IOException {
+        ApiResponse.sendError(response, statusCode, message, errorCode);
+    }
+}
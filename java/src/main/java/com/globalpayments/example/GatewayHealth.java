@@ -0,0 +1,86 @@
+package com.globalpayments.example;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gateway reachability from the outcomes of real gateway calls
+ *
+ * PaymentUtils reports every live gateway call here; declines and rejected requests
+ * count as reachable, since the gateway answered. Readiness never makes a call of its
+ * own. The gateway is reported unreachable once HEALTH_GATEWAY_FAILURE_THRESHOLD calls
+ * in a row could not reach it, the last within HEALTH_GATEWAY_WINDOW_SECONDS. After the
+ * window passes without calls the state falls back to unknown and the next calls decide.
+ * HealthMonitor reports the state as a warning; it only fails readiness when
+ * HEALTH_GATEWAY_REQUIRED is set.
+ */
+public final class GatewayHealth {
+
+    public static final String STATE_UNKNOWN = "unknown";
+    public static final String STATE_REACHABLE = "reachable";
+    public static final String STATE_DEGRADED = "degraded";
+    public static final String STATE_UNREACHABLE = "unreachable";
+
+    private static final LongAdder reachable = new LongAdder();
+    private static final LongAdder unavailable = new LongAdder();
+    private static final AtomicInteger consecutiveUnavailable = new AtomicInteger();
+
+    private static volatile long lastReachableMillis = 0;
+    private static volatile long lastUnavailableMillis = 0;
+
+    private GatewayHealth() {
+    }
+
+    /**
+     * A gateway call got a response
+     */
+    public static void recordReachable() {
+        reachable.increment();
+        lastReachableMillis = System.currentTimeMillis();
+        if (consecutiveUnavailable.get() != 0) {
+            consecutiveUnavailable.set(0);
+        }
+    }
+
+    /**
+     * A gateway call failed; only network errors, timeouts and 5xx count against reachability
+     */
+    public static void recordFailure(Throwable failure) {
+        if (!PaymentUtils.isGatewayUnavailable(failure)) {
+            recordReachable();
+            return;
+        }
+        unavailable.increment();
+        lastUnavailableMillis = System.currentTimeMillis();
+        consecutiveUnavailable.incrementAndGet();
+    }
+
+    public static String state() {
+        long now = System.currentTimeMillis();
+        long windowMillis = AppConfig.get().getLong("HEALTH_GATEWAY_WINDOW_SECONDS", 60) * 1000L;
+        long lastCall = Math.max(lastReachableMillis, lastUnavailableMillis);
+        if (lastCall == 0 || now - lastCall > windowMillis) {
+            return STATE_UNKNOWN;
+        }
+        int failures = consecutiveUnavailable.get();
+        if (failures == 0) {
+            return STATE_REACHABLE;
+        }
+        return failures >= AppConfig.get().getInt("HEALTH_GATEWAY_FAILURE_THRESHOLD", 5)
+                ? STATE_UNREACHABLE
+                : STATE_DEGRADED;
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("state", state());
+        stats.put("consecutiveUnavailable", consecutiveUnavailable.get());
+        stats.put("reachableCalls", reachable.sum());
+        stats.put("unavailableCalls", unavailable.sum());
+        stats.put("lastReachableMillis", lastReachableMillis);
+        stats.put("lastUnavailableMillis", lastUnavailableMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,408 @@
+package com.globalpayments.example;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Local stand-in for the GP API gateway
+ *
+ * Speaks the subset of GP API used by this application (access token, card verify with
+ * multi-use token creation, charge, authorize and capture) so the live SDK code paths in
+ * PaymentUtils can be load tested offline. Point the SDK at it with GP_API_SERVICE_URL, or set
+ * GP_API_STUB_ENABLED=true to start it inside the web application on GP_API_STUB_PORT.
+ *
+ * Latency and failures are injected per request:
+ *   GP_API_STUB_LATENCY_MS  - base latency added to every request
+ *   GP_API_STUB_JITTER_MS   - uniformly distributed extra latency
+ *   GP_API_STUB_ERROR_RATE  - fraction of requests answered with a gateway error (HTTP 502)
+ *   GP_API_STUB_DECLINE_RATE - fraction of verify/charge requests that are declined
+ *
+ * The SDK only talks HTTPS, so the stub serves TLS with a self-signed localhost certificate
+ * generated by keytool on first start (or GP_API_STUB_KEYSTORE / GP_API_STUB_KEYSTORE_PASSWORD).
+ * When embedded, GpApiStubTrust makes the SDK accept that certificate on the stub's port only;
+ * the JVM trust store is left alone.
+ *
+ * Can also be run standalone: java -cp ... com.globalpayments.example.GpApiStubServer [port]
+ * The client JVM then needs -Djavax.net.ssl.trustStore pointing at the printed keystore.
+ */
+public class GpApiStubServer {
+
+    public static final String BASE_PATH = "/ucp";
+
+    private static final Gson gson = new Gson();
+    private static final DateTimeFormatter TIME_CREATED =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private static GpApiStubServer embedded;
+
+    private final int port;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final double declineRate;
+    private final int threads;
+    private final String keystorePath;
+    private final String keystorePassword;
+
+    private HttpsServer server;
+    private X509Certificate certificate;
+    private ExecutorService executor;
+
+    private final LongAdder accessTokens = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder charges = new LongAdder();
+    private final LongAdder captures = new LongAdder();
+    private final LongAdder declines = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+
+    public GpApiStubServer(AppConfig config) {
+        this(config, config.getInt("GP_API_STUB_PORT", 8089));
+    }
+
+    public GpApiStubServer(AppConfig config, int port) {
+        this.port = port;
+        this.latencyMs = config.getLong("GP_API_STUB_LATENCY_MS", 0);
+        this.jitterMs = config.getLong("GP_API_STUB_JITTER_MS", 0);
+        this.errorRate = config.getDouble("GP_API_STUB_ERROR_RATE", 0.0);
+        this.declineRate = config.getDouble("GP_API_STUB_DECLINE_RATE", 0.0);
+        this.threads = config.getInt("GP_API_STUB_THREADS", 64);
+        this.keystorePath = config.get("GP_API_STUB_KEYSTORE", null);
+        this.keystorePassword = config.get("GP_API_STUB_KEYSTORE_PASSWORD", "changeit");
+    }
+
+    /**
+     * Start the embedded stub if enabled in configuration. Never starts for production.
+     */
+    public static synchronized void startEmbeddedIfEnabled() {
+        AppConfig config = AppConfig.get();
+        if (embedded != null || !config.isStubEnabled()) {
+            return;
+        }
+        try {
+            GpApiStubServer stub = new GpApiStubServer(config);
+            stub.start();
+            GpApiStubTrust.install(stub.certificate, stub.port);
+            embedded = stub;
+        } catch (IOException | GeneralSecurityException e) {
+            System.err.println("Failed to start GP API stub server: " + e.getMessage());
+        }
+    }
+
+    public static synchronized void stopEmbedded() {
+        if (embedded != null) {
+            GpApiStubTrust.uninstall();
+            embedded.stop();
+            embedded = null;
+        }
+    }
+
+    /**
+     * Start serving and return the keystore holding the server certificate
+     */
+    public Path start() throws IOException, GeneralSecurityException {
+        Path keystore = keystorePath != null ? Paths.get(keystorePath) : generateKeystore();
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keystore)) {
+            keyStore.load(in, keystorePassword.toCharArray());
+        }
+        certificate = serverCertificate(keyStore);
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, keystorePassword.toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), null, null);
+
+        server = HttpsServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        server.createContext(BASE_PATH, this::handle);
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gp-api-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        System.out.println("GP API stub server listening on https://127.0.0.1:" + port + BASE_PATH
+                + " (latency " + latencyMs + "+" + jitterMs + " ms, error rate " + errorRate
+                + ", decline rate " + declineRate + ", keystore " + keystore + ")");
+        return keystore;
+    }
+
+    private static X509Certificate serverCertificate(KeyStore keyStore) throws GeneralSecurityException {
+        for (String alias : Collections.list(keyStore.aliases())) {
+            if (keyStore.isKeyEntry(alias) && keyStore.getCertificate(alias) instanceof X509Certificate) {
+                return (X509Certificate) keyStore.getCertificate(alias);
+            }
+        }
+        throw new KeyStoreException("Stub keystore has no X.509 key entry");
+    }
+
+    /**
+     * Create a self-signed certificate for localhost with the JDK keytool
+     */
+    private Path generateKeystore() throws IOException {
+        Path keystore = Files.createTempDirectory("gp-api-stub").resolve("stub-keystore.p12");
+        String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        Process process = new ProcessBuilder(keytool, "-genkeypair",
+                "-alias", "gp-api-stub",
+                "-keyalg", "RSA", "-keysize", "2048",
+                "-validity", "30",
+                "-dname", "CN=localhost",
+                "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-storetype", "PKCS12",
+                "-keystore", keystore.toString(),
+                "-storepass", keystorePassword,
+                "-keypass", keystorePassword)
+                .redirectErrorStream(true)
+                .start();
+        try {
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (process.waitFor() != 0) {
+                throw new IOException("keytool failed: " + output.trim());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating stub keystore", e);
+        }
+        return keystore;
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Request counters for load test reporting
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("accessTokens", accessTokens.sum());
+        stats.put("verifications", verifications.sum());
+        stats.put("charges", charges.sum());
+        stats.put("captures", captures.sum());
+        stats.put("declines", declines.sum());
+        stats.put("injectedErrors", injectedErrors.sum());
+        return stats;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/stats")) {
+                sendJson(exchange, 200, stats());
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "NOT_ALLOWED", "40000", "Method not allowed");
+                return;
+            }
+
+            Map<String, Object> body = readBody(exchange);
+            simulateLatency();
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.increment();
+                sendError(exchange, 502, "SYSTEM_ERROR_DOWNSTREAM", "50002", "Injected gateway error");
+                return;
+            }
+
+            if (path.endsWith("/accesstoken")) {
+                accessTokens.increment();
+                sendJson(exchange, 200, accessTokenResponse(body));
+            } else if (path.endsWith("/verifications")) {
+                verifications.increment();
+                sendJson(exchange, 200, transactionResponse(body, "VERIFY", "VERIFIED"));
+            } else if (path.endsWith("/transactions")) {
+                charges.increment();
+                boolean authorizeOnly = "LATER".equals(body.get("capture_mode"));
+                sendJson(exchange, 200, transactionResponse(body, "SALE", authorizeOnly ? "PREAUTHORIZED" : "CAPTURED"));
+            } else if (path.endsWith("/capture")) {
+                captures.increment();
+                sendJson(exchange, 200, transactionResponse(body, "SALE", "CAPTURED"));
+            } else {
+                sendError(exchange, 404, "RESOURCE_NOT_FOUND", "40008", "Unsupported stub endpoint: " + path);
+            }
+        } catch (Exception e) {
+            sendError(exchange, 500, "SYSTEM_ERROR", "50000", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Map<String, Object> accessTokenResponse(Map<String, Object> request) {
+        List<Map<String, String>> accounts = List.of(
+                account("TRA_stub", "transaction_processing"),
+                account("TKA_stub", "tokenization"),
+                account("DAA_stub", "dispute_management"),
+                account("RAA_stub", "settlement_reporting"));
+
+        Map<String, Object> scope = new HashMap<>();
+        scope.put("merchant_id", "MER_stub");
+        scope.put("merchant_name", "Stub Merchant");
+        scope.put("accounts", accounts);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("token", IdGenerator.next("stub_"));
+        response.put("type", "Bearer");
+        response.put("app_id", request.getOrDefault("app_id", "stub"));
+        response.put("app_name", "gp-api-stub");
+        response.put("time_created", TIME_CREATED.format(Instant.now()));
+        response.put("seconds_to_expire", 86400);
+        response.put("email", "stub@example.com");
+        response.put("scope", scope);
+        return response;
+    }
+
+    private Map<String, Object> transactionResponse(Map<String, Object> request, String type, String approvedStatus) {
+        boolean declined = declineRate > 0 && ThreadLocalRandom.current().nextDouble() < declineRate;
+        if (declined) {
+            declines.increment();
+        }
+
+        String token = null;
+        Object paymentMethod = request.get("payment_method");
+        if (paymentMethod instanceof Map) {
+            Object id = ((Map<?, ?>) paymentMethod).get("id");
+            token = id != null ? id.toString() : null;
+        }
+        Map<String, String> mockCard = MockResponses.getCardDetailsFromToken(token != null ? token : "");
+
+        Map<String, Object> card = new HashMap<>();
+        card.put("brand", gpApiBrand(mockCard.get("brand")));
+        card.put("masked_number_last4", "XXXXXXXXXXXX" + mockCard.get("last4"));
+        card.put("expiry_month", mockCard.get("expiryMonth"));
+        card.put("expiry_year", mockCard.get("expiryYear"));
+        card.put("authcode", declined ? "" : "A" + ThreadLocalRandom.current().nextInt(10000, 99999));
+        card.put("brand_reference", "BR" + ThreadLocalRandom.current().nextLong(100_000_000L, 999_999_999L));
+        card.put("cvv_result", "MATCHED");
+        card.put("avs_postal_code_result", "MATCHED");
+        card.put("avs_address_result", "MATCHED");
+
+        Map<String, Object> paymentMethodResponse = new HashMap<>();
+        paymentMethodResponse.put("result", declined ? "05" : "00");
+        paymentMethodResponse.put("message", declined ? "DECLINED" : "SUCCESS");
+        paymentMethodResponse.put("card", card);
+        // Verify with storage requested returns the new multi-use token as the payment method id
+        if ("VERIFY".equals(type)) {
+            paymentMethodResponse.put("id", IdGenerator.next("PMT_"));
+        }
+
+        Map<String, Object> action = new HashMap<>();
+        action.put("id", IdGenerator.next("ACT_"));
+        action.put("type", "VERIFY".equals(type) ? "VERIFY" : "AUTHORIZE");
+        action.put("time_created", TIME_CREATED.format(Instant.now()));
+        action.put("result_code", declined ? "DECLINED" : "SUCCESS");
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", IdGenerator.next("TRN_"));
+        response.put("time_created", TIME_CREATED.format(Instant.now()));
+        response.put("type", type);
+        response.put("status", declined ? "DECLINED" : approvedStatus);
+        response.put("channel", "CNP");
+        response.put("amount", request.getOrDefault("amount", "0"));
+        response.put("currency", request.getOrDefault("currency", "USD"));
+        response.put("reference", request.getOrDefault("reference", IdGenerator.next("REF_")));
+        response.put("batch_id", "");
+        response.put("payment_method", paymentMethodResponse);
+        response.put("card", card);
+        response.put("action", action);
+        return response;
+    }
+
+    private static Map<String, String> account(String id, String name) {
+        Map<String, String> account = new HashMap<>();
+        account.put("id", id);
+        account.put("name", name);
+        return account;
+    }
+
+    private static String gpApiBrand(String brand) {
+        switch (brand) {
+            case "Mastercard":
+                return "MASTERCARD";
+            case "American Express":
+                return "AMEX";
+            case "Discover":
+                return "DISCOVER";
+            default:
+                return "VISA";
+        }
+    }
+
+    private void simulateLatency() throws InterruptedException {
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (delay > 0) {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            Map<String, Object> body = gson.fromJson(reader, Map.class);
+            return body != null ? body : new HashMap<>();
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String errorCode, String detailedCode, String description)
+            throws IOException {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error_code", errorCode);
+        error.put("detailed_error_code", detailedCode);
+        error.put("detailed_error_description", description);
+        sendJson(exchange, status, error);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, GeneralSecurityException {
+        AppConfig config = AppConfig.get();
+        GpApiStubServer stub = args.length > 0
+                ? new GpApiStubServer(config, Integer.parseInt(args[0]))
+                : new GpApiStubServer(config);
+        stub.start();
+    }
+}
@@ -0,0 +1,176 @@
+package com.globalpayments.example;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.ManagerFactoryParameters;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.TrustManagerFactorySpi;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+/**
+ * Trust for the SDK's connections to the embedded GP API stub, and nothing else
+ *
+ * The SDK opens each HTTPS connection with SSLContext.init(null, null, null), which takes
+ * its trust managers from the default TrustManagerFactory, and has no hook for a trust
+ * store of its own. install() registers a TrustManagerFactory whose trust managers accept
+ * exactly the stub's self-signed certificate, and only when it is presented from the
+ * stub's loopback port. Every other peer goes to the standard PKIX trust manager over the
+ * JVM's normal trust store, so other HTTPS clients in the process trust what they did before.
+ */
+public final class GpApiStubTrust {
+
+    private static final String ALGORITHM = "GpApiStub";
+    private static final String DEFAULT_ALGORITHM_PROPERTY = "ssl.TrustManagerFactory.algorithm";
+
+    private static Provider provider;
+    private static String previousAlgorithm;
+
+    private GpApiStubTrust() {
+    }
+
+    /**
+     * Make the default TrustManagerFactory accept the stub certificate on the stub's port
+     */
+    public static synchronized void install(X509Certificate certificate, int port) {
+        uninstall();
+        provider = new Provider(ALGORITHM, "1.0", "Trust for the embedded GP API stub") {
+            {
+                putService(new Service(this, "TrustManagerFactory", ALGORITHM, Factory.class.getName(), null, null) {
+                    @Override
+                    public Object newInstance(Object constructorParameter) {
+                        return new Factory(certificate, port);
+                    }
+                });
+            }
+        };
+        Security.addProvider(provider);
+        previousAlgorithm = Security.getProperty(DEFAULT_ALGORITHM_PROPERTY);
+        Security.setProperty(DEFAULT_ALGORITHM_PROPERTY, ALGORITHM);
+    }
+
+    public static synchronized void uninstall() {
+        if (provider == null) {
+            return;
+        }
+        Security.setProperty(DEFAULT_ALGORITHM_PROPERTY, previousAlgorithm != null ? previousAlgorithm : "PKIX");
+        Security.removeProvider(provider.getName());
+        provider = null;
+    }
+
+    /**
+     * PKIX trust managers, each wrapped to also accept the stub
+     */
+    private static final class Factory extends TrustManagerFactorySpi {
+        private final X509Certificate certificate;
+        private final int port;
+        private final TrustManagerFactory pkix;
+
+        Factory(X509Certificate certificate, int port) {
+            this.certificate = certificate;
+            this.port = port;
+            try {
+                this.pkix = TrustManagerFactory.getInstance("PKIX");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("PKIX trust manager unavailable", e);
+            }
+        }
+
+        @Override
+        protected void engineInit(KeyStore keyStore) throws KeyStoreException {
+            pkix.init(keyStore);
+        }
+
+        @Override
+        protected void engineInit(ManagerFactoryParameters parameters) throws InvalidAlgorithmParameterException {
+            pkix.init(parameters);
+        }
+
+        @Override
+        protected TrustManager[] engineGetTrustManagers() {
+            TrustManager[] managers = pkix.getTrustManagers();
+            for (int i = 0; i < managers.length; i++) {
+                if (managers[i] instanceof X509ExtendedTrustManager) {
+                    managers[i] = new StubTrustManager((X509ExtendedTrustManager) managers[i], certificate, port);
+                }
+            }
+            return managers;
+        }
+    }
+
+    private static final class StubTrustManager extends X509ExtendedTrustManager {
+        private final X509ExtendedTrustManager delegate;
+        private final X509Certificate certificate;
+        private final int port;
+
+        StubTrustManager(X509ExtendedTrustManager delegate, X509Certificate certificate, int port) {
+            this.delegate = delegate;
+            this.certificate = certificate;
+            this.port = port;
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            if (isStub(chain, socket.getInetAddress(), socket.getPort())) {
+                return;
+            }
+            delegate.checkServerTrusted(chain, authType, socket);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            if (engine.getPeerHost() != null && isStub(chain, loopbackOrNull(engine.getPeerHost()), engine.getPeerPort())) {
+                return;
+            }
+            delegate.checkServerTrusted(chain, authType, engine);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            // No peer to check against, so never the stub
+            delegate.checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) throws CertificateException {
+            delegate.checkClientTrusted(chain, authType, socket);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) throws CertificateException {
+            delegate.checkClientTrusted(chain, authType, engine);
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            delegate.checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return delegate.getAcceptedIssuers();
+        }
+
+        private boolean isStub(X509Certificate[] chain, InetAddress address, int peerPort) {
+            return chain != null && chain.length > 0 && certificate.equals(chain[0])
+                    && address != null && address.isLoopbackAddress() && peerPort == port;
+        }
+
+        private static InetAddress loopbackOrNull(String host) {
+            if ("127.0.0.1".equals(host) || "localhost".equalsIgnoreCase(host)) {
+                return InetAddress.getLoopbackAddress();
+            }
+            return null;
+        }
+    }
+}
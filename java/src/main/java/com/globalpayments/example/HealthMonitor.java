@@ -0,0 +1,246 @@
+package com.globalpayments.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readiness checks, refreshed in the background
+ *
+ * Every HEALTH_REFRESH_MS a single thread runs the checks and publishes an immutable
+ * snapshot; /health/ready only reads it, so load balancer probes cost nothing however
+ * often they come. Checks report pass, warn or fail:
+ *
+ *   storage  - write and read back a probe file in data/, each within HEALTH_STORAGE_MAX_MS
+ *   sdk      - SDK configured or mock mode on
+ *   gateway  - reachability from recent gateway call outcomes (see GatewayHealth)
+ *   capacity - admission controller saturation below HEALTH_MAX_SATURATION
+ *
+ * Only the local checks, storage and capacity, decide readiness. A gateway outage hits
+ * every node at once, so failing readiness on it would take the whole fleet out of
+ * rotation while deferred charges could still be accepted; the gateway and SDK checks
+ * are reported as warnings instead. HEALTH_GATEWAY_REQUIRED=true makes an unreachable
+ * gateway fail readiness for deployments without store-and-forward.
+ *
+ * A snapshot older than three refresh intervals fails readiness too, since a check
+ * stuck on a hung disk is itself a reason to stop routing to the node.
+ */
+public final class HealthMonitor {
+
+    public static final String PASS = "pass";
+    public static final String WARN = "warn";
+    public static final String FAIL = "fail";
+
+    private static final Path PROBE_FILE = Paths.get("data", ".health-probe");
+
+    private static ScheduledExecutorService scheduler;
+    private static volatile boolean running = false;
+    private static volatile Snapshot snapshot;
+
+    /**
+     * Result of one refresh
+     */
+    private static final class Snapshot {
+        final boolean ready;
+        final Map<String, Object> checks;
+        final long checkedAtMillis;
+        final String checkedAt;
+
+        Snapshot(boolean ready, Map<String, Object> checks) {
+            this.ready = ready;
+            this.checks = checks;
+            this.checkedAtMillis = System.currentTimeMillis();
+            this.checkedAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+    }
+
+    private HealthMonitor() {
+    }
+
+    /**
+     * Run the checks once and schedule refreshes
+     */
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        refresh();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "health-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = refreshMillis();
+        scheduler.scheduleWithFixedDelay(HealthMonitor::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    public static synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Whether the latest snapshot is fresh and has no failed check
+     */
+    public static boolean isReady() {
+        Snapshot current = current();
+        return current.ready && !isStale(current);
+    }
+
+    /**
+     * Latest snapshot: ready, checkedAt, ageMs and the individual checks
+     */
+    public static Map<String, Object> readiness() {
+        Snapshot current = current();
+        boolean stale = isStale(current);
+        Map<String, Object> readiness = new LinkedHashMap<>();
+        readiness.put("ready", current.ready && !stale);
+        readiness.put("stale", stale);
+        readiness.put("checkedAt", current.checkedAt);
+        readiness.put("ageMs", System.currentTimeMillis() - current.checkedAtMillis);
+        readiness.put("checks", current.checks);
+        return readiness;
+    }
+
+    private static Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            // Not started (e.g. bootstrap failed); check inline rather than report nothing
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    private static boolean isStale(Snapshot current) {
+        return running && System.currentTimeMillis() - current.checkedAtMillis > 3 * refreshMillis();
+    }
+
+    private static long refreshMillis() {
+        return Math.max(100, AppConfig.get().getLong("HEALTH_REFRESH_MS", 5000));
+    }
+
+    private static void refresh() {
+        try {
+            Map<String, Object> checks = new LinkedHashMap<>();
+            checks.put("storage", checkStorage());
+            checks.put("sdk", checkSdk());
+            checks.put("gateway", checkGateway());
+            checks.put("capacity", checkCapacity());
+
+            boolean ready = true;
+            for (Object check : checks.values()) {
+                if (FAIL.equals(((Map<?, ?>) check).get("status"))) {
+                    ready = false;
+                }
+            }
+            snapshot = new Snapshot(ready, checks);
+        } catch (RuntimeException e) {
+            // Keep the scheduled refresh alive; the stale snapshot check covers repeated failures
+            Log.error("Health check refresh failed", e);
+        }
+    }
+
+    /**
+     * Write a probe file into the data directory and read it back
+     */
+    private static Map<String, Object> checkStorage() {
+        Map<String, Object> check = new HashMap<>();
+        long maxMillis = AppConfig.get().getLong("HEALTH_STORAGE_MAX_MS", 1000);
+        byte[] probe = IdGenerator.next("probe_").getBytes(StandardCharsets.UTF_8);
+        try {
+            long start = System.nanoTime();
+            Files.write(PROBE_FILE, probe);
+            long writeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            byte[] read = Files.readAllBytes(PROBE_FILE);
+            long readNanos = System.nanoTime() - start;
+
+            double writeMs = writeNanos / 1000 / 1000.0;
+            double readMs = readNanos / 1000 / 1000.0;
+            check.put("writeMs", writeMs);
+            check.put("readMs", readMs);
+            if (!Arrays.equals(probe, read)) {
+                check.put("status", FAIL);
+                check.put("message", "Probe file read back different content");
+            } else if (writeMs > maxMillis || readMs > maxMillis) {
+                check.put("status", FAIL);
+                check.put("message", "Storage slower than " + maxMillis + " ms");
+            } else {
+                check.put("status", PASS);
+            }
+        } catch (IOException e) {
+            check.put("status", FAIL);
+            check.put("message", "Data directory is not writable: " + e.getMessage());
+        }
+        return check;
+    }
+
+    private static Map<String, Object> checkSdk() {
+        Map<String, Object> check = new HashMap<>();
+        boolean configured = PaymentUtils.isSdkConfigured();
+        boolean mockMode = MockModeServlet.isMockModeEnabled();
+        check.put("configured", configured);
+        check.put("mockMode", mockMode);
+        check.put("status", configured ? PASS : WARN);
+        return check;
+    }
+
+    private static Map<String, Object> checkGateway() {
+        Map<String, Object> check = new HashMap<>(GatewayHealth.stats());
+        String state = (String) check.get("state");
+        boolean required = AppConfig.get().getBoolean("HEALTH_GATEWAY_REQUIRED", false)
+                && !MockModeServlet.isMockModeEnabled();
+        check.put("required", required);
+        if (GatewayHealth.STATE_UNREACHABLE.equals(state)) {
+            check.put("status", required ? FAIL : WARN);
+        } else if (GatewayHealth.STATE_DEGRADED.equals(state)) {
+            check.put("status", WARN);
+        } else {
+            check.put("status", PASS);
+        }
+        return check;
+    }
+
+    /**
+     * Admission controllers stand in for the request thread pools: saturation is
+     * in-flight plus queued requests over the concurrency limit
+     */
+    private static Map<String, Object> checkCapacity() {
+        Map<String, Object> check = new HashMap<>();
+        double maxSaturation = AppConfig.get().getDouble("HEALTH_MAX_SATURATION", 2.0);
+        String status = PASS;
+        for (Map.Entry<String, AdmissionController> entry : AdmissionFilter.controllers().entrySet()) {
+            AdmissionController controller = entry.getValue();
+            double saturation = controller.saturation();
+            boolean overloaded = controller.isOverloaded();
+            Map<String, Object> pool = new HashMap<>();
+            pool.put("saturation", Math.round(saturation * 100) / 100.0);
+            pool.put("overloaded", overloaded);
+            check.put(entry.getKey(), pool);
+            if (saturation >= maxSaturation) {
+                status = FAIL;
+            } else if (overloaded && PASS.equals(status)) {
+                status = WARN;
+            }
+        }
+        check.put("status", status);
+        return check;
+    }
+}
@@ -1,6 +1,5 @@
 package com.globalpayments.example;
 
-import com.google.gson.Gson;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -8,46 +7,104 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Health check endpoint
+ * Health check endpoints
  * 
- * GET /health - System health check
+ * GET /health       - System health check with component statistics
+ * GET /health/live  - Liveness: the process is up and serving requests
+ * GET /health/ready - Readiness: storage, SDK, gateway and capacity checks (503 when not ready)
+ *
+ * Readiness is served from the snapshot HealthMonitor refreshes in the background, so
+ * probes never touch storage or the gateway themselves.
  */
-@WebServlet(name = "HealthServlet", urlPatterns = {"/health"})
+@WebServlet(name = "HealthServlet", urlPatterns = {"/health", "/health/live", "/health/ready"}, loadOnStartup = 1)
 public class HealthServlet extends HttpServlet {
     
-    private static final Gson gson = new Gson();
-    
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
         
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
         
         // Add CORS headers
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID");
+        
+        String path = request.getServletPath();
+        if ("/health/live".equals(path)) {
+            handleLiveness(response);
+            return;
+        }
+        if ("/health/ready".equals(path)) {
+            handleReadiness(response);
+            return;
+        }
+        
+        boolean started = AppBootstrap.isReady();
+        boolean ready = started && HealthMonitor.isReady();
+        if (!ready) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
         
         Map<String, Object> healthData = new HashMap<>();
-        healthData.put("status", "healthy");
+        healthData.put("status", ready ? "healthy" : started ? "unhealthy" : "starting");
+        healthData.put("ready", ready);
+        healthData.put("readiness", HealthMonitor.readiness());
+        healthData.put("sdkConfigured", PaymentUtils.isSdkConfigured());
+        healthData.put("warmupMs", AppBootstrap.getWarmupMillis());
         healthData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         healthData.put("service", "multi-use-one-click-java");
         healthData.put("version", "1.0.0");
+        healthData.put("tokenCache", PaymentUtils.getCardDetailsCacheStats());
+        healthData.put("multiUseTokenCache", PaymentUtils.getMultiUseTokenCacheStats());
+        healthData.put("ledger", TransactionLedger.stats());
+        healthData.put("deferredCharges", DeferredChargeQueue.stats());
+        healthData.put("settlement", SettlementEngine.stats());
+        healthData.put("tokenHealth", TokenHealthChecker.stats());
+        healthData.put("velocity", VelocityLimiter.stats());
+        healthData.put("rateLimits", RateLimiter.stats());
+        healthData.put("admission", AdmissionFilter.stats());
+        healthData.put("events", PaymentMethodEvents.stats());
+        healthData.put("logging", Log.stats());
+        healthData.put("tracing", Trace.stats());
+        healthData.put("gateway", GatewayHealth.stats());
         
-        Map<String, Object> responseData = new HashMap<>();
-        responseData.put("success", true);
-        responseData.put("data", healthData);
-        responseData.put("message", "Service is healthy");
-        responseData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-        
-        response.getWriter().write(gson.toJson(responseData));
+        new ApiResponse(ready, healthData, ready ? "Service is healthy"
+                : started ? "Service is not ready" : "Service is starting", null).write(response);
+    }
+    
+    /**
+     * Liveness only says the container can run this servlet; dependency problems belong
+     * to readiness, so a gateway outage never gets the process restarted
+     */
+    private void handleLiveness(HttpServletResponse response) throws IOException {
+        Map<String, Object> liveData = new HashMap<>();
+        liveData.put("status", "alive");
+        liveData.put("uptimeMs", ManagementFactory.getRuntimeMXBean().getUptime());
+        liveData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        ApiResponse.ok(liveData, "Service is alive").write(response);
+    }
+    
+    private void handleReadiness(HttpServletResponse response) throws IOException {
+        boolean started = AppBootstrap.isReady();
+        Map<String, Object> readiness = HealthMonitor.readiness();
+        boolean ready = started && Boolean.TRUE.equals(readiness.get("ready"));
+        readiness.put("ready", ready);
+        readiness.put("started", started);
+        if (!ready) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+        new ApiResponse(ready, readiness, ready ? "Service is ready"
+                : started ? "Service is not ready" : "Service is starting", null).write(response);
     }
     
     @Override
@@ -56,7 +113,7 @@ public class HealthServlet extends HttpServlet {
         
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID");
         response.setStatus(HttpServletResponse.SC_OK);
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.globalpayments.example;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered ID generator
+ *
+ * IDs are a prefix followed by 23 Crockford base32 characters: 13 for a 64-bit
+ * timestamp/sequence value and 10 for 50 random bits. The timestamp/sequence value
+ * holds the epoch millisecond in its upper 42 bits and a per-millisecond sequence in
+ * its lower 22 bits, and is advanced with a CAS so IDs from one process are strictly
+ * increasing without locking. Because every ID has the same width, IDs with the same
+ * prefix sort lexicographically by creation time. The random part comes from
+ * ThreadLocalRandom, which avoids the shared SecureRandom behind UUID.randomUUID().
+ */
+public final class IdGenerator {
+
+    public static final String PAYMENT_METHOD_PREFIX = "pm_";
+    public static final String TRANSACTION_PREFIX = "txn_";
+    public static final String TOKEN_PREFIX = "token_";
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int SEQUENCE_BITS = 22;
+    private static final int RANDOM_BITS = 50;
+    private static final int ENCODED_LENGTH = 23;
+
+    private static final AtomicLong lastValue = new AtomicLong();
+
+    private IdGenerator() {
+    }
+
+    /**
+     * Next ID with the given prefix
+     */
+    public static String next(String prefix) {
+        long now = System.currentTimeMillis() << SEQUENCE_BITS;
+        // If the sequence overflows within a millisecond the value simply borrows from the next one
+        long value = lastValue.updateAndGet(previous -> Math.max(previous + 1, now));
+        long random = ThreadLocalRandom.current().nextLong() >>> (64 - RANDOM_BITS);
+
+        char[] chars = new char[prefix.length() + ENCODED_LENGTH];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        int offset = prefix.length();
+
+        // 64 bits in 13 characters: the first character carries the top 4 bits
+        chars[offset] = ALPHABET[(int) (value >>> 60)];
+        for (int i = 1; i < 13; i++) {
+            chars[offset + i] = ALPHABET[(int) ((value >>> (60 - 5 * i)) & 31)];
+        }
+        for (int i = 0; i < 10; i++) {
+            chars[offset + 13 + i] = ALPHABET[(int) ((random >>> (45 - 5 * i)) & 31)];
+        }
+        return new String(chars);
+    }
+
+    public static String paymentMethodId() {
+        return next(PAYMENT_METHOD_PREFIX);
+    }
+
+    public static String transactionId() {
+        return next(TRANSACTION_PREFIX);
+    }
+
+    public static String token() {
+        return next(TOKEN_PREFIX);
+    }
+
+    /**
+     * Creation time in epoch milliseconds of an ID made by this generator, or -1 if it is not one
+     */
+    public static long timestampOf(String id) {
+        int start = id.indexOf('_') + 1;
+        if (start == 0 || id.length() - start != ENCODED_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < 13; i++) {
+            int digit = decode(id.charAt(start + i));
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 5) | digit;
+        }
+        return value >>> SEQUENCE_BITS;
+    }
+
+    private static int decode(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
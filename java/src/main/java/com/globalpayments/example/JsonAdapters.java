@@ -0,0 +1,45 @@
+package com.globalpayments.example;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Bases for the one-way streaming adapters of the request and response DTOs
+ *
+ * Request bodies (ChargeRequest, PaymentMethodRequest, MockModeRequest) are only ever
+ * read and response views (ApiResponse, ChargeView, PaymentMethodView) only ever
+ * written, so each adapter implements one direction and inherits a refusal for the
+ * other. Both are registered on Gson instances that only use the implemented direction.
+ */
+final class JsonAdapters {
+
+    private JsonAdapters() {
+    }
+
+    /**
+     * Adapter for a type that is serialized but never parsed
+     */
+    abstract static class WriteOnly<T> extends TypeAdapter<T> {
+        @Override
+        public final T read(JsonReader in) {
+            throw new UnsupportedOperationException(typeName(this) + " is write-only");
+        }
+    }
+
+    /**
+     * Adapter for a type that is parsed but never serialized
+     */
+    abstract static class ReadOnly<T> extends TypeAdapter<T> {
+        @Override
+        public final void write(JsonWriter out, T value) {
+            throw new UnsupportedOperationException(typeName(this) + " is read-only");
+        }
+    }
+
+    // Adapters are nested in the type they handle
+    private static String typeName(TypeAdapter<?> adapter) {
+        Class<?> enclosing = adapter.getClass().getEnclosingClass();
+        return (enclosing != null ? enclosing : adapter.getClass()).getSimpleName();
+    }
+}
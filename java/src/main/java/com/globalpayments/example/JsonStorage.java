@@ -6,12 +6,14 @@ import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Simple JSON-based data storage for payment methods
@@ -22,6 +24,17 @@ public class JsonStorage {
     private static final String PAYMENT_METHODS_FILE = DATA_DIR + "/payment_methods.json";
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     
+    // Incremented after every write so readers can tell whether the stored list changed
+    private static final AtomicLong version = new AtomicLong();
+    
+    private static final String STORAGE_SECONDS = "storage_operation_duration_seconds";
+    private static final String STORAGE_HELP = "Payment method file load and save latency";
+    private static final Metrics.Histogram loadLatency = Metrics.histogram(STORAGE_SECONDS, STORAGE_HELP, "operation", "load");
+    private static final Metrics.Histogram saveLatency = Metrics.histogram(STORAGE_SECONDS, STORAGE_HELP, "operation", "save");
+    private static final Metrics.Counter bytesRead = Metrics.counter("storage_read_bytes_total", "Bytes read from the payment method file");
+    private static final Metrics.Counter bytesWritten = Metrics.counter("storage_written_bytes_total", "Bytes written to the payment method file");
+    private static final Metrics.Counter failures = Metrics.counter("storage_failures_total", "Failed payment method file loads and saves");
+    
     static {
         // Ensure data directory exists
         try {
@@ -43,13 +56,19 @@ public class JsonStorage {
             return new ArrayList<>();
         }
         
+        long start = System.nanoTime();
         try (FileReader reader = new FileReader(file)) {
             Type listType = new TypeToken<List<Map<String, Object>>>(){}.getType();
             List<Map<String, Object>> methods = gson.fromJson(reader, listType);
+            bytesRead.add(file.length());
             return methods != null ? methods : new ArrayList<>();
         } catch (IOException e) {
+            failures.increment();
             System.err.println("Error loading payment methods: " + e.getMessage());
             return new ArrayList<>();
+        } finally {
+            loadLatency.recordSince(start);
+            Trace.record("storage.load", start);
         }
     }
     
@@ -57,21 +76,37 @@ public class JsonStorage {
      * Save payment methods to JSON file
      */
     public static void savePaymentMethods(List<Map<String, Object>> methods) {
-        try (FileWriter writer = new FileWriter(PAYMENT_METHODS_FILE)) {
-            gson.toJson(methods, writer);
+        long start = System.nanoTime();
+        try {
+            byte[] json = gson.toJson(methods).getBytes(StandardCharsets.UTF_8);
+            Files.write(Paths.get(PAYMENT_METHODS_FILE), json);
+            bytesWritten.add(json.length);
         } catch (IOException e) {
+            failures.increment();
             System.err.println("Error saving payment methods: " + e.getMessage());
+        } finally {
+            version.incrementAndGet();
+            saveLatency.recordSince(start);
+            Trace.record("storage.save", start);
         }
     }
     
+    /**
+     * Store version, incremented after every write. Read it before loading: data loaded
+     * afterwards is at least this new, so it is never tagged with a newer version than it has.
+     */
+    public static long getVersion() {
+        return version.get();
+    }
+    
     /**
      * Add a new payment method
      */
-    public static Map<String, Object> addPaymentMethod(Map<String, Object> data) {
+    public static synchronized Map<String, Object> addPaymentMethod(Map<String, Object> data) {
         List<Map<String, Object>> methods = loadPaymentMethods();
         
         // Generate unique ID
-        String id = "pm_" + UUID.randomUUID().toString();
+        String id = IdGenerator.paymentMethodId();
         
         // Create payment method object
         Map<String, Object> paymentMethod = new HashMap<>();
@@ -99,10 +134,27 @@ public class JsonStorage {
         
         methods.add(paymentMethod);
         savePaymentMethods(methods);
+        PaymentMethodEvents.publish(PaymentMethodEvents.ADDED, PaymentMethodView.from(paymentMethod));
         
         return paymentMethod;
     }
     
+    /**
+     * Add a payment method unless one with the same stored payment token already exists,
+     * in which case the existing method is returned
+     */
+    public static synchronized Map<String, Object> addPaymentMethodIfAbsent(Map<String, Object> data) {
+        Object token = data.get("storedPaymentToken");
+        if (token != null) {
+            for (Map<String, Object> method : loadPaymentMethods()) {
+                if (token.equals(method.get("storedPaymentToken"))) {
+                    return method;
+                }
+            }
+        }
+        return addPaymentMethod(data);
+    }
+    
     /**
      * Find payment method by ID
      */
@@ -117,19 +169,12 @@ public class JsonStorage {
     /**
      * Get all payment methods formatted for display
      */
-    public static List<Map<String, Object>> getFormattedPaymentMethods() {
+    public static List<PaymentMethodView> getFormattedPaymentMethods() {
         List<Map<String, Object>> methods = loadPaymentMethods();
-        List<Map<String, Object>> formatted = new ArrayList<>();
+        List<PaymentMethodView> formatted = new ArrayList<>(methods.size());
         
         for (Map<String, Object> method : methods) {
-            Map<String, Object> formattedMethod = new HashMap<>();
-            formattedMethod.put("id", method.get("id"));
-            formattedMethod.put("brand", method.get("cardBrand"));
-            formattedMethod.put("last4", method.get("last4"));
-            formattedMethod.put("expiry", method.get("expiry"));
-            formattedMethod.put("nickname", method.get("nickname"));
-            formattedMethod.put("isDefault", method.get("isDefault"));
-            formatted.add(formattedMethod);
+            formatted.add(PaymentMethodView.from(method));
         }
         
         return formatted;
@@ -138,7 +183,7 @@ public class JsonStorage {
     /**
      * Update payment method
      */
-    public static Map<String, Object> updatePaymentMethod(String id, Map<String, Object> updateData) {
+    public static synchronized Map<String, Object> updatePaymentMethod(String id, Map<String, Object> updateData) {
         List<Map<String, Object>> methods = loadPaymentMethods();
         
         Map<String, Object> method = methods.stream()
@@ -155,31 +200,61 @@ public class JsonStorage {
         method.put("updatedAt", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         
         savePaymentMethods(methods);
+        PaymentMethodEvents.publish(PaymentMethodEvents.UPDATED, PaymentMethodView.from(method));
         return method;
     }
     
+    /**
+     * Apply updates to several payment methods with a single write; IDs that no longer
+     * exist are skipped. Returns the number of methods updated.
+     */
+    public static synchronized int updatePaymentMethods(Map<String, Map<String, Object>> updatesById) {
+        if (updatesById.isEmpty()) {
+            return 0;
+        }
+        List<Map<String, Object>> methods = loadPaymentMethods();
+        String now = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        List<Map<String, Object>> updated = new ArrayList<>();
+        for (Map<String, Object> method : methods) {
+            Map<String, Object> updateData = updatesById.get(method.get("id"));
+            if (updateData != null) {
+                method.putAll(updateData);
+                method.put("updatedAt", now);
+                updated.add(method);
+            }
+        }
+        if (!updated.isEmpty()) {
+            savePaymentMethods(methods);
+            for (Map<String, Object> method : updated) {
+                PaymentMethodEvents.publish(PaymentMethodEvents.UPDATED, PaymentMethodView.from(method));
+            }
+        }
+        return updated.size();
+    }
+    
     /**
      * Set a payment method as default (removes default from all others)
      */
-    public static void setDefaultPaymentMethod(String id) {
+    public static synchronized void setDefaultPaymentMethod(String id) {
         List<Map<String, Object>> methods = loadPaymentMethods();
-        boolean found = false;
+        Map<String, Object> found = null;
         
         for (Map<String, Object> method : methods) {
             if (id.equals(method.get("id"))) {
                 method.put("isDefault", true);
                 method.put("updatedAt", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-                found = true;
+                found = method;
             } else if (Boolean.TRUE.equals(method.get("isDefault"))) {
                 method.put("isDefault", false);
                 method.put("updatedAt", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
             }
         }
         
-        if (!found) {
+        if (found == null) {
             throw new RuntimeException("Payment method not found");
         }
         
         savePaymentMethods(methods);
+        PaymentMethodEvents.publish(PaymentMethodEvents.DEFAULT_CHANGED, PaymentMethodView.from(found));
     }
 }
\ No newline at end of file
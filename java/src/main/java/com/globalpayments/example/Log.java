@@ -0,0 +1,570 @@
+package com.globalpayments.example;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Structured application logging
+ *
+ * Records carry a level, a message, key/value fields and the request ID of the current
+ * trace (see Trace):
+ * <pre>
+ *   Log.info("Charge approved", "paymentMethodId", id, "transactionId", txnId);
+ *   Log.debug(() -> "Expensive detail " + build());
+ * </pre>
+ * A disabled level costs one volatile read. Enabled records are captured on the caller
+ * thread and handed to a lock-free ring buffer (LOG_BUFFER_SIZE records); a single
+ * appender thread does the formatting, masking and console output. If the buffer is
+ * full, DEBUG/INFO/WARN records are dropped and counted rather than blocking the
+ * request; ERROR records are then written directly.
+ *
+ * Masking is applied to every rendered line: values of sensitive fields (tokens, card
+ * numbers, CVV, customer contact details) are redacted, and card-number digit runs,
+ * payment tokens and e-mail addresses are redacted wherever they appear in messages.
+ *
+ * LOG_LEVEL (DEBUG, INFO, WARN, ERROR) is re-read when .env changes; LOG_FORMAT is
+ * text or json.
+ */
+public final class Log {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final Set<String> SENSITIVE_KEYS = Set.of(
+            "token", "paymenttoken", "storedpaymenttoken", "finaltoken", "multiusetoken",
+            "cardnumber", "number", "pan", "cvv", "cvn", "securitycode",
+            "email", "phone", "streetaddress", "address", "firstname", "lastname", "customername",
+            "billingzip", "postalcode", "authorization", "appkey", "apikey", "password", "secret");
+
+    private static final Pattern CARD_NUMBER = Pattern.compile("(?<!\\d)\\d(?:[ -]?\\d){11,18}(?!\\d)");
+    private static final Pattern PAYMENT_TOKEN = Pattern.compile("\\b(PMT|supt|token)_([A-Za-z0-9_-]+)");
+    private static final Pattern EMAIL = Pattern.compile("[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}");
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+    private static final int BATCH_CHARS = 32 * 1024;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final Object[] NO_FIELDS = new Object[0];
+
+    private static volatile int threshold = parseLevel(AppConfig.get().get("LOG_LEVEL", "INFO")).ordinal();
+    private static volatile boolean json = "json".equalsIgnoreCase(AppConfig.get().get("LOG_FORMAT", "text"));
+
+    private static final LongAdder written = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+
+    private static final ConcurrentHashMap<String, Boolean> sensitiveByKey = new ConcurrentHashMap<>();
+    private static volatile TimestampPrefix timestampPrefix = new TimestampPrefix(Long.MIN_VALUE, "");
+
+    private static volatile RingBuffer buffer;
+    private static volatile Thread appender;
+    private static volatile boolean appenderParked = false;
+    private static volatile boolean running = false;
+
+    static {
+        AppConfig.addListener(config -> {
+            threshold = parseLevel(config.get("LOG_LEVEL", "INFO")).ordinal();
+            json = "json".equalsIgnoreCase(config.get("LOG_FORMAT", "text"));
+        });
+    }
+
+    /**
+     * One captured log call; fields are key/value pairs
+     */
+    private static final class Record {
+        final long timeMillis;
+        final Level level;
+        final String thread;
+        final String requestId;
+        final String message;
+        final Object[] fields;
+        final Throwable error;
+
+        Record(Level level, String message, Object[] fields, Throwable error) {
+            this.timeMillis = System.currentTimeMillis();
+            this.level = level;
+            this.thread = Thread.currentThread().getName();
+            this.requestId = Trace.currentRequestId();
+            this.message = message;
+            this.fields = snapshot(fields);
+            this.error = error;
+        }
+    }
+
+    private static final class TimestampPrefix {
+        final long second;
+        final String text;
+
+        TimestampPrefix(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer ring buffer. Each slot carries a sequence
+     * number, so producers claim a slot with one CAS on the tail and publish it with a
+     * release write; the appender thread is the only reader of the head.
+     */
+    private static final class RingBuffer {
+        private final Record[] slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private long head;
+
+        RingBuffer(int capacity) {
+            slots = new Record[capacity];
+            sequences = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        boolean offer(Record record) {
+            long position = tail.get();
+            while (true) {
+                int index = (int) (position & mask);
+                long difference = sequences.getAcquire(index) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots[index] = record;
+                        sequences.setRelease(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return sequences.getAcquire((int) (head & mask)) != head + 1;
+        }
+
+        Record poll() {
+            int index = (int) (head & mask);
+            if (sequences.getAcquire(index) != head + 1) {
+                return null;
+            }
+            Record record = slots[index];
+            slots[index] = null;
+            sequences.setRelease(index, head + mask + 1);
+            head++;
+            return record;
+        }
+    }
+
+    private Log() {
+    }
+
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        int size = Integer.highestOneBit(Math.max(64, AppConfig.get().getInt("LOG_BUFFER_SIZE", 8192)));
+        buffer = new RingBuffer(size);
+        running = true;
+        appender = new Thread(Log::runAppender, "log-appender");
+        appender.setDaemon(true);
+        appender.start();
+    }
+
+    /**
+     * Stop the appender after writing everything already buffered
+     */
+    public static synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(appender);
+        try {
+            appender.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appender = null;
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public static boolean isDebugEnabled() {
+        return Level.DEBUG.ordinal() >= threshold;
+    }
+
+    public static void debug(String message, Object... fields) {
+        if (Level.DEBUG.ordinal() >= threshold) {
+            log(new Record(Level.DEBUG, message, fields, null));
+        }
+    }
+
+    /**
+     * Debug record whose message is only built when DEBUG is enabled
+     */
+    public static void debug(Supplier<String> message) {
+        if (Level.DEBUG.ordinal() >= threshold) {
+            log(new Record(Level.DEBUG, message.get(), NO_FIELDS, null));
+        }
+    }
+
+    public static void info(String message, Object... fields) {
+        if (Level.INFO.ordinal() >= threshold) {
+            log(new Record(Level.INFO, message, fields, null));
+        }
+    }
+
+    public static void info(Supplier<String> message) {
+        if (Level.INFO.ordinal() >= threshold) {
+            log(new Record(Level.INFO, message.get(), NO_FIELDS, null));
+        }
+    }
+
+    public static void warn(String message, Object... fields) {
+        if (Level.WARN.ordinal() >= threshold) {
+            log(new Record(Level.WARN, message, fields, null));
+        }
+    }
+
+    public static void error(String message, Object... fields) {
+        log(new Record(Level.ERROR, message, fields, null));
+    }
+
+    public static void error(String message, Throwable error, Object... fields) {
+        log(new Record(Level.ERROR, message, fields, error));
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("level", Level.values()[threshold].name());
+        stats.put("format", json ? "json" : "text");
+        stats.put("async", running);
+        stats.put("written", written.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    /**
+     * Redact card numbers, payment tokens and e-mail addresses in free text
+     */
+    public static String mask(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        String masked = text;
+        if (containsDigitRun(masked)) {
+            masked = replace(masked, CARD_NUMBER, match -> "****" + lastDigits(match, 4));
+        }
+        if (masked.indexOf('_') >= 0) {
+            masked = replace(masked, PAYMENT_TOKEN, match -> {
+                int separator = match.indexOf('_');
+                return match.substring(0, separator + 1) + "****" + tail(match, 4);
+            });
+        }
+        if (masked.indexOf('@') >= 0) {
+            masked = replace(masked, EMAIL, match -> "***@***");
+        }
+        return masked;
+    }
+
+    private static void log(Record record) {
+        RingBuffer ring = buffer;
+        if (running && ring != null) {
+            if (ring.offer(record)) {
+                if (appenderParked) {
+                    LockSupport.unpark(appender);
+                }
+                return;
+            }
+            if (record.level != Level.ERROR) {
+                dropped.increment();
+                return;
+            }
+        }
+        // Before start, after stop, and for errors that do not fit in the buffer
+        StringBuilder line = new StringBuilder(256);
+        format(record, line);
+        stream(record).print(line);
+        written.increment();
+    }
+
+    /**
+     * Drain the ring buffer, writing consecutive records for the same stream as one batch
+     */
+    private static void runAppender() {
+        StringBuilder batch = new StringBuilder(BATCH_CHARS + 1024);
+        PrintStream batchStream = System.out;
+        long reportedDrops = 0;
+        while (true) {
+            Record record = buffer.poll();
+            if (record != null) {
+                PrintStream stream = stream(record);
+                if (stream != batchStream || batch.length() >= BATCH_CHARS) {
+                    flush(batch, batchStream);
+                    batchStream = stream;
+                }
+                format(record, batch);
+                written.increment();
+                continue;
+            }
+            flush(batch, batchStream);
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                Record warning = new Record(Level.WARN, "Log buffer full, records dropped",
+                        new Object[]{"dropped", drops - reportedDrops}, null);
+                format(warning, batch);
+                flush(batch, stream(warning));
+                reportedDrops = drops;
+                continue;
+            }
+            if (!running) {
+                return;
+            }
+            appenderParked = true;
+            // Re-check after publishing the flag so a record offered meanwhile is not missed
+            if (buffer.isEmpty()) {
+                LockSupport.parkNanos(100_000_000L);
+            }
+            appenderParked = false;
+        }
+    }
+
+    private static void flush(StringBuilder batch, PrintStream stream) {
+        if (batch.length() > 0) {
+            stream.print(batch);
+            stream.flush();
+            batch.setLength(0);
+        }
+    }
+
+    private static PrintStream stream(Record record) {
+        return record.level.ordinal() >= Level.WARN.ordinal() ? System.err : System.out;
+    }
+
+    /**
+     * Append one formatted, masked line (with its line separator) to the builder
+     */
+    private static void format(Record record, StringBuilder line) {
+        if (json) {
+            formatJson(record, line);
+        } else {
+            formatText(record, line);
+        }
+        line.append(System.lineSeparator());
+    }
+
+    private static void formatText(Record record, StringBuilder line) {
+        appendTimestamp(line, record.timeMillis);
+        line.append(' ');
+        line.append(record.level.name());
+        for (int i = record.level.name().length(); i < 5; i++) {
+            line.append(' ');
+        }
+        line.append(" [").append(record.thread).append("] ");
+        if (record.requestId != null) {
+            line.append('[').append(record.requestId).append("] ");
+        }
+        line.append(mask(record.message));
+        Object[] fields = record.fields;
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            line.append(' ').append(fields[i]).append('=').append(fieldValue(fields[i], fields[i + 1]));
+        }
+        if (record.error != null) {
+            line.append(System.lineSeparator()).append(mask(stackTrace(record.error)));
+        }
+    }
+
+    private static void formatJson(Record record, StringBuilder line) {
+        line.append("{\"timestamp\":\"");
+        appendTimestamp(line, record.timeMillis);
+        line.append('"');
+        line.append(",\"level\":\"").append(record.level.name()).append('"');
+        line.append(",\"thread\":");
+        appendJsonString(line, record.thread);
+        if (record.requestId != null) {
+            line.append(",\"requestId\":");
+            appendJsonString(line, record.requestId);
+        }
+        line.append(",\"message\":");
+        appendJsonString(line, mask(record.message));
+        Object[] fields = record.fields;
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            line.append(',');
+            appendJsonString(line, String.valueOf(fields[i]));
+            line.append(':');
+            Object value = fields[i + 1];
+            if ((value instanceof Number || value instanceof Boolean) && !isSensitive(fields[i])) {
+                line.append(value);
+            } else {
+                appendJsonString(line, fieldValue(fields[i], value));
+            }
+        }
+        if (record.error != null) {
+            line.append(",\"error\":");
+            appendJsonString(line, mask(stackTrace(record.error)));
+        }
+        line.append('}');
+    }
+
+    private static String fieldValue(Object key, Object value) {
+        if (value == null) {
+            return "null";
+        }
+        String text = String.valueOf(value);
+        if (isSensitive(key)) {
+            return text.length() > 8 ? "****" + tail(text, 4) : "****";
+        }
+        return mask(text);
+    }
+
+    private static boolean isSensitive(Object key) {
+        // Field names are code literals, so the cache stays small
+        return sensitiveByKey.computeIfAbsent(String.valueOf(key), name ->
+                SENSITIVE_KEYS.contains(name.replace("_", "").replace("-", "").toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Values other than strings, numbers and booleans are rendered on the caller thread,
+     * since the appender formats them later
+     */
+    private static Object[] snapshot(Object[] fields) {
+        if (fields == null || fields.length == 0) {
+            return NO_FIELDS;
+        }
+        for (int i = 1; i < fields.length; i += 2) {
+            Object value = fields[i];
+            if (value != null && !(value instanceof String) && !(value instanceof Number)
+                    && !(value instanceof Boolean) && !(value instanceof Enum)) {
+                fields[i] = String.valueOf(value);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Local timestamp to the millisecond; the formatted second is reused across records
+     */
+    private static void appendTimestamp(StringBuilder line, long timeMillis) {
+        long second = Math.floorDiv(timeMillis, 1000L);
+        TimestampPrefix prefix = timestampPrefix;
+        if (prefix.second != second) {
+            prefix = new TimestampPrefix(second,
+                    TIMESTAMP.format(LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZONE)));
+            timestampPrefix = prefix;
+        }
+        int millis = (int) Math.floorMod(timeMillis, 1000L);
+        line.append(prefix.text).append('.');
+        if (millis < 100) {
+            line.append('0');
+        }
+        if (millis < 10) {
+            line.append('0');
+        }
+        line.append(millis);
+    }
+
+    private static String stackTrace(Throwable error) {
+        StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace));
+        return trace.toString().trim();
+    }
+
+    private static void appendJsonString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\t': line.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+    private static boolean containsDigitRun(String text) {
+        int run = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++run >= 4) {
+                    return true;
+                }
+            } else if (c != ' ' && c != '-') {
+                run = 0;
+            }
+        }
+        return false;
+    }
+
+    private static String replace(String text, Pattern pattern, UnaryOperator<String> replacement) {
+        Matcher matcher = pattern.matcher(text);
+        StringBuilder result = null;
+        int last = 0;
+        while (matcher.find()) {
+            if (result == null) {
+                result = new StringBuilder(text.length() + 8);
+            }
+            result.append(text, last, matcher.start()).append(replacement.apply(matcher.group()));
+            last = matcher.end();
+        }
+        if (result == null) {
+            return text;
+        }
+        return result.append(text, last, text.length()).toString();
+    }
+
+    private static String lastDigits(String text, int count) {
+        StringBuilder digits = new StringBuilder(count);
+        for (int i = text.length() - 1; i >= 0 && digits.length() < count; i--) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.insert(0, c);
+            }
+        }
+        return digits.toString();
+    }
+
+    private static String tail(String text, int count) {
+        return text.length() <= count ? "" : text.substring(text.length() - count);
+    }
+
+    private static Level parseLevel(String value) {
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (RuntimeException e) {
+            return Level.INFO;
+        }
+    }
+}
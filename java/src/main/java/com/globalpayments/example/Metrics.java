@@ -0,0 +1,198 @@
+package com.globalpayments.example;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-process metrics registry, exposed in Prometheus text format by MetricsServlet
+ *
+ * Counters are LongAdders and histograms are arrays of atomic bucket counts, so
+ * recording is a couple of uncontended atomic adds with no locks or allocation. Callers
+ * look a metric up once (usually into a static final field) and record into it on the
+ * hot path. Histograms use power-of-two microsecond buckets, from 1 µs up to about
+ * 67 s; the bucket for a value is found with a single leading-zero count.
+ */
+public final class Metrics {
+
+    private static final int BUCKETS = 28;
+    private static final String[] BUCKET_BOUNDS = new String[BUCKETS];
+
+    static {
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            BUCKET_BOUNDS[i] = BigDecimal.valueOf(1L << i).movePointLeft(6).stripTrailingZeros().toPlainString();
+        }
+        BUCKET_BOUNDS[BUCKETS - 1] = "+Inf";
+    }
+
+    private static final ConcurrentSkipListMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * Latency histogram in seconds; values are recorded in nanoseconds
+     */
+    public static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sumNanos = new LongAdder();
+
+        public void record(long nanos) {
+            long micros = Math.max(0, nanos) / 1000;
+            int index = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            buckets.getAndIncrement(index);
+            sumNanos.add(nanos);
+        }
+
+        /**
+         * Record the time elapsed since a System.nanoTime() reading
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+    }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final ConcurrentHashMap<String, Object> children = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Counter for a name and label pairs ("label", "value", ...); the same instance is
+     * returned for the same labels
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) child(name, help, "counter", labels, Counter::new);
+    }
+
+    public static Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) child(name, help, "histogram", labels, Histogram::new);
+    }
+
+    /**
+     * Render every registered metric in the Prometheus text exposition format
+     */
+    public static void writePrometheus(StringBuilder out) {
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            List<Map.Entry<String, Object>> children = new ArrayList<>(family.children.entrySet());
+            children.sort(Map.Entry.comparingByKey());
+            for (Map.Entry<String, Object> child : children) {
+                String labels = child.getKey();
+                Object metric = child.getValue();
+                if (metric instanceof Counter) {
+                    sample(out, family.name, labels, null, ((Counter) metric).get());
+                } else {
+                    writeHistogram(out, family.name, labels, (Histogram) metric);
+                }
+            }
+        }
+    }
+
+    private static void writeHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += histogram.buckets.get(i);
+            sample(out, name + "_bucket", labels, BUCKET_BOUNDS[i], cumulative);
+        }
+        out.append(name).append("_sum");
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(histogram.sumNanos.sum() / 1e9).append('\n');
+        sample(out, name + "_count", labels, null, cumulative);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, String le, Number value) {
+        out.append(name);
+        if (!labels.isEmpty() || le != null) {
+            out.append('{').append(labels);
+            if (le != null) {
+                if (!labels.isEmpty()) {
+                    out.append(',');
+                }
+                out.append("le=\"").append(le).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static Object child(String name, String help, String type, String[] labels, Supplier<Object> factory) {
+        Family family = family(name, help, type);
+        return family.children.computeIfAbsent(labelText(labels), key -> factory.get());
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static String labelText(String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"");
+            String value = labels[i + 1] != null ? labels[i + 1] : "";
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"') {
+                    text.append('\\').append(c);
+                } else if (c == '\n') {
+                    text.append("\\n");
+                } else {
+                    text.append(c);
+                }
+            }
+            text.append('"');
+        }
+        return text.toString();
+    }
+}
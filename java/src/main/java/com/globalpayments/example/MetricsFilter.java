@@ -0,0 +1,60 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Request latency per servlet, method and status for /metrics
+ *
+ * Runs first in the filter chain (see web.xml), so throttled and shed requests are
+ * measured too. Labels use the servlet name rather than the path to keep the series
+ * count bounded; for the same reason methods outside the standard set are labelled
+ * OTHER. A request whose chain throws is recorded as 500, whatever status the
+ * response held at the time. Requests left open in async mode (the event stream)
+ * are not timed.
+ */
+@WebFilter(filterName = "MetricsFilter", urlPatterns = {"/*"}, asyncSupported = true)
+public class MetricsFilter implements Filter {
+
+    private static final String REQUEST_SECONDS = "http_server_request_duration_seconds";
+
+    private static final Set<String> METHODS = Set.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS");
+
+    private static final ConcurrentHashMap<String, Metrics.Histogram> histograms = new ConcurrentHashMap<>();
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            chain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (!request.isAsyncStarted()) {
+                String method = METHODS.contains(request.getMethod()) ? request.getMethod() : "OTHER";
+                int status = completed ? response.getStatus() : HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                histogram(request.getHttpServletMapping().getServletName(), method, status).recordSince(start);
+            }
+        }
+    }
+
+    private static Metrics.Histogram histogram(String servlet, String method, int status) {
+        return histograms.computeIfAbsent(servlet + ' ' + method + ' ' + status, key ->
+                Metrics.histogram(REQUEST_SECONDS, "Request latency by servlet, method and status",
+                        "servlet", servlet, "method", method, "status", String.valueOf(status)));
+    }
+}
@@ -0,0 +1,37 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Metrics Endpoint
+ *
+ * GET /metrics - Request, storage, gateway and routing metrics in Prometheus text format
+ */
+@WebServlet(name = "MetricsServlet", urlPatterns = {"/metrics"}, loadOnStartup = 1)
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!AppConfig.get().getBoolean("METRICS_ENABLED", true)) {
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            ApiResponse.sendError(response, HttpServletResponse.SC_NOT_FOUND, "Metrics are disabled", "NOT_FOUND");
+            return;
+        }
+
+        StringBuilder body = new StringBuilder(16 * 1024);
+        Metrics.writePrometheus(body);
+
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        response.getWriter().write(body.toString());
+    }
+}
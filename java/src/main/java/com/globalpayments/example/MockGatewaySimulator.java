@@ -0,0 +1,338 @@
+package com.globalpayments.example;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mock gateway simulator
+ *
+ * Makes mock mode behave like a real gateway for load testing: every simulated call
+ * sleeps for a latency drawn from a configurable distribution (fixed, normal or
+ * long-tail log-normal) and may time out, and charges are declined at configurable
+ * per-reason rates drawn from the MockResponses decline table. Trigger amounts and
+ * trigger token substrings force a specific decline; any token containing
+ * "decline_<reason>" is declined with that reason.
+ *
+ * Settings are immutable and swapped atomically through POST /mock-mode.
+ */
+public class MockGatewaySimulator {
+
+    public static final String DISTRIBUTION_NONE = "none";
+    public static final String DISTRIBUTION_FIXED = "fixed";
+    public static final String DISTRIBUTION_NORMAL = "normal";
+    public static final String DISTRIBUTION_LONG_TAIL = "longtail";
+
+    private static final String TOKEN_DECLINE_PREFIX = "decline_";
+
+    private static volatile Settings settings = Settings.defaults();
+
+    /**
+     * Result of a simulated gateway call
+     */
+    public static class Outcome {
+        public final boolean approved;
+        public final boolean timedOut;
+        public final String declineReason;
+        public final long latencyMs;
+
+        private Outcome(boolean approved, boolean timedOut, String declineReason, long latencyMs) {
+            this.approved = approved;
+            this.timedOut = timedOut;
+            this.declineReason = declineReason;
+            this.latencyMs = latencyMs;
+        }
+    }
+
+    /**
+     * Immutable simulator settings
+     */
+    public static class Settings {
+        final String distribution;
+        final long latencyMs;
+        final long stdDevMs;
+        final double sigma;
+        final long timeoutMs;
+        final Map<String, Double> declineRates;
+        final Map<BigDecimal, String> triggerAmounts;
+        final Map<String, String> triggerTokens;
+
+        Settings(String distribution, long latencyMs, long stdDevMs, double sigma, long timeoutMs,
+                 Map<String, Double> declineRates, Map<BigDecimal, String> triggerAmounts,
+                 Map<String, String> triggerTokens) {
+            this.distribution = distribution;
+            this.latencyMs = latencyMs;
+            this.stdDevMs = stdDevMs;
+            this.sigma = sigma;
+            this.timeoutMs = timeoutMs;
+            this.declineRates = Collections.unmodifiableMap(new LinkedHashMap<>(declineRates));
+            this.triggerAmounts = Collections.unmodifiableMap(new LinkedHashMap<>(triggerAmounts));
+            this.triggerTokens = Collections.unmodifiableMap(new LinkedHashMap<>(triggerTokens));
+        }
+
+        static Settings defaults() {
+            return new Settings(DISTRIBUTION_NONE, 0, 0, 1.0, 0,
+                    new HashMap<>(), new HashMap<>(), new HashMap<>());
+        }
+
+        /**
+         * Apply a JSON settings object on top of these settings
+         */
+        @SuppressWarnings("unchecked")
+        Settings merge(Map<String, Object> update) {
+            String distribution = this.distribution;
+            long latencyMs = this.latencyMs;
+            long stdDevMs = this.stdDevMs;
+            double sigma = this.sigma;
+            long timeoutMs = this.timeoutMs;
+            Map<String, Double> declineRates = new LinkedHashMap<>(this.declineRates);
+            Map<BigDecimal, String> triggerAmounts = new LinkedHashMap<>(this.triggerAmounts);
+            Map<String, String> triggerTokens = new LinkedHashMap<>(this.triggerTokens);
+
+            Object latency = update.get("latency");
+            if (latency != null) {
+                if (!(latency instanceof Map)) {
+                    throw new IllegalArgumentException("latency must be an object");
+                }
+                Map<String, Object> l = (Map<String, Object>) latency;
+                if (l.get("distribution") != null) {
+                    distribution = l.get("distribution").toString().toLowerCase(Locale.ROOT);
+                    if (!DISTRIBUTION_NONE.equals(distribution) && !DISTRIBUTION_FIXED.equals(distribution)
+                            && !DISTRIBUTION_NORMAL.equals(distribution) && !DISTRIBUTION_LONG_TAIL.equals(distribution)) {
+                        throw new IllegalArgumentException("Unknown latency distribution: " + distribution);
+                    }
+                }
+                latencyMs = nonNegativeLong(l, "latencyMs", latencyMs);
+                stdDevMs = nonNegativeLong(l, "stdDevMs", stdDevMs);
+                timeoutMs = nonNegativeLong(l, "timeoutMs", timeoutMs);
+                if (l.get("sigma") != null) {
+                    sigma = toNumber(l.get("sigma"), "sigma");
+                    if (sigma < 0) {
+                        throw new IllegalArgumentException("sigma must not be negative");
+                    }
+                }
+            }
+
+            Object rates = update.get("declineRates");
+            if (rates != null) {
+                declineRates.clear();
+                double total = 0;
+                for (Map.Entry<String, Object> e : ((Map<String, Object>) rates).entrySet()) {
+                    requireKnownReason(e.getKey());
+                    double rate = toNumber(e.getValue(), "declineRates." + e.getKey());
+                    if (rate < 0 || rate > 1) {
+                        throw new IllegalArgumentException("Decline rate for " + e.getKey() + " must be between 0 and 1");
+                    }
+                    total += rate;
+                    declineRates.put(e.getKey(), rate);
+                }
+                if (total > 1) {
+                    throw new IllegalArgumentException("Decline rates must not add up to more than 1");
+                }
+            }
+
+            Object amounts = update.get("triggerAmounts");
+            if (amounts != null) {
+                triggerAmounts.clear();
+                for (Map.Entry<String, Object> e : ((Map<String, Object>) amounts).entrySet()) {
+                    String reason = String.valueOf(e.getValue());
+                    requireKnownReason(reason);
+                    try {
+                        triggerAmounts.put(new BigDecimal(e.getKey()).stripTrailingZeros(), reason);
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Invalid trigger amount: " + e.getKey());
+                    }
+                }
+            }
+
+            Object tokens = update.get("triggerTokens");
+            if (tokens != null) {
+                triggerTokens.clear();
+                for (Map.Entry<String, Object> e : ((Map<String, Object>) tokens).entrySet()) {
+                    String reason = String.valueOf(e.getValue());
+                    requireKnownReason(reason);
+                    triggerTokens.put(e.getKey().toLowerCase(Locale.ROOT), reason);
+                }
+            }
+
+            return new Settings(distribution, latencyMs, stdDevMs, sigma, timeoutMs,
+                    declineRates, triggerAmounts, triggerTokens);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("distribution", distribution);
+            latency.put("latencyMs", latencyMs);
+            latency.put("stdDevMs", stdDevMs);
+            latency.put("sigma", sigma);
+            latency.put("timeoutMs", timeoutMs);
+
+            Map<String, String> amounts = new LinkedHashMap<>();
+            for (Map.Entry<BigDecimal, String> e : triggerAmounts.entrySet()) {
+                amounts.put(e.getKey().toPlainString(), e.getValue());
+            }
+
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("latency", latency);
+            map.put("declineRates", declineRates);
+            map.put("triggerAmounts", amounts);
+            map.put("triggerTokens", triggerTokens);
+            map.put("declineReasons", MockResponses.DECLINE_REASONS.keySet());
+            return map;
+        }
+    }
+
+    public static Map<String, Object> getSettings() {
+        return settings.toMap();
+    }
+
+    /**
+     * Merge new settings into the current ones; throws IllegalArgumentException on invalid input
+     */
+    public static synchronized Map<String, Object> updateSettings(Map<String, Object> update) {
+        settings = settings.merge(update);
+        return settings.toMap();
+    }
+
+    public static synchronized Map<String, Object> resetSettings() {
+        settings = Settings.defaults();
+        return settings.toMap();
+    }
+
+    /**
+     * Simulate a charge: apply latency, then decide approval, decline or timeout
+     */
+    public static Outcome simulateCharge(BigDecimal amount, String storedPaymentToken) throws InterruptedException {
+        Settings current = settings;
+
+        long latency = current.timeoutMs > 0
+                ? Math.min(sampleLatency(current), current.timeoutMs)
+                : sampleLatency(current);
+        sleep(latency);
+        if (current.timeoutMs > 0 && latency >= current.timeoutMs) {
+            return new Outcome(false, true, null, latency);
+        }
+
+        String reason = forcedDecline(current, amount, storedPaymentToken);
+        if (reason == null) {
+            reason = randomDecline(current);
+        }
+        return new Outcome(reason == null, false, reason, latency);
+    }
+
+    /**
+     * Simulate a non-financial call such as a verify: latency and timeout only
+     */
+    public static Outcome simulateVerify() throws InterruptedException {
+        Settings current = settings;
+
+        long latency = current.timeoutMs > 0
+                ? Math.min(sampleLatency(current), current.timeoutMs)
+                : sampleLatency(current);
+        sleep(latency);
+        boolean timedOut = current.timeoutMs > 0 && latency >= current.timeoutMs;
+        return new Outcome(!timedOut, timedOut, null, latency);
+    }
+
+    private static long sampleLatency(Settings s) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (s.distribution) {
+            case DISTRIBUTION_FIXED:
+                return s.latencyMs;
+            case DISTRIBUTION_NORMAL:
+                return Math.max(0, Math.round(s.latencyMs + random.nextGaussian() * s.stdDevMs));
+            case DISTRIBUTION_LONG_TAIL:
+                // Log-normal with latencyMs as the median; sigma controls how heavy the tail is
+                return Math.max(0, Math.round(s.latencyMs * Math.exp(s.sigma * random.nextGaussian())));
+            default:
+                return 0;
+        }
+    }
+
+    private static String forcedDecline(Settings s, BigDecimal amount, String token) {
+        if (amount != null && !s.triggerAmounts.isEmpty()) {
+            String reason = s.triggerAmounts.get(amount.stripTrailingZeros());
+            if (reason != null) {
+                return reason;
+            }
+        }
+        if (token == null) {
+            return null;
+        }
+
+        String tokenLower = token.toLowerCase(Locale.ROOT);
+        for (Map.Entry<String, String> e : s.triggerTokens.entrySet()) {
+            if (tokenLower.contains(e.getKey())) {
+                return e.getValue();
+            }
+        }
+        int index = tokenLower.indexOf(TOKEN_DECLINE_PREFIX);
+        if (index >= 0) {
+            String suffix = tokenLower.substring(index + TOKEN_DECLINE_PREFIX.length());
+            for (String reason : MockResponses.DECLINE_REASONS.keySet()) {
+                if (suffix.startsWith(reason)) {
+                    return reason;
+                }
+            }
+            return "generic";
+        }
+        return null;
+    }
+
+    private static String randomDecline(Settings s) {
+        if (s.declineRates.isEmpty()) {
+            return null;
+        }
+        double roll = ThreadLocalRandom.current().nextDouble();
+        double cumulative = 0;
+        for (Map.Entry<String, Double> e : s.declineRates.entrySet()) {
+            cumulative += e.getValue();
+            if (roll < cumulative) {
+                return e.getKey();
+            }
+        }
+        return null;
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            long start = System.nanoTime();
+            TimeUnit.MILLISECONDS.sleep(millis);
+            Trace.record("gateway.mock", start);
+        }
+    }
+
+    private static void requireKnownReason(String reason) {
+        if (!MockResponses.DECLINE_REASONS.containsKey(reason)) {
+            throw new IllegalArgumentException("Unknown decline reason: " + reason);
+        }
+    }
+
+    private static long nonNegativeLong(Map<String, Object> map, String key, long current) {
+        Object value = map.get(key);
+        if (value == null) {
+            return current;
+        }
+        double number = toNumber(value, key);
+        if (number < 0) {
+            throw new IllegalArgumentException(key + " must not be negative");
+        }
+        return Math.round(number);
+    }
+
+    private static double toNumber(Object value, String key) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        try {
+            return Double.parseDouble(String.valueOf(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.globalpayments.example;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * POST /mock-mode body. Simulator settings are a free-form object validated by
+ * MockGatewaySimulator, so that one field is read as a generic value.
+ */
+public final class MockModeRequest {
+
+    public Boolean isEnabled;
+    public Object simulator;
+    public boolean resetSimulator;
+
+    static final class Adapter extends JsonAdapters.ReadOnly<MockModeRequest> {
+        @Override
+        public MockModeRequest read(JsonReader in) throws IOException {
+            MockModeRequest request = new MockModeRequest();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "isEnabled":
+                        request.isEnabled = RequestBody.nextBoolean(in);
+                        break;
+                    case "simulator":
+                        request.simulator = RequestBody.nextValue(in);
+                        break;
+                    case "resetSimulator":
+                        request.resetSimulator = Boolean.TRUE.equals(RequestBody.nextBoolean(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return request;
+        }
+    }
+}
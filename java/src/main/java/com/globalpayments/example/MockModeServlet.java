@@ -8,32 +8,34 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Mock Mode endpoint
  * 
- * GET /mock-mode - Get mock mode status
- * POST /mock-mode - Toggle mock mode
+ * GET /mock-mode - Get mock mode status and gateway simulator settings
+ * POST /mock-mode - Toggle mock mode and/or configure the gateway simulator
+ *                   (X-Mock-Mode-Key required when MOCK_MODE_API_KEY is set or in production)
+ *                   - isEnabled: turn mock mode on or off
+ *                   - simulator: latency, declineRates, triggerAmounts, triggerTokens (see MockGatewaySimulator)
+ *                   - resetSimulator: restore instant approvals
  */
-@WebServlet(name = "MockModeServlet", urlPatterns = {"/mock-mode"})
+@WebServlet(name = "MockModeServlet", urlPatterns = {"/mock-mode"}, loadOnStartup = 1)
 public class MockModeServlet extends HttpServlet {
     
     private static final Gson gson = new Gson();
     
-    // Global mock mode configuration
-    private static boolean mockModeEnabled = false;
+    // Global default mode; individual requests may override it (see RequestMode)
+    private static final AtomicBoolean mockModeEnabled = new AtomicBoolean(false);
     
     public static boolean isMockModeEnabled() {
-        return mockModeEnabled;
+        return mockModeEnabled.get();
     }
     
     public static void setMockModeEnabled(boolean enabled) {
-        mockModeEnabled = enabled;
+        mockModeEnabled.set(enabled);
     }
     
     @Override
@@ -42,18 +44,12 @@ public class MockModeServlet extends HttpServlet {
         
         handleCORS(response);
         
-        System.out.println("📊 MOCK MODE STATUS - Current state: " + getMockModeStatus());
-        
         Map<String, Object> mockModeConfig = new HashMap<>();
-        mockModeConfig.put("isEnabled", mockModeEnabled);
-        
-        Map<String, Object> responseData = new HashMap<>();
-        responseData.put("success", true);
-        responseData.put("data", mockModeConfig);
-        responseData.put("message", "Mock mode is " + getMockModeText());
-        responseData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        mockModeConfig.put("isEnabled", mockModeEnabled.get());
+        mockModeConfig.put("simulator", MockGatewaySimulator.getSettings());
+        mockModeConfig.put("requestsByMode", RequestMode.stats());
         
-        response.getWriter().write(gson.toJson(responseData));
+        ApiResponse.ok(mockModeConfig, "Mock mode is " + getMockModeText()).write(response);
     }
     
     @Override
@@ -62,36 +58,60 @@ public class MockModeServlet extends HttpServlet {
         
         handleCORS(response);
         
+        if (!RequestMode.mayChangeDefaults(request)) {
+            Log.warn("Mock mode change rejected: missing or invalid key");
+            sendErrorResponse(response, 403, "Mock mode change not authorized", "MOCK_MODE_FORBIDDEN");
+            return;
+        }
+        
         try {
-            // Parse JSON input
-            String jsonString = request.getReader().lines().collect(Collectors.joining());
-            @SuppressWarnings("unchecked")
-            Map<String, Object> data = gson.fromJson(jsonString, Map.class);
+            MockModeRequest data;
+            try {
+                data = RequestBody.read(request, MockModeRequest.class);
+            } catch (RequestBody.BodyException e) {
+                sendErrorResponse(response, e.getStatusCode(), e.getMessage(), e.getErrorCode());
+                return;
+            }
             
-            Boolean isEnabled = (Boolean) data.get("isEnabled");
-            if (isEnabled == null) {
+            Boolean isEnabled = data.isEnabled;
+            Object simulator = data.simulator;
+            boolean resetSimulator = data.resetSimulator;
+            if (isEnabled == null && simulator == null && !resetSimulator) {
                 sendErrorResponse(response, 400, "Invalid JSON format", "VALIDATION_ERROR");
                 return;
             }
+            if (simulator != null && !(simulator instanceof Map)) {
+                sendErrorResponse(response, 400, "simulator must be an object", "VALIDATION_ERROR");
+                return;
+            }
             
-            boolean previousState = mockModeEnabled;
-            mockModeEnabled = isEnabled;
+            // Simulator settings are applied first so invalid settings leave mock mode unchanged
+            if (resetSimulator) {
+                MockGatewaySimulator.resetSettings();
+            }
+            if (simulator != null) {
+                try {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> simulatorSettings = (Map<String, Object>) simulator;
+                    MockGatewaySimulator.updateSettings(simulatorSettings);
+                } catch (IllegalArgumentException | ClassCastException e) {
+                    sendErrorResponse(response, 400, "Invalid simulator settings: " + e.getMessage(), "VALIDATION_ERROR");
+                    return;
+                }
+                Log.info("Mock gateway simulator settings updated", "settings", gson.toJson(MockGatewaySimulator.getSettings()));
+            }
             
-            System.out.println("⚙️  MOCK MODE TOGGLE - Changed from " + 
-                getMockModeStatusFor(previousState) + " to " + getMockModeStatusFor(mockModeEnabled));
-            System.out.println("   ⏰ Timestamp: " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            System.out.println("   🎛️  New State: " + getMockModeDescription());
+            if (isEnabled != null) {
+                boolean previousState = mockModeEnabled.getAndSet(isEnabled);
+                Log.info("Global mock mode changed", "from", getMockModeTextFor(previousState),
+                        "to", getMockModeTextFor(isEnabled));
+            }
             
             Map<String, Object> mockModeConfig = new HashMap<>();
-            mockModeConfig.put("isEnabled", mockModeEnabled);
-            
-            Map<String, Object> responseData = new HashMap<>();
-            responseData.put("success", true);
-            responseData.put("data", mockModeConfig);
-            responseData.put("message", "Mock mode " + getMockModeText() + " successfully");
-            responseData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            mockModeConfig.put("isEnabled", mockModeEnabled.get());
+            mockModeConfig.put("simulator", MockGatewaySimulator.getSettings());
             
-            response.getWriter().write(gson.toJson(responseData));
+            ApiResponse.ok(mockModeConfig, "Mock mode " + getMockModeText() + " successfully").write(response);
             
         } catch (Exception e) {
             sendErrorResponse(response, 400, "Invalid JSON format", "VALIDATION_ERROR");
@@ -110,39 +130,20 @@ public class MockModeServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID, " + RequestMode.KEY_HEADER);
     }
     
     private void sendErrorResponse(HttpServletResponse response, int statusCode, String message, String errorCode) 
             throws IOException {
-        response.setStatus(statusCode);
-        
-        Map<String, Object> errorResponse = new HashMap<>();
-        errorResponse.put("success", false);
-        errorResponse.put("message", message);
-        errorResponse.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-        
-        if (errorCode != null) {
-            errorResponse.put("error_code", errorCode);
-        }
-        
-        response.getWriter().write(gson.toJson(errorResponse));
+        ApiResponse.sendError(response, statusCode, message, errorCode);
     }
     
     // Helper functions for mock mode
-    private String getMockModeStatus() {
-        return mockModeEnabled ? "🟡 ENABLED" : "🟢 DISABLED";
-    }
-    
-    private String getMockModeStatusFor(boolean enabled) {
-        return enabled ? "🟡 ENABLED" : "🟢 DISABLED";
-    }
-    
     private String getMockModeText() {
-        return mockModeEnabled ? "enabled" : "disabled";
+        return getMockModeTextFor(mockModeEnabled.get());
     }
     
-    private String getMockModeDescription() {
-        return mockModeEnabled ? "Mock mode will be used for all operations" : "Live API will be attempted first";
+    private String getMockModeTextFor(boolean enabled) {
+        return enabled ? "enabled" : "disabled";
     }
 }
\ No newline at end of file
@@ -3,21 +3,59 @@ package com.globalpayments.example;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Mock responses for testing payment scenarios
  */
 public class MockResponses {
 
+    /**
+     * Decline reason codes and their response messages
+     */
+    public static final Map<String, String> DECLINE_REASONS;
+
+    static {
+        Map<String, String> declineReasons = new LinkedHashMap<>();
+        declineReasons.put("insufficient_funds", "Insufficient Funds");
+        declineReasons.put("generic", "Card Declined");
+        declineReasons.put("pickup_card", "Pick Up Card");
+        declineReasons.put("lost_card", "Lost Card");
+        declineReasons.put("stolen_card", "Stolen Card");
+        declineReasons.put("expired_card", "Expired Card");
+        declineReasons.put("incorrect_cvc", "Incorrect CVC");
+        declineReasons.put("incorrect_zip", "Incorrect ZIP");
+        declineReasons.put("card_declined", "Card Declined");
+        declineReasons.put("invalid_account", "Invalid Account");
+        declineReasons.put("card_not_activated", "Card Not Activated");
+        declineReasons.put("processing_error", "Processing Error");
+        declineReasons.put("system_error", "System Error");
+        DECLINE_REASONS = Collections.unmodifiableMap(declineReasons);
+    }
+
+    /**
+     * Precomputed immutable decline responses, one per reason
+     */
+    private static final Map<String, Map<String, String>> DECLINE_RESPONSES;
+
+    static {
+        Map<String, Map<String, String>> declineResponses = new HashMap<>();
+        for (Map.Entry<String, String> e : DECLINE_REASONS.entrySet()) {
+            declineResponses.put(e.getKey(), declineResponse(e.getKey().toUpperCase(), e.getValue()));
+        }
+        DECLINE_RESPONSES = Collections.unmodifiableMap(declineResponses);
+    }
+
     /**
      * Get successful payment response
      */
     public static Map<String, Object> getPaymentResponse(BigDecimal amount, String paymentMethodId) {
         Map<String, Object> response = new HashMap<>();
-        response.put("transactionId", "txn_" + UUID.randomUUID().toString());
+        response.put("transactionId", IdGenerator.transactionId());
         response.put("amount", amount);
         response.put("currency", "USD");
         response.put("status", "approved");
@@ -26,45 +64,58 @@ public class MockResponses {
         response.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         
         Map<String, Object> gatewayResponse = new HashMap<>();
-        gatewayResponse.put("authCode", "A" + String.format("%05d", (int)(Math.random() * 100000)));
-        gatewayResponse.put("referenceNumber", "REF" + String.format("%010d", (int)(Math.random() * 1000000000)));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        gatewayResponse.put("authCode", zeroPadded("A", random.nextInt(100000), 5));
+        gatewayResponse.put("referenceNumber", zeroPadded("REF", random.nextInt(1000000000), 10));
         response.put("gatewayResponse", gatewayResponse);
         
         return response;
     }
     
     
+    /**
+     * Get successful authorization (not yet captured) response
+     */
+    public static Map<String, Object> getAuthorizationResponse(BigDecimal amount, String paymentMethodId) {
+        Map<String, Object> response = getPaymentResponse(amount, paymentMethodId);
+        response.put("status", "authorized");
+        response.put("responseMessage", "Authorized");
+        return response;
+    }
+
     /**
      * Get decline response with specific reason
      */
     public static Map<String, String> getDeclineResponse(String reason) {
-        Map<String, String> declineReasons = new HashMap<>();
-        declineReasons.put("insufficient_funds", "Insufficient Funds");
-        declineReasons.put("generic", "Card Declined"); 
-        declineReasons.put("pickup_card", "Pick Up Card");
-        declineReasons.put("lost_card", "Lost Card");
-        declineReasons.put("stolen_card", "Stolen Card");
-        declineReasons.put("expired_card", "Expired Card");
-        declineReasons.put("incorrect_cvc", "Incorrect CVC");
-        declineReasons.put("incorrect_zip", "Incorrect ZIP");
-        declineReasons.put("card_declined", "Card Declined");
-        declineReasons.put("invalid_account", "Invalid Account");
-        declineReasons.put("card_not_activated", "Card Not Activated");
-        declineReasons.put("processing_error", "Processing Error");
-        declineReasons.put("system_error", "System Error");
-        
+        Map<String, String> response = DECLINE_RESPONSES.get(reason);
+        return response != null ? response : declineResponse(reason.toUpperCase(), "Card Declined");
+    }
+
+    private static Map<String, String> declineResponse(String errorCode, String responseMessage) {
         Map<String, String> response = new HashMap<>();
-        response.put("errorCode", reason.toUpperCase());
-        response.put("responseMessage", declineReasons.getOrDefault(reason, "Card Declined"));
-        
-        return response;
+        response.put("errorCode", errorCode);
+        response.put("responseMessage", responseMessage);
+        return Collections.unmodifiableMap(response);
     }
     
     /**
      * Generate mock stored payment token
      */
     public static String generateMockStoredPaymentToken() {
-        return "token_" + UUID.randomUUID().toString().replace("-", "");
+        return IdGenerator.token();
+    }
+
+    /**
+     * Prefix followed by a non-negative number left-padded with zeros to the given width
+     */
+    private static String zeroPadded(String prefix, int number, int width) {
+        char[] chars = new char[prefix.length() + width];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        for (int i = chars.length - 1; i >= prefix.length(); i--) {
+            chars[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+        return new String(chars);
     }
     
     /**
@@ -0,0 +1,333 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-sent event hub for payment method changes
+ *
+ * JsonStorage publishes an event after every write (added, updated, default_changed).
+ * Each event is serialized once into an SSE frame and offered to every subscriber's
+ * bounded buffer of SSE_BUFFER_EVENTS frames; publishing never blocks the storage
+ * write path. Subscribers are drained by a small writer pool using servlet non-blocking
+ * output, so idle connections hold no thread.
+ *
+ * A subscriber that falls a full buffer behind has its buffer replaced with a single
+ * "resync" event telling the client to refetch the list. The most recent events are
+ * kept so a reconnecting client (Last-Event-ID) is replayed what it missed, or told
+ * to resync if the gap is too old.
+ *
+ * Event ids are "<epoch>-<sequence>", where the epoch is fixed at class load, since the
+ * sequence starts again from zero on every restart. An id from another epoch (an earlier
+ * run, or another node) or from ahead of the sequence cannot be replayed and gets resync.
+ */
+public final class PaymentMethodEvents {
+
+    public static final String ADDED = "added";
+    public static final String UPDATED = "updated";
+    public static final String DEFAULT_CHANGED = "default_changed";
+
+    private static final String RESYNC = "resync";
+    private static final int REPLAY_EVENTS = 256;
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36) + "-";
+
+    private static final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private static final ArrayDeque<Event> recent = new ArrayDeque<>();
+    private static long sequence;
+
+    private static final LongAdder published = new LongAdder();
+    private static final LongAdder resyncs = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+
+    private static ExecutorService writerPool;
+    private static ScheduledExecutorService heartbeat;
+    private static volatile boolean running = false;
+
+    private static final class Event {
+        final long id;
+        final byte[] frame;
+
+        Event(long id, byte[] frame) {
+            this.id = id;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * One open event stream: a bounded frame buffer drained with non-blocking writes
+     */
+    public static final class Subscriber implements WriteListener {
+        private final AsyncContext context;
+        private final ServletOutputStream out;
+        private final ArrayBlockingQueue<byte[]> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(AsyncContext context, ServletOutputStream out, int capacity) {
+            this.context = context;
+            this.out = out;
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Queue a frame; when the buffer is full, replace its contents with a resync event
+         */
+        void offer(byte[] frame) {
+            if (closed.get()) {
+                return;
+            }
+            if (!buffer.offer(frame)) {
+                buffer.clear();
+                buffer.offer(resyncFrame());
+                resyncs.increment();
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (running && scheduled.compareAndSet(false, true)) {
+                try {
+                    writerPool.execute(this::drain);
+                } catch (RuntimeException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * Write buffered frames while the connection accepts them without blocking
+         */
+        private void drain() {
+            try {
+                synchronized (this) {
+                    if (closed.get()) {
+                        return;
+                    }
+                    byte[] frame;
+                    while (out.isReady() && (frame = buffer.poll()) != null) {
+                        out.write(frame);
+                    }
+                    if (buffer.isEmpty() && out.isReady()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            // A frame offered while the flag was still set would otherwise wait for the next event
+            if (!buffer.isEmpty()) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            close();
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscribers.remove(this);
+                buffer.clear();
+                try {
+                    context.complete();
+                } catch (RuntimeException e) {
+                    // Already completed by the container
+                }
+            }
+        }
+    }
+
+    private PaymentMethodEvents() {
+    }
+
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        AppConfig config = AppConfig.get();
+        int writers = Math.max(1, config.getInt("SSE_WRITER_THREADS", 2));
+        AtomicInteger threadNumber = new AtomicInteger();
+        writerPool = Executors.newFixedThreadPool(writers, runnable -> {
+            Thread thread = new Thread(runnable, "sse-writer-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, config.getLong("SSE_HEARTBEAT_SECONDS", 15));
+        heartbeat.scheduleWithFixedDelay(PaymentMethodEvents::sendHeartbeat, interval, interval, TimeUnit.SECONDS);
+        running = true;
+    }
+
+    public static synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        heartbeat.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        writerPool.shutdown();
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Open a stream on an async request, replaying events after lastEventId if given.
+     * Returns null if the subscriber limit is reached.
+     */
+    public static Subscriber subscribe(AsyncContext context, String lastEventId) throws IOException {
+        if (subscribers.size() >= AppConfig.get().getInt("SSE_MAX_SUBSCRIBERS", 1000)) {
+            rejected.increment();
+            return null;
+        }
+        int capacity = Math.max(2, AppConfig.get().getInt("SSE_BUFFER_EVENTS", 64));
+        Subscriber subscriber = new Subscriber(context, context.getResponse().getOutputStream(), capacity);
+
+        synchronized (PaymentMethodEvents.class) {
+            long retryMillis = AppConfig.get().getLong("SSE_RETRY_MS", 3000);
+            subscriber.buffer.offer(("retry: " + retryMillis + "\n\n").getBytes(StandardCharsets.UTF_8));
+            if (lastEventId != null) {
+                replay(subscriber, lastEventId);
+            }
+            subscribers.add(subscriber);
+        }
+        // Registering the listener triggers the first onWritePossible
+        subscriber.out.setWriteListener(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Publish a change to every subscriber; called by JsonStorage after a write
+     */
+    public static void publish(String type, PaymentMethodView paymentMethod) {
+        if (!running) {
+            return;
+        }
+        Event event;
+        synchronized (PaymentMethodEvents.class) {
+            long id = ++sequence;
+            Map<String, Object> data = new HashMap<>();
+            data.put("type", type);
+            data.put("paymentMethod", paymentMethod);
+            data.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            event = new Event(id, frame(id, type, ApiResponse.GSON.toJson(data)));
+            recent.addLast(event);
+            if (recent.size() > REPLAY_EVENTS) {
+                recent.removeFirst();
+            }
+        }
+        published.increment();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event.frame);
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("running", running);
+        stats.put("subscribers", subscribers.size());
+        stats.put("published", published.sum());
+        stats.put("resyncs", resyncs.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    /**
+     * Queue the events a reconnecting client missed; caller holds the class lock
+     */
+    private static void replay(Subscriber subscriber, String lastEventIdValue) {
+        long lastEventId = sequenceOf(lastEventIdValue);
+        if (lastEventId < 0 || lastEventId > sequence) {
+            // Not an id this run handed out, so what the client missed is unknown
+            subscriber.buffer.offer(resyncFrame());
+            return;
+        }
+        if (lastEventId == sequence) {
+            return;
+        }
+        Event oldest = recent.peekFirst();
+        if (oldest == null || oldest.id > lastEventId + 1) {
+            subscriber.buffer.offer(resyncFrame());
+            return;
+        }
+        List<byte[]> missed = new ArrayList<>();
+        for (Event event : recent) {
+            if (event.id > lastEventId) {
+                missed.add(event.frame);
+            }
+        }
+        if (missed.size() >= subscriber.buffer.remainingCapacity()) {
+            subscriber.buffer.offer(resyncFrame());
+            return;
+        }
+        subscriber.buffer.addAll(missed);
+    }
+
+    /**
+     * Sequence number of an event id from this epoch, or -1
+     */
+    private static long sequenceOf(String eventId) {
+        if (!eventId.startsWith(EPOCH)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(EPOCH.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void sendHeartbeat() {
+        // Heartbeats also surface dead connections through write errors
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.buffer.offer(HEARTBEAT)) {
+                subscriber.schedule();
+            }
+        }
+    }
+
+    private static byte[] resyncFrame() {
+        return ("event: " + RESYNC + "\ndata: {\"type\":\"" + RESYNC + "\"}\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] frame(long id, String type, String json) {
+        return ("id: " + EPOCH + id + "\nevent: " + type + "\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,116 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Payment Method Events Endpoint
+ *
+ * GET /payment-methods/events - Server-sent event stream of payment method changes
+ *                               (added, updated, default_changed; resync when the client must refetch)
+ *
+ * The request goes async straight away and is written with non-blocking output by
+ * PaymentMethodEvents, so an idle stream holds no container thread.
+ */
+@WebServlet(name = "PaymentMethodEventsServlet", urlPatterns = {"/payment-methods/events"}, asyncSupported = true, loadOnStartup = 1)
+public class PaymentMethodEventsServlet extends HttpServlet {
+
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        handleCORS(response);
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        handleCORS(response);
+
+        if (!PaymentMethodEvents.isRunning()) {
+            sendErrorResponse(response, 503, "Event stream is not available", "EVENTS_UNAVAILABLE");
+            return;
+        }
+
+        AsyncContext context = request.startAsync();
+        context.setTimeout(AppConfig.get().getLong("SSE_TIMEOUT_MS", 0));
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        PaymentMethodEvents.Subscriber subscriber;
+        try {
+            subscriber = PaymentMethodEvents.subscribe(context, lastEventId(request));
+        } catch (IOException e) {
+            context.complete();
+            throw e;
+        }
+
+        if (subscriber == null) {
+            response.setContentType("application/json");
+            response.setHeader("Retry-After", "5");
+            sendErrorResponse(response, 503, "Too many event stream subscribers", "OVERLOADED");
+            context.complete();
+            return;
+        }
+
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                subscriber.close();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                // The client reconnects with Last-Event-ID and is replayed what it missed
+                subscriber.close();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                subscriber.close();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+
+    /**
+     * Last-Event-ID header sent by a reconnecting EventSource, or lastEventId query parameter
+     */
+    private String lastEventId(HttpServletRequest request) {
+        String value = request.getHeader("Last-Event-ID");
+        if (isEmpty(value)) {
+            value = request.getParameter("lastEventId");
+        }
+        return isEmpty(value) ? null : value.trim();
+    }
+
+    private void handleCORS(HttpServletResponse response) {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID, Last-Event-ID");
+        response.setHeader("Access-Control-Expose-Headers", "X-Request-ID, Retry-After");
+    }
+
+    private void sendErrorResponse(HttpServletResponse response, int statusCode, String message, String errorCode)
+            throws IOException {
+        ApiResponse.sendError(response, statusCode, message, errorCode);
+    }
+
+    private boolean isEmpty(String str) {
+        return str == null || str.trim().isEmpty();
+    }
+}
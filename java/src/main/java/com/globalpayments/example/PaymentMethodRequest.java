@@ -0,0 +1,132 @@
+package com.globalpayments.example;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * POST /payment-methods body for both operations: create (paymentToken with customerData
+ * and cardDetails, or storedPaymentToken) and edit (id). Customer data and card details
+ * are read straight into the objects the SDK call takes.
+ */
+public final class PaymentMethodRequest {
+
+    public String id;
+    public String paymentToken;
+    public String storedPaymentToken;
+    public String nickname;
+    public Boolean isDefault;
+    public PaymentUtils.CustomerData customerData;
+    public PaymentUtils.CardDetails cardDetails;
+
+    static final class Adapter extends JsonAdapters.ReadOnly<PaymentMethodRequest> {
+        @Override
+        public PaymentMethodRequest read(JsonReader in) throws IOException {
+            PaymentMethodRequest request = new PaymentMethodRequest();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        request.id = RequestBody.nextString(in);
+                        break;
+                    case "paymentToken":
+                        request.paymentToken = RequestBody.nextString(in);
+                        break;
+                    case "storedPaymentToken":
+                        request.storedPaymentToken = RequestBody.nextString(in);
+                        break;
+                    case "nickname":
+                        request.nickname = RequestBody.nextString(in);
+                        break;
+                    case "isDefault":
+                        request.isDefault = RequestBody.nextBoolean(in);
+                        break;
+                    case "customerData":
+                        request.customerData = readCustomerData(in);
+                        break;
+                    case "cardDetails":
+                        request.cardDetails = readCardDetails(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return request;
+        }
+
+        private static PaymentUtils.CustomerData readCustomerData(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            PaymentUtils.CustomerData customer = new PaymentUtils.CustomerData();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "first_name":
+                        customer.firstName = RequestBody.nextString(in);
+                        break;
+                    case "last_name":
+                        customer.lastName = RequestBody.nextString(in);
+                        break;
+                    case "email":
+                        customer.email = RequestBody.nextString(in);
+                        break;
+                    case "phone":
+                        customer.phone = RequestBody.nextString(in);
+                        break;
+                    case "street_address":
+                        customer.streetAddress = RequestBody.nextString(in);
+                        break;
+                    case "city":
+                        customer.city = RequestBody.nextString(in);
+                        break;
+                    case "state":
+                        customer.state = RequestBody.nextString(in);
+                        break;
+                    case "billing_zip":
+                        customer.billingZip = RequestBody.nextString(in);
+                        break;
+                    case "country":
+                        customer.country = RequestBody.nextString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return customer;
+        }
+
+        private static PaymentUtils.CardDetails readCardDetails(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            PaymentUtils.CardDetails card = new PaymentUtils.CardDetails();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "cardType":
+                        card.cardType = RequestBody.nextString(in);
+                        break;
+                    case "cardLast4":
+                        card.cardLast4 = RequestBody.nextString(in);
+                        break;
+                    case "expiryMonth":
+                        card.expiryMonth = RequestBody.nextString(in);
+                        break;
+                    case "expiryYear":
+                        card.expiryYear = RequestBody.nextString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return card;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.globalpayments.example;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Saved payment method as returned to clients: card display fields only, never the stored token
+ */
+public final class PaymentMethodView {
+
+    public final String id;
+    public final String brand;
+    public final String last4;
+    public final String expiry;
+    public final String nickname;
+    public final Boolean isDefault;
+    public final String tokenStatus;
+    public final Boolean mockMode;
+
+    public PaymentMethodView(String id, String brand, String last4, String expiry, String nickname,
+                             Boolean isDefault, String tokenStatus, Boolean mockMode) {
+        this.id = id;
+        this.brand = brand;
+        this.last4 = last4;
+        this.expiry = expiry;
+        this.nickname = nickname;
+        this.isDefault = isDefault;
+        this.tokenStatus = tokenStatus;
+        this.mockMode = mockMode;
+    }
+
+    /**
+     * View of a stored payment method record
+     */
+    public static PaymentMethodView from(Map<String, Object> stored) {
+        return from(stored, null);
+    }
+
+    /**
+     * View of a stored payment method record, flagged with the mode it was created or edited in
+     */
+    public static PaymentMethodView from(Map<String, Object> stored, Boolean mockMode) {
+        return new PaymentMethodView(
+                (String) stored.get("id"),
+                (String) stored.get("cardBrand"),
+                (String) stored.get("last4"),
+                (String) stored.get("expiry"),
+                (String) stored.get("nickname"),
+                (Boolean) stored.get("isDefault"),
+                (String) stored.get("tokenStatus"),
+                mockMode);
+    }
+
+    static final class Adapter extends JsonAdapters.WriteOnly<PaymentMethodView> {
+        @Override
+        public void write(JsonWriter out, PaymentMethodView value) throws IOException {
+            out.beginObject();
+            out.name("id").value(value.id);
+            out.name("brand").value(value.brand);
+            out.name("last4").value(value.last4);
+            out.name("expiry").value(value.expiry);
+            out.name("nickname").value(value.nickname);
+            out.name("isDefault").value(value.isDefault);
+            out.name("tokenStatus").value(value.tokenStatus);
+            out.name("mockMode").value(value.mockMode);
+            out.endObject();
+        }
+    }
+}
@@ -1,34 +1,69 @@
 package com.globalpayments.example;
 
-import com.google.gson.Gson;
-import io.github.cdimascio.dotenv.Dotenv;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Payment Methods Endpoint
  * 
- * GET /payment-methods - Retrieve saved payment methods
+ * GET /payment-methods - Retrieve saved payment methods (ETag / If-None-Match, gzip when accepted)
  * POST /payment-methods - Create new payment method (stored payment token) OR edit existing payment method
  *                         - Create: Requires storedPaymentToken (+ optional nickname, isDefault)
  *                         - Edit: Requires id (+ optional nickname, isDefault) - only nickname and default status can be edited
  */
-@WebServlet(name = "PaymentMethodsServlet", urlPatterns = {"/payment-methods"})
+@WebServlet(name = "PaymentMethodsServlet", urlPatterns = {"/payment-methods"}, loadOnStartup = 1)
 public class PaymentMethodsServlet extends HttpServlet {
     
-    private static final Gson gson = new Gson();
-    private final Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+    // Distinguishes ETags across restarts, since the store version starts again from zero
+    private static final String ETAG_PREFIX = "\"pm-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+    private static final int GZIP_MIN_BYTES = 1024;
+    
+    private static volatile CachedList cachedList;
+    
+    /**
+     * Serialized GET response for one store version, with a lazily built gzip variant.
+     * Each variant has its own strong ETag, since the two bodies differ byte for byte.
+     */
+    private static final class CachedList {
+        final long version;
+        final String etag;
+        final String gzipEtag;
+        final byte[] body;
+        volatile byte[] gzipBody;
+        
+        CachedList(long version, byte[] body) {
+            this.version = version;
+            this.etag = ETAG_PREFIX + version + "\"";
+            this.gzipEtag = ETAG_PREFIX + version + "-gz\"";
+            this.body = body;
+        }
+        
+        byte[] gzipped() throws IOException {
+            byte[] gzip = gzipBody;
+            if (gzip == null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4 + 64);
+                try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                    out.write(body);
+                }
+                gzip = buffer.toByteArray();
+                gzipBody = gzip;
+            }
+            return gzip;
+        }
+    }
     
     @Override
     public void init() throws ServletException {
@@ -46,15 +81,27 @@ public class PaymentMethodsServlet extends HttpServlet {
         handleCORS(response);
         
         try {
-            List<Map<String, Object>> paymentMethods = JsonStorage.getFormattedPaymentMethods();
+            CachedList list = currentList();
+            boolean gzip = list.body.length >= GZIP_MIN_BYTES && acceptsGzip(request.getHeader("Accept-Encoding"));
+            String etag = gzip ? list.gzipEtag : list.etag;
+            response.setHeader("ETag", etag);
+            response.setHeader("Cache-Control", "no-cache");
+            response.setHeader("Vary", "Accept-Encoding");
             
-            Map<String, Object> responseData = new HashMap<>();
-            responseData.put("success", true);
-            responseData.put("data", paymentMethods);
-            responseData.put("message", "Payment methods retrieved successfully");
-            responseData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            if (matchesETag(request.getHeader("If-None-Match"), etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                Trace.setServerTiming(response);
+                return;
+            }
             
-            response.getWriter().write(gson.toJson(responseData));
+            byte[] body = list.body;
+            if (gzip) {
+                body = list.gzipped();
+                response.setHeader("Content-Encoding", "gzip");
+            }
+            response.setContentLength(body.length);
+            Trace.setServerTiming(response);
+            response.getOutputStream().write(body);
             
         } catch (Exception e) {
             sendErrorResponse(response, 500, "Failed to retrieve payment methods", "SERVER_ERROR");
@@ -67,48 +114,47 @@ public class PaymentMethodsServlet extends HttpServlet {
         
         handleCORS(response);
         
+        RequestMode.Mode mode = RequestMode.resolve(request);
+        if (mode == null) {
+            sendErrorResponse(response, 403, "Mock mode override not authorized", "MOCK_MODE_FORBIDDEN");
+            return;
+        }
+        RequestMode.record("payment-methods", mode, response);
+        
         try {
-            // Parse JSON input
-            String jsonString = request.getReader().lines().collect(Collectors.joining());
-            @SuppressWarnings("unchecked")
-            Map<String, Object> data = gson.fromJson(jsonString, Map.class);
-
-            // Log incoming request for debugging
-            System.out.println("📥 PAYMENT METHOD REQUEST RECEIVED:");
-            System.out.println("   ⏰ Timestamp: " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            System.out.println("   📄 Raw JSON Length: " + jsonString.length() + " chars");
-            System.out.println("   🔍 Parsed Keys: " + (data != null ? data.keySet() : "null"));
-            if (data != null) {
-                System.out.println("   🔑 paymentToken (camelCase): " + (data.get("paymentToken") != null ? "present" : "missing"));
-                System.out.println("   🔑 payment_token (snake_case): " + (data.get("payment_token") != null ? "present" : "missing"));
-                System.out.println("   🔑 storedPaymentToken: " + (data.get("storedPaymentToken") != null ? "present" : "missing"));
-                System.out.println("   🔑 id: " + (data.get("id") != null ? "present" : "missing"));
-                System.out.println("   🔑 customerData: " + (data.get("customerData") != null ? "present" : "missing"));
-                System.out.println("   🔑 cardDetails: " + (data.get("cardDetails") != null ? "present" : "missing"));
+            PaymentMethodRequest data;
+            try {
+                data = RequestBody.read(request, PaymentMethodRequest.class);
+            } catch (RequestBody.BodyException e) {
+                Log.warn("Payment method rejected: invalid body", "reason", e.getMessage());
+                sendErrorResponse(response, e.getStatusCode(), e.getMessage(), e.getErrorCode());
+                return;
             }
 
+            // Log incoming request shape for debugging (never values)
+            Log.debug("Payment method request received", "edit", data.id != null,
+                    "paymentToken", data.paymentToken != null, "storedPaymentToken", data.storedPaymentToken != null,
+                    "mode", mode);
+
             // Check if this is an edit operation
-            if (data != null && data.get("id") != null) {
-                System.out.println("✏️  EDIT OPERATION DETECTED - Routing to handleEditPaymentMethod");
+            if (data.id != null) {
                 handleEditPaymentMethod(response, data);
                 return;
             }
 
             // Check if this is a multi-use token creation with customer data
-            String paymentToken = (String) data.get("paymentToken");
-            String storedPaymentToken = (String) data.get("storedPaymentToken");
+            String paymentToken = data.paymentToken;
+            String storedPaymentToken = data.storedPaymentToken;
 
             // Validate required fields - either paymentToken + customerData for multi-use, or storedPaymentToken for existing
             if (paymentToken == null && storedPaymentToken == null) {
-                System.err.println("❌ VALIDATION ERROR:");
-                System.err.println("   Both paymentToken and storedPaymentToken are missing");
-                System.err.println("   Available keys: " + (data != null ? data.keySet() : "null"));
+                Log.warn("Payment method rejected: missing payment token");
                 sendErrorResponse(response, 400, "Missing required payment token or stored payment token", "VALIDATION_ERROR");
                 return;
             }
 
-            String nickname = (String) data.get("nickname");
-            Boolean isDefault = (Boolean) data.get("isDefault");
+            String nickname = data.nickname;
+            Boolean isDefault = data.isDefault;
             
             boolean mockMode = false;
             Map<String, String> cardDetails = null;
@@ -116,41 +162,33 @@ public class PaymentMethodsServlet extends HttpServlet {
 
             // Handle multi-use token creation with customer data
             if (paymentToken != null) {
-                System.out.println("🔄 MULTI-USE TOKEN CREATION FLOW:");
-                System.out.println("   📍 Payment Token: " + paymentToken.substring(0, Math.min(12, paymentToken.length())) + "...");
 
-                @SuppressWarnings("unchecked")
-                Map<String, String> customerDataMap = (Map<String, String>) data.get("customerData");
-                @SuppressWarnings("unchecked")
-                Map<String, String> cardDetailsMap = (Map<String, String>) data.get("cardDetails");
+                PaymentUtils.CustomerData customerData = data.customerData;
+                PaymentUtils.CardDetails cardDetailObj = data.cardDetails;
 
-                if (customerDataMap == null || cardDetailsMap == null) {
-                    System.err.println("❌ VALIDATION ERROR:");
-                    System.err.println("   customerData present: " + (customerDataMap != null));
-                    System.err.println("   cardDetails present: " + (cardDetailsMap != null));
+                if (customerData == null || cardDetailObj == null) {
+                    Log.warn("Payment method rejected: missing customer data or card details",
+                            "customerData", customerData != null, "cardDetails", cardDetailObj != null);
                     sendErrorResponse(response, 400, "Customer data and card details required for multi-use token creation", "VALIDATION_ERROR");
                     return;
                 }
 
-                System.out.println("   👤 Customer: " + customerDataMap.get("first_name") + " " + customerDataMap.get("last_name"));
-                System.out.println("   💳 Card Type: " + cardDetailsMap.get("cardType"));
-                System.out.println("   🔢 Last 4: " + cardDetailsMap.get("cardLast4"));
-
-                PaymentUtils.CustomerData customerData = new PaymentUtils.CustomerData(customerDataMap);
-                PaymentUtils.CardDetails cardDetailObj = new PaymentUtils.CardDetails(cardDetailsMap);
+                Log.debug("Creating multi-use token", "paymentToken", paymentToken,
+                        "cardType", cardDetailObj.cardType, "last4", cardDetailObj.cardLast4);
 
                 // Create multi-use token with customer data or use mock
-                if (MockModeServlet.isMockModeEnabled()) {
+                if (mode == RequestMode.Mode.MOCK) {
                     mockMode = true;
+                    if (MockGatewaySimulator.simulateVerify().timedOut) {
+                        Log.warn("Mock token creation timed out");
+                        sendErrorResponse(response, 504, "Payment method creation failed: Gateway timeout", "GATEWAY_TIMEOUT");
+                        return;
+                    }
                     cardDetails = MockResponses.getCardDetailsFromToken(paymentToken);
                     finalToken = paymentToken; // In mock mode, use original token
-                    System.out.println("🟡 MOCK MODE - Using payment token as final stored payment token");
-                    System.out.println("   🎭 Mock Card: " + cardDetails.get("brand") + " ending in " + cardDetails.get("last4"));
                 } else {
-                    String appKey = dotenv.get("GP_API_APP_KEY");
-                    if (appKey != null && !appKey.trim().isEmpty()) {
+                    if (AppConfig.get().hasAppKey()) {
                         try {
-                            System.out.println("🟢 LIVE MODE - Creating multi-use token via GP API...");
                             PaymentUtils.MultiUseTokenResult multiUseResult = PaymentUtils.createMultiUseTokenWithCustomer(paymentToken, customerData, cardDetailObj);
                             finalToken = multiUseResult.multiUseToken;
 
@@ -163,57 +201,45 @@ public class PaymentMethodsServlet extends HttpServlet {
                             cardDetails.put("token", finalToken);
                             cardDetails.put("networkTransactionId", multiUseResult.networkTransactionId);
 
-                            System.out.println("✅ LIVE MODE - Multi-use token created successfully");
-                            System.out.println("   💳 Card: " + cardDetails.get("brand") + " ending in " + cardDetails.get("last4"));
-                            System.out.println("   🔐 Final Token: " + finalToken.substring(0, Math.min(8, finalToken.length())) + "...");
                         } catch (Exception e) {
-                            System.err.println("❌ LIVE MODE - Multi-use token creation failed:");
-                            System.err.println("   Error: " + e.getMessage());
-                            e.printStackTrace();
                             // Fall back to mock mode
+                            Log.error("Multi-use token creation failed, falling back to mock card details", e);
                             mockMode = true;
                             cardDetails = MockResponses.getCardDetailsFromToken(paymentToken);
                             finalToken = paymentToken;
-                            System.out.println("🟡 FALLBACK - Switching to mock mode due to token creation failure");
                         }
                     } else {
-                        System.err.println("❌ CONFIGURATION ERROR - No GP_API_APP_KEY found in environment");
+                        Log.error("Payment method rejected: GP_API_APP_KEY is not configured");
                         sendErrorResponse(response, 503, "Payment service not configured", "CONFIGURATION_ERROR");
                         return;
                     }
                 }
             } else {
                 // Handle existing stored payment token (legacy flow)
-                System.out.println("🔄 MULTI-USE TOKEN LOOKUP FLOW:");
-                System.out.println("   📍 Stored Payment Token: " + storedPaymentToken.substring(0, Math.min(12, storedPaymentToken.length())) + "...");
                 finalToken = storedPaymentToken;
 
-                // Check if mock mode is enabled globally
-                if (MockModeServlet.isMockModeEnabled()) {
+                // Mock mode is resolved per request (global default or authorized override)
+                if (mode == RequestMode.Mode.MOCK) {
                     mockMode = true;
+                    if (MockGatewaySimulator.simulateVerify().timedOut) {
+                        Log.warn("Mock token lookup timed out");
+                        sendErrorResponse(response, 504, "Payment method creation failed: Gateway timeout", "GATEWAY_TIMEOUT");
+                        return;
+                    }
                     cardDetails = MockResponses.getCardDetailsFromToken(storedPaymentToken);
-                    System.out.println("🟡 MOCK MODE - Retrieved mock card details");
-                    System.out.println("   🎭 Mock Card: " + cardDetails.get("brand") + " ending in " + cardDetails.get("last4"));
                 } else {
                     // Try to get card details from real stored payment token
-                    String appKey = dotenv.get("GP_API_APP_KEY");
-                    if (appKey != null && !appKey.trim().isEmpty()) {
+                    if (AppConfig.get().hasAppKey()) {
                         try {
-                            System.out.println("🟢 LIVE MODE - Looking up stored payment token via GP API...");
                             cardDetails = PaymentUtils.getCardDetailsFromToken(storedPaymentToken);
-                            System.out.println("✅ LIVE MODE - Token lookup successful");
-                            System.out.println("   💳 Card: " + cardDetails.get("brand") + " ending in " + cardDetails.get("last4"));
                         } catch (Exception e) {
-                            System.err.println("❌ LIVE MODE - Token lookup failed:");
-                            System.err.println("   Error: " + e.getMessage());
-                            e.printStackTrace();
                             // Fall back to mock mode
+                            Log.error("Stored token lookup failed, falling back to mock card details", e);
                             mockMode = true;
                             cardDetails = MockResponses.getCardDetailsFromToken(storedPaymentToken);
-                            System.out.println("🟡 FALLBACK - Switching to mock mode due to lookup failure");
                         }
                     } else {
-                        System.err.println("❌ CONFIGURATION ERROR - No GP_API_APP_KEY found in environment");
+                        Log.error("Payment method rejected: GP_API_APP_KEY is not configured");
                         sendErrorResponse(response, 503, "Payment service not configured", "CONFIGURATION_ERROR");
                         return;
                     }
@@ -222,12 +248,9 @@ public class PaymentMethodsServlet extends HttpServlet {
             
             // Validate card details
             if (cardDetails == null || isEmpty(cardDetails.get("brand")) || isEmpty(cardDetails.get("last4"))) {
-                System.err.println("❌ CARD DETAILS VALIDATION FAILED:");
-                System.err.println("   cardDetails is null: " + (cardDetails == null));
-                if (cardDetails != null) {
-                    System.err.println("   brand: " + cardDetails.get("brand"));
-                    System.err.println("   last4: " + cardDetails.get("last4"));
-                }
+                Log.warn("Payment method rejected: card details unavailable",
+                        "brand", cardDetails != null ? cardDetails.get("brand") : null,
+                        "last4", cardDetails != null ? cardDetails.get("last4") : null);
                 sendErrorResponse(response, 400, "Invalid token or unable to retrieve card details", "VALIDATION_ERROR");
                 return;
             }
@@ -245,45 +268,76 @@ public class PaymentMethodsServlet extends HttpServlet {
             paymentMethodData.put("mockMode", mockMode);
             paymentMethodData.put("networkTransactionId", cardDetails.get("networkTransactionId"));
 
-            System.out.println("💾 STORING PAYMENT METHOD:");
-            System.out.println("   🔐 Final Stored Payment Token: " + finalToken.substring(0, Math.min(8, finalToken.length())) + "...");
-            System.out.println("   💳 Card: " + cardDetails.get("brand") + " ending in " + cardDetails.get("last4"));
-            System.out.println("   📅 Expiry: " + expiry);
-            System.out.println("   📛 Nickname: " + (nickname != null ? nickname : "auto-generated"));
-            System.out.println("   ⭐ Default: " + (isDefault != null ? isDefault : false));
-            System.out.println("   🎭 Mock Mode: " + mockMode);
-
-            // Save to storage
-            Map<String, Object> savedMethod = JsonStorage.addPaymentMethod(paymentMethodData);
+            // Save to storage - duplicate submissions of the same payment token resolve to one saved method
+            Map<String, Object> savedMethod = paymentToken != null
+                    ? JsonStorage.addPaymentMethodIfAbsent(paymentMethodData)
+                    : JsonStorage.addPaymentMethod(paymentMethodData);
 
-            System.out.println("✅ PAYMENT METHOD SAVED:");
-            System.out.println("   🆔 Payment Method ID: " + savedMethod.get("id"));
-            System.out.println("   ⏰ Timestamp: " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            
-            // Format response
-            Map<String, Object> formattedMethod = new HashMap<>();
-            formattedMethod.put("id", savedMethod.get("id"));
-            formattedMethod.put("brand", savedMethod.get("cardBrand"));
-            formattedMethod.put("last4", savedMethod.get("last4"));
-            formattedMethod.put("expiry", savedMethod.get("expiry"));
-            formattedMethod.put("nickname", savedMethod.get("nickname"));
-            formattedMethod.put("isDefault", savedMethod.get("isDefault"));
-            formattedMethod.put("mockMode", mockMode);
+            Log.info("Payment method saved", "paymentMethodId", savedMethod.get("id"), "brand", cardDetails.get("brand"),
+                    "last4", cardDetails.get("last4"), "expiry", expiry, "isDefault", savedMethod.get("isDefault"),
+                    "mockMode", mockMode, "storedPaymentToken", finalToken);
             
-            Map<String, Object> responseData = new HashMap<>();
-            responseData.put("success", true);
-            responseData.put("data", formattedMethod);
-            responseData.put("message", "Payment method added successfully");
-            responseData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            
-            response.getWriter().write(gson.toJson(responseData));
+            ApiResponse.ok(PaymentMethodView.from(savedMethod, mockMode), "Payment method added successfully").write(response);
             
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("Payment method creation failed", e);
             sendErrorResponse(response, 500, "Payment method creation failed", "SERVER_ERROR");
         }
     }
     
+    /**
+     * Cached list response for the current store version, rebuilt only after a write
+     */
+    private static CachedList currentList() {
+        long version = JsonStorage.getVersion();
+        CachedList list = cachedList;
+        if (list != null && list.version == version) {
+            return list;
+        }
+        
+        List<PaymentMethodView> paymentMethods = JsonStorage.getFormattedPaymentMethods();
+        long start = System.nanoTime();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 + paymentMethods.size() * 160);
+        try (Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+            ApiResponse.GSON.toJson(ApiResponse.ok(paymentMethods, "Payment methods retrieved successfully"), writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        list = new CachedList(version, buffer.toByteArray());
+        Trace.record("serialize", start);
+        cachedList = list;
+        return list;
+    }
+    
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+    
     @Override
     protected void doOptions(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
@@ -296,33 +350,23 @@ public class PaymentMethodsServlet extends HttpServlet {
         response.setCharacterEncoding("UTF-8");
         response.setHeader("Access-Control-Allow-Origin", "*");
         response.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
-        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID, If-None-Match, " + RequestMode.MODE_HEADER + ", " + RequestMode.KEY_HEADER);
+        response.setHeader("Access-Control-Expose-Headers", RequestMode.RESPONSE_HEADER + ", ETag, X-Request-ID, Retry-After, RateLimit-Limit, RateLimit-Remaining, RateLimit-Reset");
     }
     
     private void sendErrorResponse(HttpServletResponse response, int statusCode, String message, String errorCode) 
             throws IOException {
-        response.setStatus(statusCode);
-        
-        Map<String, Object> errorResponse = new HashMap<>();
-        errorResponse.put("success", false);
-        errorResponse.put("message", message);
-        errorResponse.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-        
-        if (errorCode != null) {
-            errorResponse.put("error_code", errorCode);
-        }
-        
-        response.getWriter().write(gson.toJson(errorResponse));
+        ApiResponse.sendError(response, statusCode, message, errorCode);
     }
     
     private boolean isEmpty(String str) {
         return str == null || str.trim().isEmpty();
     }
     
-    private void handleEditPaymentMethod(HttpServletResponse response, Map<String, Object> data) 
+    private void handleEditPaymentMethod(HttpServletResponse response, PaymentMethodRequest data) 
             throws IOException {
         try {
-            String id = (String) data.get("id");
+            String id = data.id;
             
             // Find existing payment method
             Map<String, Object> existingMethod = JsonStorage.findPaymentMethod(id);
@@ -331,23 +375,15 @@ public class PaymentMethodsServlet extends HttpServlet {
                 return;
             }
 
-            // Log the edit attempt
-            System.out.println("✏️ PAYMENT METHOD EDIT - Editing payment method " + id);
-            System.out.println("   💳 Card: " + existingMethod.get("cardBrand") + " ending in " + existingMethod.get("last4"));
-            System.out.println("   📛 Nickname: " + stringOrNone((String) existingMethod.get("nickname")) + " → " + stringOrNone((String) data.get("nickname")));
-            System.out.println("   ⭐ Default: " + existingMethod.get("isDefault") + " → " + data.get("isDefault"));
-            System.out.println("   ⏰ Timestamp: " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-
             // Update the payment method
             Map<String, Object> updateData = new HashMap<>();
-            updateData.put("nickname", data.get("nickname"));
-            updateData.put("isDefault", data.get("isDefault"));
+            updateData.put("nickname", data.nickname);
+            updateData.put("isDefault", data.isDefault);
             
             JsonStorage.updatePaymentMethod(id, updateData);
 
             // If setting as default, update all others
-            Boolean isDefault = (Boolean) data.get("isDefault");
-            if (Boolean.TRUE.equals(isDefault)) {
+            if (Boolean.TRUE.equals(data.isDefault)) {
                 JsonStorage.setDefaultPaymentMethod(id);
             }
 
@@ -358,36 +394,14 @@ public class PaymentMethodsServlet extends HttpServlet {
                 return;
             }
 
-            // Log successful edit
-            System.out.println("✅ 📝 PAYMENT METHOD UPDATED Successfully:");
-            System.out.println("   ⏰ Timestamp: " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            System.out.println("   🆔 Payment Method ID: " + updatedMethod.get("id"));
-            System.out.println("   💳 Card Brand: " + updatedMethod.get("cardBrand"));
-            System.out.println("   🔢 Last 4: " + updatedMethod.get("last4"));
-            System.out.println("   📛 Nickname: " + stringOrNone((String) updatedMethod.get("nickname")));
-            System.out.println("   ⭐ Default: " + updatedMethod.get("isDefault"));
-            System.out.println("   🔄 Updated: " + updatedMethod.get("updatedAt"));
-
-            // Format response
-            Map<String, Object> formattedMethod = new HashMap<>();
-            formattedMethod.put("id", updatedMethod.get("id"));
-            formattedMethod.put("brand", updatedMethod.get("cardBrand"));
-            formattedMethod.put("last4", updatedMethod.get("last4"));
-            formattedMethod.put("expiry", updatedMethod.get("expiry"));
-            formattedMethod.put("nickname", updatedMethod.get("nickname"));
-            formattedMethod.put("isDefault", updatedMethod.get("isDefault"));
-            formattedMethod.put("mockMode", false); // Edit operations don't involve mock mode
-
-            Map<String, Object> responseData = new HashMap<>();
-            responseData.put("success", true);
-            responseData.put("data", formattedMethod);
-            responseData.put("message", "Payment method updated successfully");
-            responseData.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            Log.info("Payment method updated", "paymentMethodId", id,
+                    "nickname", stringOrNone((String) updatedMethod.get("nickname")), "isDefault", updatedMethod.get("isDefault"));
 
-            response.getWriter().write(gson.toJson(responseData));
+            // Edit operations don't involve mock mode
+            ApiResponse.ok(PaymentMethodView.from(updatedMethod, false), "Payment method updated successfully").write(response);
 
         } catch (Exception e) {
-            System.err.println("Error updating payment method: " + e.getMessage());
+            Log.error("Payment method update failed", e, "paymentMethodId", data.id);
             sendErrorResponse(response, 500, "Payment method update failed", "SERVER_ERROR");
         }
     }
@@ -11,15 +11,23 @@ import com.global.api.entities.enums.StoredCredentialSequence;
 import com.global.api.entities.enums.StoredCredentialType;
 import com.global.api.entities.exceptions.ApiException;
 import com.global.api.entities.exceptions.ConfigurationException;
+import com.global.api.entities.exceptions.GatewayComsException;
+import com.global.api.entities.exceptions.GatewayException;
+import com.global.api.entities.exceptions.GatewayTimeoutException;
+import com.global.api.entities.gpApi.GpApiSessionInfo;
+import com.global.api.entities.gpApi.GpApiTokenResponse;
+import com.global.api.entities.gpApi.entities.AccessTokenInfo;
+import com.global.api.gateways.GpApiConnector;
 import com.global.api.paymentMethods.CreditCardData;
 import com.global.api.serviceConfigs.GpApiConfig;
 import com.global.api.services.GpApiService;
-import io.github.cdimascio.dotenv.Dotenv;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Objects;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -28,26 +36,149 @@ import java.time.format.DateTimeFormatter;
  */
 public class PaymentUtils {
     
-    private static boolean sdkConfigured = false;
-    private static final Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
-    
+    private static volatile boolean sdkConfigured = false;
+    private static AppConfig appliedConfig;
+
+    // Card details never change for a given stored token, so verify results are reused
+    private static final TtlCache<String, Map<String, String>> cardDetailsCache = new TtlCache<>(
+            "cardDetails",
+            AppConfig.get().getInt("TOKEN_CACHE_MAX_SIZE", 10000),
+            AppConfig.get().getLong("TOKEN_CACHE_TTL_SECONDS", 900) * 1000L);
+
+    // Duplicate "Save card" submissions carry the same single-use token; only the first verify can succeed
+    private static final TtlCache<String, MultiUseTokenResult> multiUseTokenCache = new TtlCache<>(
+            "multiUseToken",
+            AppConfig.get().getInt("MULTI_USE_TOKEN_CACHE_MAX_SIZE", 1000),
+            AppConfig.get().getLong("MULTI_USE_TOKEN_CACHE_TTL_SECONDS", 120) * 1000L);
+
+    private static final GatewayTimer verifyTimer = new GatewayTimer("verify");
+    private static final GatewayTimer multiUseTokenTimer = new GatewayTimer("multi_use_token");
+    private static final GatewayTimer chargeTimer = new GatewayTimer("charge");
+    private static final GatewayTimer authorizeTimer = new GatewayTimer("authorize");
+    private static final GatewayTimer captureTimer = new GatewayTimer("capture");
+    private static final GatewayTimer accessTokenTimer = new GatewayTimer("access_token");
+
     /**
-     * Configure the Global Payments SDK (GP API)
+     * Gateway call latency for one operation, split by success and error, its trace stage
+     * and the reachability outcome that readiness checks use
+     */
+    private static final class GatewayTimer {
+        private static final String NAME = "gateway_request_duration_seconds";
+        private static final String HELP = "GP API call latency by operation and outcome";
+
+        final String stage;
+        final Metrics.Histogram success;
+        final Metrics.Histogram error;
+
+        GatewayTimer(String operation) {
+            stage = "gateway." + operation;
+            success = Metrics.histogram(NAME, HELP, "operation", operation, "outcome", "success");
+            error = Metrics.histogram(NAME, HELP, "operation", operation, "outcome", "error");
+        }
+
+        void record(long startNanos, boolean succeeded, Exception failure) {
+            (succeeded ? success : error).recordSince(startNanos);
+            Trace.record(stage, startNanos);
+            if (succeeded) {
+                GatewayHealth.recordReachable();
+            } else if (failure != null) {
+                GatewayHealth.recordFailure(failure);
+            }
+        }
+    }
+
+    static {
+        // Credential or environment changes in .env are applied without a restart
+        AppConfig.addListener(config -> {
+            try {
+                reconfigureSdk(config);
+            } catch (ConfigurationException e) {
+                Log.error("SDK reconfiguration failed", e);
+            }
+        });
+    }
+
+    public static boolean isSdkConfigured() {
+        return sdkConfigured;
+    }
+
+    /**
+     * Configure the Global Payments SDK (GP API). Safe to call from any thread; only the first
+     * successful call configures the ServicesContainer.
      */
     public static void configureSdk() throws ConfigurationException {
-        if (!sdkConfigured) {
-            String environment = dotenv.get("GP_API_ENVIRONMENT", "sandbox");
-            boolean isProduction = "production".equalsIgnoreCase(environment);
-
-            GpApiConfig config = new GpApiConfig();
-            config.setAppId(dotenv.get("GP_API_APP_ID"));
-            config.setAppKey(dotenv.get("GP_API_APP_KEY"));
-            config.setEnvironment(isProduction ? Environment.PRODUCTION : Environment.TEST);
-            config.setChannel(Channel.CardNotPresent);
-            config.setCountry("US");
-
-            ServicesContainer.configureService(config);
-            sdkConfigured = true;
+        if (sdkConfigured) {
+            return;
+        }
+        reconfigureSdk(AppConfig.get());
+    }
+
+    /**
+     * Apply a configuration snapshot to the ServicesContainer if its gateway settings differ
+     * from the ones currently applied
+     */
+    public static synchronized void reconfigureSdk(AppConfig appConfig) throws ConfigurationException {
+        if (sdkConfigured && appliedConfig != null
+                && Objects.equals(appliedConfig.getAppId(), appConfig.getAppId())
+                && Objects.equals(appliedConfig.getAppKey(), appConfig.getAppKey())
+                && Objects.equals(appliedConfig.getEnvironment(), appConfig.getEnvironment())
+                && Objects.equals(appliedConfig.getServiceUrl(), appConfig.getServiceUrl())) {
+            return;
+        }
+
+        ServicesContainer.configureService(createGpApiConfig(appConfig));
+        appliedConfig = appConfig;
+        if (sdkConfigured) {
+            Log.info("SDK reconfigured", "configVersion", appConfig.getVersion());
+        }
+        sdkConfigured = true;
+    }
+
+    /**
+     * Build a GP API configuration from the application configuration
+     */
+    public static GpApiConfig createGpApiConfig(AppConfig appConfig) {
+        GpApiConfig config = new GpApiConfig();
+        config.setAppId(appConfig.getAppId());
+        config.setAppKey(appConfig.getAppKey());
+        config.setEnvironment(appConfig.isProduction() ? Environment.PRODUCTION : Environment.TEST);
+        config.setChannel(Channel.CardNotPresent);
+        config.setCountry("US");
+        if (appConfig.getServiceUrl() != null) {
+            config.setServiceUrl(appConfig.getServiceUrl());
+        }
+        return config;
+    }
+    
+    /**
+     * Generate a GP API access token for the given configuration. GpApiService ignores the
+     * configured service URL, so overrides (such as the local stub) go through the connector directly.
+     */
+    public static String generateAccessToken(GpApiConfig config) throws Exception {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        Exception failure = null;
+        try {
+            String serviceUrl = AppConfig.get().getServiceUrl();
+            if (serviceUrl == null) {
+                AccessTokenInfo accessTokenInfo = GpApiService.generateTransactionKey(config);
+                succeeded = true;
+                return accessTokenInfo != null ? accessTokenInfo.getAccessToken() : null;
+            }
+
+            if (config.getAccessTokenProvider() == null) {
+                config.setAccessTokenProvider(new GpApiSessionInfo());
+            }
+            GpApiConnector connector = new GpApiConnector(config);
+            connector.setServiceUrl(serviceUrl);
+            GpApiTokenResponse tokenResponse = connector.getAccessToken();
+            succeeded = true;
+            return tokenResponse != null ? tokenResponse.getToken() : null;
+        } catch (Exception e) {
+            failure = e;
+            throw e;
+        } finally {
+            accessTokenTimer.record(start, succeeded, failure);
         }
     }
     
@@ -91,44 +222,84 @@ public class PaymentUtils {
                 throw new Exception("Tokenization failed: No token returned");
             }
         } catch (Exception e) {
-            System.err.println("SDK tokenization error: " + e.getMessage());
+            Log.warn("SDK tokenization error", "error", e.getMessage());
             throw e;
         }
     }
     
+    /**
+     * Get card details for a stored payment token, verifying against the gateway only on cache miss
+     */
     public static Map<String, String> getCardDetailsFromToken(String storedPaymentToken) throws Exception {
+        return cardDetailsCache.get(storedPaymentToken, () -> verifyCardDetailsFromToken(storedPaymentToken));
+    }
+
+    /**
+     * Verify a stored token at the gateway, bypassing and then refreshing the card-details cache
+     */
+    public static Map<String, String> refreshCardDetailsFromToken(String storedPaymentToken) throws Exception {
+        cardDetailsCache.invalidate(storedPaymentToken);
+        return getCardDetailsFromToken(storedPaymentToken);
+    }
+
+    /**
+     * Hit/miss counters for the token card-details cache
+     */
+    public static Map<String, Object> getCardDetailsCacheStats() {
+        return cardDetailsCache.stats();
+    }
+
+    /**
+     * Hit/miss counters for the multi-use token creation cache
+     */
+    public static Map<String, Object> getMultiUseTokenCacheStats() {
+        return multiUseTokenCache.stats();
+    }
+
+    private static Map<String, String> verifyCardDetailsFromToken(String storedPaymentToken) throws Exception {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        Exception failure = null;
         try {
-            CreditCardData card = new CreditCardData();
-            card.setToken(storedPaymentToken);
+            try {
+                CreditCardData card = new CreditCardData();
+                card.setToken(storedPaymentToken);
 
-            Transaction response = card.verify()
-                    .withCurrency("USD")
-                    .withRequestMultiUseToken(true)
-                    .execute();
+                Transaction response = card.verify()
+                        .withCurrency("USD")
+                        .withRequestMultiUseToken(true)
+                        .execute();
 
-            if ("SUCCESS".equals(response.getResponseCode()) &&
-                "CAPTURED".equals(response.getResponseMessage())) {
-                String cardBrand = determineCardBrandFromType(response.getCardType() != null ? response.getCardType() : "");
-                String last4 = response.getCardLast4() != null ? response.getCardLast4() : "";
-                String expiryMonth = String.format("%02d", response.getCardExpMonth() > 0 ? response.getCardExpMonth() : 0);
-                String expiryYear = String.format("%02d", response.getCardExpYear() > 0 ? response.getCardExpYear() % 100 : 0);
+                if ("SUCCESS".equals(response.getResponseCode()) &&
+                    ("VERIFIED".equals(response.getResponseMessage()) || "CAPTURED".equals(response.getResponseMessage()))) {
+                    String cardBrand = determineCardBrandFromType(response.getCardType() != null ? response.getCardType() : "");
+                    String last4 = response.getCardLast4() != null ? response.getCardLast4() : "";
+                    String expiryMonth = String.format("%02d", response.getCardExpMonth() > 0 ? response.getCardExpMonth() : 0);
+                    String expiryYear = String.format("%02d", response.getCardExpYear() > 0 ? response.getCardExpYear() % 100 : 0);
                 
-                System.out.println("🔍 Token lookup successful: " + cardBrand + " ending in " + last4);
+                    Log.debug("Token lookup successful", "brand", cardBrand, "last4", last4);
                 
-                Map<String, String> cardDetails = new HashMap<>();
-                cardDetails.put("brand", cardBrand);
-                cardDetails.put("last4", last4);
-                cardDetails.put("expiryMonth", expiryMonth);
-                cardDetails.put("expiryYear", expiryYear);
-                cardDetails.put("token", storedPaymentToken);
+                    Map<String, String> cardDetails = new HashMap<>();
+                    cardDetails.put("brand", cardBrand);
+                    cardDetails.put("last4", last4);
+                    cardDetails.put("expiryMonth", expiryMonth);
+                    cardDetails.put("expiryYear", expiryYear);
+                    cardDetails.put("token", storedPaymentToken);
                 
-                return cardDetails;
-            } else {
-                throw new Exception("Token verification failed: " + (response.getResponseMessage() != null ? response.getResponseMessage() : "Unknown error"));
+                    succeeded = true;
+                    return Collections.unmodifiableMap(cardDetails);
+                } else {
+                    // A gateway decision about the token, unlike the transport and HTTP errors the SDK raises
+                    throw new GatewayException("Token verification failed: " + (response.getResponseMessage() != null ? response.getResponseMessage() : "Unknown error"),
+                            response.getResponseCode(), response.getResponseMessage());
+                }
+            } catch (Exception e) {
+                failure = e;
+                Log.warn("SDK token lookup error", "error", e.getMessage());
+                throw e;
             }
-        } catch (Exception e) {
-            System.err.println("SDK token lookup error: " + e.getMessage());
-            throw e;
+        } finally {
+            verifyTimer.record(start, succeeded, failure);
         }
     }
     
@@ -156,49 +327,210 @@ public class PaymentUtils {
     }
     
     public static Map<String, Object> processPaymentWithSDK(String storedPaymentToken, BigDecimal amount, String currency, String networkTransactionId) throws Exception {
+        return processPaymentWithSDK(storedPaymentToken, amount, currency, networkTransactionId, null);
+    }
+
+    /**
+     * Charge a stored payment token; a non-null idempotency key makes gateway retries of the same charge safe
+     */
+    public static Map<String, Object> processPaymentWithSDK(String storedPaymentToken, BigDecimal amount, String currency, String networkTransactionId, String idempotencyKey) throws Exception {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        Exception failure = null;
         try {
-            // Credentials on File: MIT/Subsequent flags required by Visa/Mastercard/Amex
-            // SchemeId links this charge back to the original cardholder-initiated Verify
-            StoredCredential storedCredential = new StoredCredential()
-                    .setType(StoredCredentialType.Unscheduled)
-                    .setInitiator(StoredCredentialInitiator.Merchant)
-                    .setSequence(StoredCredentialSequence.Subsequent)
-                    .setSchemeId(networkTransactionId);
+            try {
+                // Credentials on File: MIT/Subsequent flags required by Visa/Mastercard/Amex
+                // SchemeId links this charge back to the original cardholder-initiated Verify
+                StoredCredential storedCredential = new StoredCredential()
+                        .setType(StoredCredentialType.Unscheduled)
+                        .setInitiator(StoredCredentialInitiator.Merchant)
+                        .setSequence(StoredCredentialSequence.Subsequent)
+                        .setSchemeId(networkTransactionId);
 
-            CreditCardData card = new CreditCardData();
-            card.setToken(storedPaymentToken);
+                CreditCardData card = new CreditCardData();
+                card.setToken(storedPaymentToken);
 
-            Transaction response = card.charge(amount)
-                    .withCurrency(currency)
-                    .withStoredCredential(storedCredential)
-                    .execute();
+                Transaction response = card.charge(amount)
+                        .withCurrency(currency)
+                        .withStoredCredential(storedCredential)
+                        .withIdempotencyKey(idempotencyKey)
+                        .execute();
 
-            if ("SUCCESS".equals(response.getResponseCode()) &&
-                "CAPTURED".equals(response.getResponseMessage())) {
-                System.out.println("✅ Payment charged successfully: " + response.getTransactionId());
+                if ("SUCCESS".equals(response.getResponseCode()) &&
+                    "CAPTURED".equals(response.getResponseMessage())) {
+                    Log.debug("Gateway charge captured", "transactionId", response.getTransactionId());
                 
-                Map<String, Object> result = new HashMap<>();
-                result.put("transactionId", response.getTransactionId() != null ? response.getTransactionId() : "txn_" + UUID.randomUUID().toString());
-                result.put("amount", amount);
-                result.put("currency", currency);
-                result.put("status", "approved");
-                result.put("responseCode", response.getResponseCode());
-                result.put("responseMessage", response.getResponseMessage() != null ? response.getResponseMessage() : "Approved");
-                result.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("transactionId", response.getTransactionId() != null ? response.getTransactionId() : IdGenerator.transactionId());
+                    result.put("amount", amount);
+                    result.put("currency", currency);
+                    result.put("status", "approved");
+                    result.put("responseCode", response.getResponseCode());
+                    result.put("responseMessage", response.getResponseMessage() != null ? response.getResponseMessage() : "Approved");
+                    result.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
                 
-                Map<String, Object> gatewayResponse = new HashMap<>();
-                gatewayResponse.put("authCode", response.getAuthorizationCode() != null ? response.getAuthorizationCode() : "");
-                gatewayResponse.put("referenceNumber", response.getReferenceNumber() != null ? response.getReferenceNumber() : "");
-                result.put("gatewayResponse", gatewayResponse);
+                    Map<String, Object> gatewayResponse = new HashMap<>();
+                    gatewayResponse.put("authCode", response.getAuthorizationCode() != null ? response.getAuthorizationCode() : "");
+                    gatewayResponse.put("referenceNumber", response.getReferenceNumber() != null ? response.getReferenceNumber() : "");
+                    result.put("gatewayResponse", gatewayResponse);
                 
-                return result;
-            } else {
-                throw new Exception("Payment failed: " + (response.getResponseMessage() != null ? response.getResponseMessage() : "Unknown error"));
+                    succeeded = true;
+                    return result;
+                } else {
+                    throw new Exception("Payment failed: " + (response.getResponseMessage() != null ? response.getResponseMessage() : "Unknown error"));
+                }
+            } catch (Exception e) {
+                failure = e;
+                Log.warn("SDK payment processing error", "error", e.getMessage());
+                throw e;
+            }
+        } finally {
+            chargeTimer.record(start, succeeded, failure);
+        }
+    }
+
+    /**
+     * Authorize a stored payment token without capturing; the SettlementEngine captures it later
+     */
+    public static Map<String, Object> authorizePaymentWithSDK(String storedPaymentToken, BigDecimal amount, String currency, String networkTransactionId, String idempotencyKey) throws Exception {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        Exception failure = null;
+        try {
+            try {
+                StoredCredential storedCredential = new StoredCredential()
+                        .setType(StoredCredentialType.Unscheduled)
+                        .setInitiator(StoredCredentialInitiator.Merchant)
+                        .setSequence(StoredCredentialSequence.Subsequent)
+                        .setSchemeId(networkTransactionId);
+
+                CreditCardData card = new CreditCardData();
+                card.setToken(storedPaymentToken);
+
+                Transaction response = card.authorize(amount)
+                        .withCurrency(currency)
+                        .withStoredCredential(storedCredential)
+                        .withIdempotencyKey(idempotencyKey)
+                        .execute();
+
+                if ("SUCCESS".equals(response.getResponseCode()) &&
+                    "PREAUTHORIZED".equals(response.getResponseMessage())) {
+                    Log.debug("Gateway charge authorized", "transactionId", response.getTransactionId());
+
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("transactionId", response.getTransactionId() != null ? response.getTransactionId() : IdGenerator.transactionId());
+                    result.put("amount", amount);
+                    result.put("currency", currency);
+                    result.put("status", "authorized");
+                    result.put("responseCode", response.getResponseCode());
+                    result.put("responseMessage", response.getResponseMessage());
+                    result.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+
+                    Map<String, Object> gatewayResponse = new HashMap<>();
+                    gatewayResponse.put("authCode", response.getAuthorizationCode() != null ? response.getAuthorizationCode() : "");
+                    gatewayResponse.put("referenceNumber", response.getReferenceNumber() != null ? response.getReferenceNumber() : "");
+                    result.put("gatewayResponse", gatewayResponse);
+
+                    succeeded = true;
+                    return result;
+                } else {
+                    throw new Exception("Authorization failed: " + (response.getResponseMessage() != null ? response.getResponseMessage() : "Unknown error"));
+                }
+            } catch (Exception e) {
+                failure = e;
+                Log.warn("SDK authorization error", "error", e.getMessage());
+                throw e;
+            }
+        } finally {
+            authorizeTimer.record(start, succeeded, failure);
+        }
+    }
+
+    /**
+     * Capture a previous authorization
+     */
+    public static String capturePaymentWithSDK(String transactionId, BigDecimal amount, String idempotencyKey) throws Exception {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        Exception failure = null;
+        try {
+            Transaction response = Transaction.fromId(transactionId)
+                    .capture(amount)
+                    .withIdempotencyKey(idempotencyKey)
+                    .execute();
+
+            if (!"SUCCESS".equals(response.getResponseCode()) ||
+                !"CAPTURED".equals(response.getResponseMessage())) {
+                throw new Exception("Capture failed: " + (response.getResponseMessage() != null ? response.getResponseMessage() : "Unknown error"));
             }
+            succeeded = true;
+            return response.getTransactionId() != null ? response.getTransactionId() : transactionId;
         } catch (Exception e) {
-            System.err.println("SDK payment processing error: " + e.getMessage());
+            failure = e;
             throw e;
+        } finally {
+            captureTimer.record(start, succeeded, failure);
+        }
+    }
+
+    /**
+     * Whether a charge failure means the gateway could not be reached (network error,
+     * timeout or 5xx) rather than a decline or a rejected request
+     */
+    public static boolean isGatewayUnavailable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof GatewayTimeoutException || t instanceof GatewayComsException || t instanceof IOException) {
+                return true;
+            }
+            if (t instanceof GatewayException && t.getMessage() != null && t.getMessage().startsWith("Status Code: 5")) {
+                return true;
+            }
+            if (t instanceof NullPointerException && isEmptyGatewayResponse(t)) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the gateway turned the request away for reasons that have nothing to do with
+     * the card: our credentials (401, 403) or our request rate (408, 429)
+     */
+    public static boolean isGatewayRefusal(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof GatewayException) {
+                GatewayException gatewayError = (GatewayException) t;
+                if ("NOT_AUTHENTICATED".equals(gatewayError.getResponseCode())
+                        || "ACTION_NOT_AUTHORIZED".equals(gatewayError.getResponseCode())) {
+                    return true;
+                }
+                String message = t.getMessage();
+                if (message != null && (message.startsWith("Status Code: 401") || message.startsWith("Status Code: 403")
+                        || message.startsWith("Status Code: 408") || message.startsWith("Status Code: 429"))) {
+                    return true;
+                }
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The SDK swallows connection errors and then fails parsing the missing response body
+     * in RestGateway, so an unreachable gateway surfaces as a NullPointerException there
+     */
+    private static boolean isEmptyGatewayResponse(Throwable error) {
+        for (StackTraceElement frame : error.getStackTrace()) {
+            if ("com.global.api.gateways.RestGateway".equals(frame.getClassName())) {
+                return true;
+            }
         }
+        return false;
     }
 
     public static class CustomerData {
@@ -212,16 +544,16 @@ public class PaymentUtils {
         public String billingZip;
         public String country;
 
-        public CustomerData(Map<String, String> data) {
-            this.firstName = data.getOrDefault("first_name", "");
-            this.lastName = data.getOrDefault("last_name", "");
-            this.email = data.getOrDefault("email", "");
-            this.phone = data.getOrDefault("phone", "");
-            this.streetAddress = data.getOrDefault("street_address", "");
-            this.city = data.getOrDefault("city", "");
-            this.state = data.getOrDefault("state", "");
-            this.billingZip = data.getOrDefault("billing_zip", "");
-            this.country = data.getOrDefault("country", "");
+        public CustomerData() {
+            this.firstName = "";
+            this.lastName = "";
+            this.email = "";
+            this.phone = "";
+            this.streetAddress = "";
+            this.city = "";
+            this.state = "";
+            this.billingZip = "";
+            this.country = "";
         }
     }
 
@@ -231,11 +563,11 @@ public class PaymentUtils {
         public String expiryMonth;
         public String expiryYear;
 
-        public CardDetails(Map<String, String> data) {
-            this.cardType = data.getOrDefault("cardType", "");
-            this.cardLast4 = data.getOrDefault("cardLast4", "");
-            this.expiryMonth = data.getOrDefault("expiryMonth", "");
-            this.expiryYear = data.getOrDefault("expiryYear", "");
+        public CardDetails() {
+            this.cardType = "";
+            this.cardLast4 = "";
+            this.expiryMonth = "";
+            this.expiryYear = "";
         }
     }
 
@@ -259,62 +591,72 @@ public class PaymentUtils {
         }
     }
 
+    /**
+     * Exchange a single-use token for a multi-use token. Concurrent and recently repeated
+     * requests for the same payment token share the result of a single verify call.
+     */
     public static MultiUseTokenResult createMultiUseTokenWithCustomer(String paymentToken, CustomerData customerData, CardDetails cardDetails) throws Exception {
+        return multiUseTokenCache.get(paymentToken, () -> verifyMultiUseTokenWithCustomer(paymentToken, customerData, cardDetails));
+    }
+
+    private static MultiUseTokenResult verifyMultiUseTokenWithCustomer(String paymentToken, CustomerData customerData, CardDetails cardDetails) throws Exception {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        Exception failure = null;
         try {
-            CreditCardData card = new CreditCardData();
-            card.setToken(paymentToken);
-            card.setCardHolderName((customerData.firstName + " " + customerData.lastName).trim());
-
-            Address address = new Address();
-            address.setStreetAddress1(customerData.streetAddress.trim());
-            address.setCity(customerData.city.trim());
-            address.setState(customerData.state.trim());
-            address.setPostalCode(sanitizePostalCode(customerData.billingZip));
-            address.setCountry(customerData.country.trim());
-
-            Transaction response = card.verify()
-                    .withCurrency("USD")
-                    .withRequestMultiUseToken(true)
-                    .withStoredCredential(
-                        // Credentials on File: CIT/First flags required for initial card-save Verify (Visa/MC/Amex mandate)
-                        new StoredCredential()
-                            .setType(StoredCredentialType.Unscheduled)
-                            .setInitiator(StoredCredentialInitiator.CardHolder)
-                            .setSequence(StoredCredentialSequence.First)
-                    )
-                    .withAddress(address)
-                    .execute();
+            try {
+                CreditCardData card = new CreditCardData();
+                card.setToken(paymentToken);
+                card.setCardHolderName((customerData.firstName + " " + customerData.lastName).trim());
 
-            if ("SUCCESS".equals(response.getResponseCode()) &&
-                "VERIFIED".equals(response.getResponseMessage())) {
-                String brand = determineCardBrandFromType(cardDetails.cardType);
-                String finalToken = response.getToken() != null ? response.getToken() : paymentToken;
-
-                System.out.println("✅ MULTI-USE TOKEN CREATION SUCCESS:");
-                System.out.println("   ⏰ Timestamp: " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-                System.out.println("   🎯 Original Token: " + paymentToken.substring(0, Math.min(8, paymentToken.length())) + "...");
-                System.out.println("   🔄 Multi-Use Token: " + finalToken.substring(0, Math.min(8, finalToken.length())) + "...");
-                System.out.println("   💳 Card Brand: " + brand);
-                System.out.println("   🔢 Last 4: " + cardDetails.cardLast4);
-                System.out.println("   📅 Expiry: " + cardDetails.expiryMonth + "/" + cardDetails.expiryYear);
-                System.out.println("   👤 Customer: " + customerData.firstName + " " + customerData.lastName);
-                System.out.println("   📍 Address: " + customerData.city + ", " + customerData.state + " " + customerData.billingZip);
-
-                return new MultiUseTokenResult(
-                    finalToken,
-                    brand,
-                    cardDetails.cardLast4,
-                    cardDetails.expiryMonth,
-                    cardDetails.expiryYear,
-                    customerData,
-                    response.getSchemeId()
-                );
-            } else {
-                throw new Exception("Multi-use token creation failed: " + (response.getResponseMessage() != null ? response.getResponseMessage() : "Unknown error"));
+                Address address = new Address();
+                address.setStreetAddress1(customerData.streetAddress.trim());
+                address.setCity(customerData.city.trim());
+                address.setState(customerData.state.trim());
+                address.setPostalCode(sanitizePostalCode(customerData.billingZip));
+                address.setCountry(customerData.country.trim());
+
+                Transaction response = card.verify()
+                        .withCurrency("USD")
+                        .withRequestMultiUseToken(true)
+                        .withStoredCredential(
+                            // Credentials on File: CIT/First flags required for initial card-save Verify (Visa/MC/Amex mandate)
+                            new StoredCredential()
+                                .setType(StoredCredentialType.Unscheduled)
+                                .setInitiator(StoredCredentialInitiator.CardHolder)
+                                .setSequence(StoredCredentialSequence.First)
+                        )
+                        .withAddress(address)
+                        .execute();
+
+                if ("SUCCESS".equals(response.getResponseCode()) &&
+                    "VERIFIED".equals(response.getResponseMessage())) {
+                    String brand = determineCardBrandFromType(cardDetails.cardType);
+                    String finalToken = response.getToken() != null ? response.getToken() : paymentToken;
+
+                    Log.info("Multi-use token created", "brand", brand, "last4", cardDetails.cardLast4,
+                            "paymentToken", paymentToken, "multiUseToken", finalToken);
+
+                    succeeded = true;
+                    return new MultiUseTokenResult(
+                        finalToken,
+                        brand,
+                        cardDetails.cardLast4,
+                        cardDetails.expiryMonth,
+                        cardDetails.expiryYear,
+                        customerData,
+                        response.getSchemeId()
+                    );
+                } else {
+                    throw new Exception("Multi-use token creation failed: " + (response.getResponseMessage() != null ? response.getResponseMessage() : "Unknown error"));
+                }
+            } catch (Exception e) {
+                failure = e;
+                Log.warn("Multi-use token creation error", "error", e.getMessage());
+                throw e;
             }
-        } catch (Exception e) {
-            System.err.println("Multi-use token creation error: " + e.getMessage());
-            throw e;
+        } finally {
+            multiUseTokenTimer.record(start, succeeded, failure);
         }
     }
 
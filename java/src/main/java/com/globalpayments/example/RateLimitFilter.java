@@ -0,0 +1,83 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Per-client rate limits for /charge, /payment-methods and /config
+ *
+ * Runs first in the filter chain (see web.xml), so a throttled request costs one map
+ * lookup and one CAS and never reaches admission control, storage or the gateway.
+ * Every limited response carries RateLimit-Limit, RateLimit-Remaining and RateLimit-Reset;
+ * rejected requests get 429 with Retry-After.
+ */
+@WebFilter(filterName = "RateLimitFilter", urlPatterns = {"/charge", "/payment-methods", "/config"})
+public class RateLimitFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        if ("OPTIONS".equals(request.getMethod()) || !RateLimiter.isEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        RateLimiter.Decision decision = RateLimiter.tryAcquire(endpoint(request), clientKey(request));
+        response.setHeader("RateLimit-Limit", String.valueOf(decision.limit));
+        response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining));
+        response.setHeader("RateLimit-Reset", String.valueOf(decision.resetSeconds));
+
+        if (!decision.allowed) {
+            sendRateLimited(response, decision.retryAfterSeconds);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Config key segment for the endpoint, e.g. /payment-methods -> PAYMENT_METHODS
+     */
+    private String endpoint(HttpServletRequest request) {
+        return request.getServletPath().substring(1).replace('-', '_').toUpperCase();
+    }
+
+    /**
+     * Client key: the RATE_LIMIT_CLIENT_HEADER header when set (e.g. an API key added by a
+     * trusted gateway), else the client address (see ClientAddress)
+     */
+    private String clientKey(HttpServletRequest request) {
+        AppConfig config = AppConfig.get();
+        String header = config.get("RATE_LIMIT_CLIENT_HEADER", null);
+        if (header != null) {
+            String value = request.getHeader(header);
+            if (!isEmpty(value)) {
+                return "key:" + value.trim();
+            }
+        }
+        return "ip:" + ClientAddress.of(request);
+    }
+
+    private void sendRateLimited(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Expose-Headers", "X-Request-ID, Retry-After, RateLimit-Limit, RateLimit-Remaining, RateLimit-Reset");
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, retryAfterSeconds)));
+        ApiResponse.sendError(response, 429, "Too many requests, please retry later", "RATE_LIMITED");
+    }
+
+    private boolean isEmpty(String str) {
+        return str == null || str.trim().isEmpty();
+    }
+}
@@ -0,0 +1,213 @@
+package com.globalpayments.example;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket rate limits per client and endpoint
+ *
+ * Each (endpoint, client) pair has a bucket of RATE_LIMIT_{ENDPOINT}_BURST tokens that
+ * refills at RATE_LIMIT_{ENDPOINT}_PER_SECOND. A bucket is a single AtomicLong holding
+ * the instant its token count was zero; tokens available now are the time elapsed since
+ * then divided by the refill interval. Refill is therefore implicit and taking a token
+ * is one compare-and-set, with no lock and no background refill thread.
+ *
+ * A bucket that has refilled completely is indistinguishable from a new one, so idle
+ * buckets can be dropped at any time without losing state. The map holds at most
+ * RATE_LIMIT_MAX_KEYS buckets: at the limit, each new client first sweeps the next
+ * SWEEP_BATCH buckets for idle ones, and if there is still no room it shares one
+ * overflow bucket per endpoint with every other client that could not get its own.
+ */
+public final class RateLimiter {
+
+    private static final int SWEEP_BATCH = 64;
+
+    private static final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    // Buckets in the map, reserved before inserting so the limit is never exceeded
+    private static final AtomicLong size = new AtomicLong();
+    private static final ConcurrentHashMap<String, Bucket> overflow = new ConcurrentHashMap<>();
+    private static final AtomicBoolean sweeping = new AtomicBoolean();
+    // Where the next sweep resumes; guarded by sweeping
+    private static Iterator<Bucket> sweepCursor;
+
+    private static final ConcurrentHashMap<String, LongAdder> allowedByEndpoint = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LongAdder> limitedByEndpoint = new ConcurrentHashMap<>();
+    private static final LongAdder evictions = new LongAdder();
+    private static final LongAdder overflowed = new LongAdder();
+
+    /**
+     * Outcome of taking a token, with the values for the RateLimit-* response headers
+     */
+    public static final class Decision {
+        public final boolean allowed;
+        public final long limit;
+        public final long remaining;
+        public final long resetSeconds;
+        public final long retryAfterSeconds;
+
+        private Decision(boolean allowed, long limit, long remaining, long resetSeconds, long retryAfterSeconds) {
+            this.allowed = allowed;
+            this.limit = limit;
+            this.remaining = remaining;
+            this.resetSeconds = resetSeconds;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    private static final class Bucket {
+        // Instant (System.nanoTime) at which the bucket held zero tokens
+        final AtomicLong emptyAt;
+        // Time to refill from empty, kept per bucket since endpoints have different limits
+        volatile long fullNanos;
+
+        Bucket(long emptyAt, long fullNanos) {
+            this.emptyAt = new AtomicLong(emptyAt);
+            this.fullNanos = fullNanos;
+        }
+
+        boolean isFull(long now) {
+            return now - emptyAt.get() >= fullNanos;
+        }
+    }
+
+    private RateLimiter() {
+    }
+
+    public static boolean isEnabled() {
+        return AppConfig.get().getBoolean("RATE_LIMITS_ENABLED", true);
+    }
+
+    /**
+     * Take one token from the bucket for this endpoint and client
+     *
+     * @param endpoint config key segment, e.g. "CHARGE" for RATE_LIMIT_CHARGE_PER_SECOND
+     */
+    public static Decision tryAcquire(String endpoint, String clientKey) {
+        AppConfig config = AppConfig.get();
+        long burst = Math.max(1, config.getLong("RATE_LIMIT_" + endpoint + "_BURST", defaultBurst(endpoint)));
+        double perSecond = config.getDouble("RATE_LIMIT_" + endpoint + "_PER_SECOND", defaultPerSecond(endpoint));
+        long interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(0.001, perSecond)));
+        long fullNanos = burst * interval;
+
+        long now = System.nanoTime();
+        Bucket bucket = bucket(endpoint, endpoint + ":" + clientKey, now, fullNanos, config);
+        if (bucket.fullNanos != fullNanos) {
+            bucket.fullNanos = fullNanos;
+        }
+
+        while (true) {
+            long emptyAt = bucket.emptyAt.get();
+            // Tokens beyond the burst size are not kept
+            long base = Math.max(emptyAt, now - fullNanos);
+            long next = base + interval;
+            if (next > now) {
+                limitedByEndpoint.computeIfAbsent(endpoint, k -> new LongAdder()).increment();
+                return new Decision(false, burst, 0, toSeconds(base + fullNanos - now), toSeconds(next - now));
+            }
+            if (bucket.emptyAt.compareAndSet(emptyAt, next)) {
+                allowedByEndpoint.computeIfAbsent(endpoint, k -> new LongAdder()).increment();
+                long remaining = (now - next) / interval;
+                return new Decision(true, burst, remaining, toSeconds(next + fullNanos - now), 0);
+            }
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Long> allowed = new HashMap<>();
+        allowedByEndpoint.forEach((endpoint, count) -> allowed.put(endpoint, count.sum()));
+        Map<String, Long> limited = new HashMap<>();
+        limitedByEndpoint.forEach((endpoint, count) -> limited.put(endpoint, count.sum()));
+        stats.put("enabled", isEnabled());
+        stats.put("trackedKeys", size.get());
+        stats.put("evictions", evictions.sum());
+        stats.put("overflowed", overflowed.sum());
+        stats.put("allowed", allowed);
+        stats.put("limited", limited);
+        return stats;
+    }
+
+    private static Bucket bucket(String endpoint, String key, long now, long fullNanos, AppConfig config) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        long maxKeys = Math.max(1, config.getLong("RATE_LIMIT_MAX_KEYS", 100000));
+        if (size.get() >= maxKeys) {
+            sweep(now);
+        }
+        if (size.incrementAndGet() > maxKeys) {
+            size.decrementAndGet();
+            overflowed.increment();
+            // No room: clients without a bucket of their own share one per endpoint
+            return overflow.computeIfAbsent(endpoint, k -> new Bucket(now - fullNanos, fullNanos));
+        }
+        // New clients start with a full bucket
+        Bucket created = new Bucket(now - fullNanos, fullNanos);
+        Bucket existing = buckets.putIfAbsent(key, created);
+        if (existing != null) {
+            size.decrementAndGet();
+            return existing;
+        }
+        return created;
+    }
+
+    /**
+     * Drop refilled buckets among the next SWEEP_BATCH, resuming where the previous
+     * sweep stopped; one thread sweeps at a time
+     */
+    private static void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (int i = 0; i < SWEEP_BATCH; i++) {
+                if (sweepCursor == null || !sweepCursor.hasNext()) {
+                    sweepCursor = buckets.values().iterator();
+                    if (!sweepCursor.hasNext()) {
+                        return;
+                    }
+                }
+                if (sweepCursor.next().isFull(now)) {
+                    sweepCursor.remove();
+                    size.decrementAndGet();
+                    evictions.increment();
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static long toSeconds(long nanos) {
+        return Math.max(0, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static long defaultBurst(String endpoint) {
+        switch (endpoint) {
+            case "CHARGE":
+                return 10;
+            case "CONFIG":
+                return 10;
+            default:
+                return 30;
+        }
+    }
+
+    private static double defaultPerSecond(String endpoint) {
+        switch (endpoint) {
+            case "CHARGE":
+                return 2;
+            case "CONFIG":
+                return 1;
+            default:
+                return 10;
+        }
+    }
+}
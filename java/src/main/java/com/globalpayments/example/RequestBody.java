@@ -0,0 +1,328 @@
+package com.globalpayments.example;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded streaming parser for JSON request bodies
+ *
+ * Bodies are read from the request input stream straight into typed request objects
+ * (ChargeRequest, PaymentMethodRequest, MockModeRequest) through their TypeAdapters,
+ * which keep only the fields the endpoint uses and skip the rest without building
+ * them. The body is never held as a String or an untyped map tree.
+ *
+ * Limits are enforced while reading, so a bad body is rejected as soon as it crosses one:
+ * more than REQUEST_BODY_MAX_BYTES (a larger Content-Length is refused before reading)
+ * gives 413, nesting deeper than REQUEST_BODY_MAX_DEPTH or malformed JSON gives 400, and
+ * a body still arriving after REQUEST_BODY_TIMEOUT_MS gives 408.
+ *
+ * The deadline is checked before each read, so it cannot end a read that is already
+ * blocked on a stalled client. That is the connector's job: the embedded server sets
+ * Tomcat's connectionUploadTimeout to REQUEST_BODY_TIMEOUT_MS (a standalone Tomcat needs
+ * disableUploadTimeout="false" and connectionUploadTimeout on its Connector), and the
+ * resulting socket timeout is reported as the same 408.
+ */
+public final class RequestBody {
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(ChargeRequest.class, new ChargeRequest.Adapter())
+            .registerTypeAdapter(PaymentMethodRequest.class, new PaymentMethodRequest.Adapter())
+            .registerTypeAdapter(MockModeRequest.class, new MockModeRequest.Adapter())
+            .create();
+
+    private static final String REJECTED = "request_body_rejected_total";
+    private static final String REJECTED_HELP = "Request bodies rejected before reaching a handler, by reason";
+    private static final Metrics.Counter tooLarge = Metrics.counter(REJECTED, REJECTED_HELP, "reason", "too_large");
+    private static final Metrics.Counter tooDeep = Metrics.counter(REJECTED, REJECTED_HELP, "reason", "too_deep");
+    private static final Metrics.Counter malformed = Metrics.counter(REJECTED, REJECTED_HELP, "reason", "malformed");
+    private static final Metrics.Counter timedOut = Metrics.counter(REJECTED, REJECTED_HELP, "reason", "timeout");
+
+    /**
+     * A body that was rejected, with the status and error code to send
+     */
+    public static final class BodyException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+        private final String errorCode;
+
+        BodyException(int statusCode, String message, String errorCode) {
+            super(message);
+            this.statusCode = statusCode;
+            this.errorCode = errorCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getErrorCode() {
+            return errorCode;
+        }
+    }
+
+    private RequestBody() {
+    }
+
+    /**
+     * Read the request body as one JSON value of the given request type
+     */
+    public static <T> T read(HttpServletRequest request, Class<T> type) throws BodyException, IOException {
+        AppConfig config = AppConfig.get();
+        long maxBytes = config.getLong("REQUEST_BODY_MAX_BYTES", 16 * 1024);
+        int maxDepth = config.getInt("REQUEST_BODY_MAX_DEPTH", 8);
+        long timeoutMillis = config.getLong("REQUEST_BODY_TIMEOUT_MS", 10_000);
+
+        if (request.getContentLengthLong() > maxBytes) {
+            tooLarge.increment();
+            throw new BodyException(413, "Request body exceeds " + maxBytes + " bytes", "PAYLOAD_TOO_LARGE");
+        }
+
+        InputStream body = new BoundedInputStream(request.getInputStream(), maxBytes, timeoutMillis);
+        Reader reader = new DepthLimitedReader(new InputStreamReader(body, charset(request)), maxDepth);
+        JsonReader json = new JsonReader(reader);
+        try {
+            if (isEmpty(json)) {
+                malformed.increment();
+                throw new BodyException(400, "Request body is required", "VALIDATION_ERROR");
+            }
+            T value = GSON.getAdapter(type).read(json);
+            if (json.peek() != JsonToken.END_DOCUMENT) {
+                malformed.increment();
+                throw new BodyException(400, "Invalid JSON format", "VALIDATION_ERROR");
+            }
+            return value;
+        } catch (LimitException e) {
+            throw e.toBodyException();
+        } catch (MalformedJsonException | EOFException e) {
+            malformed.increment();
+            throw new BodyException(400, "Invalid JSON format", "VALIDATION_ERROR");
+        } catch (IllegalStateException | NumberFormatException | JsonParseException e) {
+            // A field of the wrong JSON type, e.g. an object where a string is expected
+            malformed.increment();
+            throw new BodyException(400, "Invalid request body: " + e.getMessage(), "VALIDATION_ERROR");
+        }
+    }
+
+    private static boolean isEmpty(JsonReader json) throws IOException {
+        try {
+            return json.peek() == JsonToken.END_DOCUMENT;
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
+    /**
+     * String field value; numbers are accepted as their text, null stays null
+     */
+    static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Boolean field value, or null for JSON null
+     */
+    static Boolean nextBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextBoolean();
+    }
+
+    /**
+     * Any JSON value as Gson reads it into a Map (objects, lists, Doubles, Strings, Booleans)
+     */
+    static Object nextValue(JsonReader in) throws IOException {
+        return GSON.getAdapter(Object.class).read(in);
+    }
+
+    private static Charset charset(HttpServletRequest request) {
+        String encoding = request.getCharacterEncoding();
+        if (encoding == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /**
+     * Thrown from inside the reader stack when a limit is crossed; an IOException so it
+     * passes unchanged through InputStreamReader and JsonReader
+     */
+    private static final class LimitException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Metrics.Counter counter;
+        private final int statusCode;
+        private final String errorCode;
+
+        LimitException(Metrics.Counter counter, int statusCode, String message, String errorCode) {
+            super(message);
+            this.counter = counter;
+            this.statusCode = statusCode;
+            this.errorCode = errorCode;
+        }
+
+        BodyException toBodyException() {
+            counter.increment();
+            return new BodyException(statusCode, getMessage(), errorCode);
+        }
+    }
+
+    /**
+     * Fails once more than maxBytes have been read or the body has been arriving for too long
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private final long deadlineNanos;
+        private long count;
+
+        BoundedInputStream(InputStream in, long maxBytes, long timeoutMillis) {
+            super(in);
+            this.maxBytes = maxBytes;
+            this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkDeadline();
+            int b;
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                throw timeoutOr(e);
+            }
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            checkDeadline();
+            // Never read past the limit plus one byte, so an oversized body is not buffered
+            int allowed = (int) Math.min(length, maxBytes - count + 1);
+            int read;
+            try {
+                read = super.read(buffer, offset, Math.max(1, allowed));
+            } catch (IOException e) {
+                throw timeoutOr(e);
+            }
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws LimitException {
+            count += read;
+            if (count > maxBytes) {
+                throw new LimitException(tooLarge, 413, "Request body exceeds " + maxBytes + " bytes", "PAYLOAD_TOO_LARGE");
+            }
+        }
+
+        private void checkDeadline() throws LimitException {
+            if (System.nanoTime() - deadlineNanos > 0) {
+                throw timeout();
+            }
+        }
+
+        /**
+         * The connector's read timeout fired on a stalled body; containers wrap the
+         * SocketTimeoutException (Tomcat in a ClientAbortException)
+         */
+        private static IOException timeoutOr(IOException error) {
+            for (Throwable t = error; t != null; t = t.getCause()) {
+                if (t instanceof SocketTimeoutException) {
+                    return timeout();
+                }
+            }
+            return error;
+        }
+
+        private static LimitException timeout() {
+            return new LimitException(timedOut, 408, "Request body was not received in time", "REQUEST_TIMEOUT");
+        }
+    }
+
+    /**
+     * Tracks object/array nesting outside string literals and fails past maxDepth, which
+     * also bounds what JsonReader.skipValue() and generic values will descend into
+     */
+    private static final class DepthLimitedReader extends FilterReader {
+        private final int maxDepth;
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+
+        DepthLimitedReader(Reader in, int maxDepth) {
+            super(in);
+            this.maxDepth = maxDepth;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c >= 0) {
+                scan((char) c);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            for (int i = 0; i < read; i++) {
+                scan(buffer[offset + i]);
+            }
+            return read;
+        }
+
+        private void scan(char c) throws LimitException {
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                if (++depth > maxDepth) {
+                    throw new LimitException(tooDeep, 400, "Request body nests deeper than " + maxDepth + " levels",
+                            "VALIDATION_ERROR");
+                }
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+    }
+}
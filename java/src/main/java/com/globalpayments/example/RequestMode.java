@@ -0,0 +1,121 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-request mock/live routing
+ *
+ * Each request runs in the global mode from /mock-mode unless it carries an
+ * X-Mock-Mode header ("true" or "false") together with an X-Mock-Mode-Key header
+ * matching MOCK_MODE_API_KEY. This lets synthetic load run in mock mode on a node
+ * that serves live traffic. Overrides are refused when no key is configured or the
+ * key does not match, so a misconfigured load test can never fall through to live.
+ *
+ * The same key guards changes to the global mode and the simulator (POST /mock-mode),
+ * which affect every request without an override. Only a sandbox node with no key
+ * configured, such as a local demo, accepts those changes without it.
+ */
+public final class RequestMode {
+
+    public static final String MODE_HEADER = "X-Mock-Mode";
+    public static final String KEY_HEADER = "X-Mock-Mode-Key";
+    public static final String RESPONSE_HEADER = "X-Payment-Mode";
+
+    private static final String ATTRIBUTE = RequestMode.class.getName();
+
+    public enum Mode {
+        MOCK, LIVE;
+
+        public String tag() {
+            return this == MOCK ? "mock" : "live";
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Metrics.Counter> counters = new ConcurrentHashMap<>();
+    private static final LongAdder rejectedOverrides = new LongAdder();
+
+    private RequestMode() {
+    }
+
+    /**
+     * Resolve the mode for this request, or null if it requested an override it is not allowed to make
+     */
+    public static Mode resolve(HttpServletRequest request) {
+        Object cached = request.getAttribute(ATTRIBUTE);
+        if (cached instanceof Mode) {
+            return (Mode) cached;
+        }
+
+        Mode mode;
+        String override = request.getHeader(MODE_HEADER);
+        if (override == null || override.isEmpty()) {
+            mode = MockModeServlet.isMockModeEnabled() ? Mode.MOCK : Mode.LIVE;
+        } else if (!isAuthorized(request.getHeader(KEY_HEADER))) {
+            rejectedOverrides.increment();
+            return null;
+        } else if ("true".equalsIgnoreCase(override) || "mock".equalsIgnoreCase(override)) {
+            mode = Mode.MOCK;
+        } else if ("false".equalsIgnoreCase(override) || "live".equalsIgnoreCase(override)) {
+            mode = Mode.LIVE;
+        } else {
+            rejectedOverrides.increment();
+            return null;
+        }
+
+        request.setAttribute(ATTRIBUTE, mode);
+        return mode;
+    }
+
+    /**
+     * Count a handled request for an endpoint under its mode and tag the response
+     */
+    public static void record(String endpoint, Mode mode, HttpServletResponse response) {
+        response.setHeader(RESPONSE_HEADER, mode.tag());
+        counters.computeIfAbsent(endpoint + "." + mode.tag(), k -> Metrics.counter("payment_mode_requests_total",
+                "Requests routed to the mock or live gateway path, by endpoint", "endpoint", endpoint, "mode", mode.tag()))
+                .increment();
+    }
+
+    /**
+     * Request counts per endpoint and mode
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        counters.forEach((key, count) -> stats.put(key, count.get()));
+        stats.put("rejectedOverrides", rejectedOverrides.sum());
+        return stats;
+    }
+
+    /**
+     * Whether a request may change the global mode or the simulator settings
+     */
+    public static boolean mayChangeDefaults(HttpServletRequest request) {
+        AppConfig config = AppConfig.get();
+        if (isEmpty(config.get("MOCK_MODE_API_KEY", null)) && !config.isProduction()) {
+            return true;
+        }
+        return isAuthorized(request.getHeader(KEY_HEADER));
+    }
+
+    private static boolean isAuthorized(String providedKey) {
+        String expectedKey = AppConfig.get().get("MOCK_MODE_API_KEY", null);
+        if (isEmpty(expectedKey) || providedKey == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                expectedKey.getBytes(StandardCharsets.UTF_8),
+                providedKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+}
@@ -0,0 +1,489 @@
+package com.globalpayments.example;
+
+import com.google.gson.Gson;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batch settlement of authorize-only charges
+ *
+ * /charge with captureMode "authorize" (or CHARGE_CAPTURE_MODE=authorize) only
+ * authorizes at the gateway and records the open authorization here, keeping the
+ * capture call off the request path. Every SETTLEMENT_INTERVAL_SECONDS, optionally
+ * only inside SETTLEMENT_WINDOW (e.g. "01:00-05:00" local time), open authorizations
+ * are captured in batches of SETTLEMENT_BATCH_SIZE with SETTLEMENT_PARALLELISM
+ * concurrent capture calls. POST /settlement, with X-Settlement-Key matching
+ * SETTLEMENT_API_KEY, asks the scheduler for an extra batch right away.
+ *
+ * Open authorizations are journaled under data/settlement (fsynced before the charge
+ * is acknowledged) and replayed on startup. An authorization that cannot be journaled
+ * is not accepted, so /charge fails rather than acknowledge a charge nobody will capture.
+ * Captures that fail because the gateway is unavailable stay open for the next batch;
+ * other failures are closed as capture_failed. Each batch produces a report, and the
+ * most recent reports are kept for GET /settlement.
+ */
+public final class SettlementEngine {
+
+    private static final Path SETTLEMENT_DIR = Paths.get("data", "settlement");
+    private static final Path JOURNAL = SETTLEMENT_DIR.resolve("authorizations.jsonl");
+    private static final int MAX_REPORTS = 20;
+    private static final int MAX_REPORTED_FAILURES = 20;
+
+    private static final Gson gson = new Gson();
+
+    private static final ConcurrentHashMap<String, OpenAuthorization> open = new ConcurrentHashMap<>();
+    private static final Deque<Map<String, Object>> reports = new ArrayDeque<>();
+
+    private static final LongAdder authorized = new LongAdder();
+    private static final LongAdder captured = new LongAdder();
+    private static final LongAdder captureFailures = new LongAdder();
+
+    private static final Object journalLock = new Object();
+    private static FileChannel journal;
+    private static ScheduledExecutorService scheduler;
+    private static ExecutorService capturePool;
+    private static volatile boolean running = false;
+    private static final AtomicBoolean batchRequested = new AtomicBoolean();
+
+    /**
+     * An authorization waiting to be captured
+     */
+    private static final class OpenAuthorization {
+        final String transactionId;
+        final String paymentMethodId;
+        final String amount;
+        final String currency;
+        final String mode;
+        final String authorizedAt;
+
+        OpenAuthorization(String transactionId, String paymentMethodId, String amount, String currency,
+                          String mode, String authorizedAt) {
+            this.transactionId = transactionId;
+            this.paymentMethodId = paymentMethodId;
+            this.amount = amount;
+            this.currency = currency;
+            this.mode = mode;
+            this.authorizedAt = authorizedAt;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("transactionId", transactionId);
+            map.put("paymentMethodId", paymentMethodId);
+            map.put("amount", amount);
+            map.put("currency", currency);
+            map.put("mode", mode);
+            map.put("authorizedAt", authorizedAt);
+            return map;
+        }
+    }
+
+    private SettlementEngine() {
+    }
+
+    /**
+     * Capture mode for a charge request: "authorize" or "capture" (the default, or
+     * CHARGE_CAPTURE_MODE when the request names none)
+     *
+     * @throws IllegalArgumentException for any other value
+     */
+    public static boolean isAuthorizeOnly(String requestedMode) {
+        String mode = requestedMode != null
+                ? requestedMode
+                : AppConfig.get().get("CHARGE_CAPTURE_MODE", "capture");
+        if ("authorize".equals(mode)) {
+            return true;
+        }
+        if ("capture".equals(mode)) {
+            return false;
+        }
+        throw new IllegalArgumentException((requestedMode != null ? "captureMode" : "CHARGE_CAPTURE_MODE")
+                + " must be \"authorize\" or \"capture\"");
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Replay open authorizations and schedule batch captures
+     */
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        try {
+            Files.createDirectories(SETTLEMENT_DIR);
+            replayJournal();
+            compactJournal();
+            journal = FileChannel.open(JOURNAL, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            Log.warn("Settlement engine disabled", "error", e.getMessage());
+            return;
+        }
+
+        AppConfig config = AppConfig.get();
+        int parallelism = Math.max(1, config.getInt("SETTLEMENT_PARALLELISM", 8));
+        AtomicInteger threadNumber = new AtomicInteger();
+        capturePool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "settlement-capture-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "settlement-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, config.getLong("SETTLEMENT_INTERVAL_SECONDS", 900));
+        scheduler.scheduleWithFixedDelay(SettlementEngine::scheduledRun, interval, interval, TimeUnit.SECONDS);
+        running = true;
+        Log.info("Settlement engine started", "openAuthorizations", open.size(), "intervalSeconds", interval,
+                "parallelism", parallelism);
+    }
+
+    public static synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdownNow();
+        capturePool.shutdown();
+        try {
+            capturePool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (journalLock) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Log.warn("Error closing settlement journal", "error", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Record an authorization to capture in a later batch. The journal write is forced
+     * to disk before returning, so an acknowledged authorization survives a crash.
+     *
+     * @throws IllegalStateException if the engine is not running
+     * @throws IOException if the journal write could not be forced to disk; the
+     *                     authorization is then not recorded and must not be acknowledged
+     */
+    public static void recordAuthorization(String transactionId, String paymentMethodId, BigDecimal amount,
+                                           String currency, RequestMode.Mode mode) throws IOException {
+        if (!running) {
+            throw new IllegalStateException("Settlement engine is not running");
+        }
+        OpenAuthorization authorization = new OpenAuthorization(transactionId, paymentMethodId,
+                amount.toPlainString(), currency, mode.tag(),
+                LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        appendJournal("authorized", authorization, null, true);
+        open.put(transactionId, authorization);
+        authorized.increment();
+    }
+
+    /**
+     * Have the scheduler run a batch as soon as it is free; false if one is already waiting
+     */
+    public static boolean requestBatch() {
+        if (!running) {
+            throw new IllegalStateException("Settlement engine is not running");
+        }
+        if (!batchRequested.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            scheduler.execute(() -> {
+                batchRequested.set(false);
+                try {
+                    runBatch();
+                } catch (Exception e) {
+                    Log.error("Settlement batch failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            batchRequested.set(false);
+            throw new IllegalStateException("Settlement engine is not running");
+        }
+        return true;
+    }
+
+    /**
+     * Capture one batch of open authorizations now and return its report
+     */
+    private static synchronized Map<String, Object> runBatch() {
+        if (!running) {
+            throw new IllegalStateException("Settlement engine is not running");
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        String batchId = IdGenerator.next("bat_");
+        int batchSize = Math.max(1, AppConfig.get().getInt("SETTLEMENT_BATCH_SIZE", 1000));
+
+        List<OpenAuthorization> batch = new ArrayList<>(open.values());
+        batch.sort((a, b) -> a.authorizedAt.compareTo(b.authorizedAt));
+        if (batch.size() > batchSize) {
+            batch = batch.subList(0, batchSize);
+        }
+
+        LongAdder capturedCount = new LongAdder();
+        LongAdder retryCount = new LongAdder();
+        List<Map<String, Object>> failures = Collections.synchronizedList(new ArrayList<>());
+        BigDecimal[] capturedAmount = {BigDecimal.ZERO};
+
+        List<CompletableFuture<Void>> captures = new ArrayList<>(batch.size());
+        for (OpenAuthorization authorization : batch) {
+            captures.add(CompletableFuture.runAsync(() -> {
+                String outcome = capture(authorization, batchId, failures);
+                if ("captured".equals(outcome)) {
+                    capturedCount.increment();
+                    synchronized (capturedAmount) {
+                        capturedAmount[0] = capturedAmount[0].add(new BigDecimal(authorization.amount));
+                    }
+                } else if ("retry".equals(outcome)) {
+                    retryCount.increment();
+                }
+            }, capturePool));
+        }
+        CompletableFuture.allOf(captures.toArray(new CompletableFuture<?>[0])).join();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("batchId", batchId);
+        report.put("startedAt", startedAt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        report.put("durationMs", (System.nanoTime() - start) / 1_000_000L);
+        report.put("attempted", batch.size());
+        report.put("captured", capturedCount.sum());
+        report.put("failed", failures.size());
+        report.put("retryLater", retryCount.sum());
+        report.put("capturedAmount", capturedAmount[0].toPlainString());
+        report.put("remainingOpen", open.size());
+        report.put("failures", failures.size() > MAX_REPORTED_FAILURES
+                ? new ArrayList<>(failures.subList(0, MAX_REPORTED_FAILURES))
+                : new ArrayList<>(failures));
+
+        synchronized (reports) {
+            reports.addFirst(report);
+            while (reports.size() > MAX_REPORTS) {
+                reports.removeLast();
+            }
+        }
+        if (!batch.isEmpty()) {
+            Log.info("Settlement batch finished", "batchId", batchId, "attempted", batch.size(),
+                    "captured", capturedCount.sum(), "failed", failures.size(), "retryLater", retryCount.sum(),
+                    "durationMs", report.get("durationMs"));
+        }
+        return report;
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("running", running);
+        stats.put("openAuthorizations", open.size());
+        stats.put("authorized", authorized.sum());
+        stats.put("captured", captured.sum());
+        stats.put("captureFailures", captureFailures.sum());
+        return stats;
+    }
+
+    public static List<Map<String, Object>> recentReports() {
+        synchronized (reports) {
+            return new ArrayList<>(reports);
+        }
+    }
+
+    private static void scheduledRun() {
+        try {
+            if (!open.isEmpty() && insideWindow()) {
+                runBatch();
+            }
+        } catch (Exception e) {
+            Log.error("Settlement batch failed", e);
+        }
+    }
+
+    private static boolean insideWindow() {
+        String window = AppConfig.get().get("SETTLEMENT_WINDOW", null);
+        if (window == null) {
+            return true;
+        }
+        try {
+            String[] bounds = window.split("-");
+            LocalTime from = LocalTime.parse(bounds[0].trim());
+            LocalTime to = LocalTime.parse(bounds[1].trim());
+            LocalTime now = LocalTime.now();
+            // A window such as 22:00-04:00 wraps past midnight
+            return from.isBefore(to)
+                    ? !now.isBefore(from) && now.isBefore(to)
+                    : !now.isBefore(from) || now.isBefore(to);
+        } catch (RuntimeException e) {
+            Log.warn("Invalid SETTLEMENT_WINDOW, settling without a window", "window", window);
+            return true;
+        }
+    }
+
+    /**
+     * Capture one authorization: "captured", "failed" or "retry"
+     */
+    private static String capture(OpenAuthorization authorization, String batchId, List<Map<String, Object>> failures) {
+        try {
+            String captureId;
+            if (RequestMode.Mode.MOCK.tag().equals(authorization.mode)) {
+                MockGatewaySimulator.Outcome outcome = MockGatewaySimulator.simulateVerify();
+                if (outcome.timedOut) {
+                    return "retry";
+                }
+                captureId = authorization.transactionId;
+            } else {
+                captureId = PaymentUtils.capturePaymentWithSDK(authorization.transactionId,
+                        new BigDecimal(authorization.amount), "cap_" + authorization.transactionId);
+            }
+            close(authorization, "captured", batchId, captureId, null);
+            captured.increment();
+            return "captured";
+        } catch (Exception e) {
+            if (PaymentUtils.isGatewayUnavailable(e)) {
+                return "retry";
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                return "retry";
+            }
+            close(authorization, "capture_failed", batchId, null, e.getMessage());
+            captureFailures.increment();
+
+            Map<String, Object> failure = new HashMap<>();
+            failure.put("transactionId", authorization.transactionId);
+            failure.put("paymentMethodId", authorization.paymentMethodId);
+            failure.put("message", e.getMessage());
+            failures.add(failure);
+            return "failed";
+        }
+    }
+
+    private static void close(OpenAuthorization authorization, String status, String batchId,
+                              String captureId, String message) {
+        open.remove(authorization.transactionId);
+        try {
+            appendJournal(status, authorization, batchId, false);
+        } catch (IOException e) {
+            // Replayed as open after a restart and captured again under the same capture key
+            Log.warn("Settlement journal write failed", "transactionId", authorization.transactionId,
+                    "event", status, "error", e.getMessage());
+        }
+
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("transactionId", captureId != null ? captureId : authorization.transactionId);
+        entry.put("paymentMethodId", authorization.paymentMethodId);
+        entry.put("amount", authorization.amount);
+        entry.put("currency", authorization.currency);
+        entry.put("status", status);
+        entry.put("mode", authorization.mode);
+        entry.put("responseMessage", message);
+        entry.put("settlementBatchId", batchId);
+        entry.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        TransactionLedger.record(entry);
+    }
+
+    // Closing records are not forced: if one is lost in a crash the authorization is
+    // captured again under the same capture key, which the gateway deduplicates.
+    private static void appendJournal(String event, OpenAuthorization authorization, String batchId, boolean force)
+            throws IOException {
+        Map<String, Object> record = authorization.toMap();
+        record.put("event", event);
+        record.put("batchId", batchId);
+        ByteBuffer buffer = ByteBuffer.wrap((gson.toJson(record) + "\n").getBytes(StandardCharsets.UTF_8));
+        synchronized (journalLock) {
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            if (force) {
+                journal.force(false);
+            }
+        }
+    }
+
+    private static void replayJournal() throws IOException {
+        if (!Files.exists(JOURNAL)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(JOURNAL, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Map<?, ?> record;
+                try {
+                    record = gson.fromJson(line, Map.class);
+                } catch (RuntimeException e) {
+                    Log.warn("Skipping unreadable settlement journal entry");
+                    continue;
+                }
+                if (record == null || record.get("transactionId") == null) {
+                    continue;
+                }
+                String transactionId = (String) record.get("transactionId");
+                if ("authorized".equals(record.get("event"))) {
+                    open.put(transactionId, new OpenAuthorization(transactionId,
+                            (String) record.get("paymentMethodId"),
+                            (String) record.get("amount"),
+                            (String) record.get("currency"),
+                            (String) record.get("mode"),
+                            (String) record.get("authorizedAt")));
+                } else {
+                    open.remove(transactionId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the open authorizations
+     */
+    private static void compactJournal() throws IOException {
+        Path compacted = SETTLEMENT_DIR.resolve("authorizations.jsonl.tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (OpenAuthorization authorization : open.values()) {
+                Map<String, Object> record = authorization.toMap();
+                record.put("event", "authorized");
+                writer.write(gson.toJson(record));
+                writer.write('\n');
+            }
+        }
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(compacted, JOURNAL, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
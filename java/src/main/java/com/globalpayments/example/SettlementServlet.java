@@ -0,0 +1,99 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settlement Endpoint
+ *
+ * GET /settlement  - Open authorizations and recent batch capture reports
+ * POST /settlement - Ask the settlement scheduler to capture a batch now (needs X-Settlement-Key)
+ */
+@WebServlet(name = "SettlementServlet", urlPatterns = {"/settlement"}, loadOnStartup = 1)
+public class SettlementServlet extends HttpServlet {
+
+    static final String KEY_HEADER = "X-Settlement-Key";
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        handleCORS(response);
+
+        Map<String, Object> settlementData = new HashMap<>(SettlementEngine.stats());
+        settlementData.put("batches", SettlementEngine.recentReports());
+
+        ApiResponse.ok(settlementData, "Settlement status retrieved successfully").write(response);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        handleCORS(response);
+
+        // Refused outright when no key is configured
+        if (!isAuthorized(request.getHeader(KEY_HEADER))) {
+            Log.warn("Settlement run refused: missing or invalid key", "header", KEY_HEADER);
+            sendErrorResponse(response, 403, "Settlement runs require a valid " + KEY_HEADER, "FORBIDDEN");
+            return;
+        }
+
+        boolean scheduled;
+        try {
+            // The batch runs on the settlement scheduler, never on the request thread
+            scheduled = SettlementEngine.requestBatch();
+        } catch (IllegalStateException e) {
+            sendErrorResponse(response, 503, e.getMessage(), "SETTLEMENT_UNAVAILABLE");
+            return;
+        }
+        Log.info("Settlement batch requested", "scheduled", scheduled);
+
+        Map<String, Object> responseData = new HashMap<>(SettlementEngine.stats());
+        responseData.put("scheduled", scheduled);
+
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        ApiResponse.ok(responseData, scheduled
+                ? "Settlement batch scheduled; see GET /settlement for its report"
+                : "A settlement batch is already scheduled").write(response);
+    }
+
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        handleCORS(response);
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    private void handleCORS(HttpServletResponse response) {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID, " + KEY_HEADER);
+    }
+
+    private static boolean isAuthorized(String providedKey) {
+        String expectedKey = AppConfig.get().get("SETTLEMENT_API_KEY", null);
+        if (expectedKey == null || expectedKey.isEmpty() || providedKey == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                expectedKey.getBytes(StandardCharsets.UTF_8),
+                providedKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendErrorResponse(HttpServletResponse response, int statusCode, String message, String errorCode)
+            throws IOException {
+        ApiResponse.sendError(response, statusCode, message, errorCode);
+    }
+}
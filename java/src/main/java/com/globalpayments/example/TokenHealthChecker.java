@@ -0,0 +1,415 @@
+package com.globalpayments.example;
+
+import com.global.api.entities.exceptions.GatewayException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background re-verification of stored payment tokens
+ *
+ * Every TOKEN_HEALTH_INTERVAL_HOURS a pass walks the saved payment methods in ID order
+ * (IDs are time-ordered) in batches of TOKEN_HEALTH_BATCH_SIZE. Each token is verified at
+ * the gateway with TOKEN_HEALTH_CONCURRENCY calls in flight and a global pace of
+ * TOKEN_HEALTH_RATE_PER_SECOND, so a pass over many cards never spikes gateway load.
+ * Each method gets tokenStatus (valid, expired or invalid), tokenCheckedAt and a
+ * refreshed expiry, written back once per batch.
+ *
+ * Progress is checkpointed to data/token-health/checkpoint.json after each batch, so a
+ * restart resumes the pass where it stopped. If the gateway is unavailable, or refuses
+ * our credentials or rate (401, 403, 429), the batch is not checkpointed and the pass
+ * resumes on the next check, every TOKEN_HEALTH_RETRY_MINUTES.
+ *
+ * Only a gateway decision about the card (a declined verification or a rejected token)
+ * marks it invalid. A token that fails for any other reason keeps its previous status
+ * and is counted under "unverified".
+ */
+public final class TokenHealthChecker {
+
+    public static final String STATUS_VALID = "valid";
+    public static final String STATUS_EXPIRED = "expired";
+    public static final String STATUS_INVALID = "invalid";
+
+    private static final Path HEALTH_DIR = Paths.get("data", "token-health");
+    private static final Path CHECKPOINT = HEALTH_DIR.resolve("checkpoint.json");
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final LongAdder verified = new LongAdder();
+    private static final ConcurrentHashMap<String, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private static final LongAdder gatewayUnavailable = new LongAdder();
+    private static final LongAdder unverified = new LongAdder();
+    private static final AtomicBoolean passRunning = new AtomicBoolean();
+
+    private static ScheduledExecutorService scheduler;
+    private static ExecutorService verifyPool;
+    private static volatile Checkpoint checkpoint;
+    private static volatile boolean running = false;
+    private static long nextPermitAt;
+
+    /**
+     * Pass progress persisted between batches
+     */
+    private static final class Checkpoint {
+        String passId;
+        String startedAt;
+        String completedAt;
+        String lastId;
+        long checked;
+        long valid;
+        long expired;
+        long invalid;
+    }
+
+    private TokenHealthChecker() {
+    }
+
+    public static boolean isEnabled() {
+        return AppConfig.get().getBoolean("TOKEN_HEALTH_ENABLED", false);
+    }
+
+    /**
+     * Load the checkpoint and schedule passes
+     */
+    public static synchronized void start() {
+        if (running || !isEnabled()) {
+            return;
+        }
+        try {
+            Files.createDirectories(HEALTH_DIR);
+            checkpoint = loadCheckpoint();
+        } catch (IOException e) {
+            Log.warn("Token health checks disabled", "error", e.getMessage());
+            return;
+        }
+
+        AppConfig config = AppConfig.get();
+        int concurrency = Math.max(1, config.getInt("TOKEN_HEALTH_CONCURRENCY", 4));
+        AtomicInteger threadNumber = new AtomicInteger();
+        verifyPool = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "token-health-verify-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "token-health-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long retryMinutes = Math.max(1, config.getLong("TOKEN_HEALTH_RETRY_MINUTES", 5));
+        scheduler.scheduleWithFixedDelay(TokenHealthChecker::scheduledRun, 1, retryMinutes * 60, TimeUnit.SECONDS);
+        running = true;
+        Log.info("Token health checks started", "concurrency", concurrency,
+                "resumingPass", checkpoint != null && checkpoint.completedAt == null ? checkpoint.passId : null);
+    }
+
+    public static synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        scheduler.shutdownNow();
+        verifyPool.shutdownNow();
+        try {
+            verifyPool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Long> statuses = new HashMap<>();
+        statusCounts.forEach((status, count) -> statuses.put(status, count.sum()));
+        stats.put("running", running);
+        stats.put("passRunning", passRunning.get());
+        stats.put("verified", verified.sum());
+        stats.put("statuses", statuses);
+        stats.put("gatewayUnavailable", gatewayUnavailable.sum());
+        stats.put("unverified", unverified.sum());
+        Checkpoint current = checkpoint;
+        if (current != null) {
+            Map<String, Object> pass = new HashMap<>();
+            pass.put("passId", current.passId);
+            pass.put("startedAt", current.startedAt);
+            pass.put("completedAt", current.completedAt);
+            pass.put("checked", current.checked);
+            pass.put("valid", current.valid);
+            pass.put("expired", current.expired);
+            pass.put("invalid", current.invalid);
+            stats.put("lastPass", pass);
+        }
+        return stats;
+    }
+
+    private static void scheduledRun() {
+        if (!passRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (isPassDue()) {
+                runPass();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.error("Token health pass failed", e);
+        } finally {
+            passRunning.set(false);
+        }
+    }
+
+    private static boolean isPassDue() {
+        Checkpoint current = checkpoint;
+        if (current == null || current.completedAt == null) {
+            return true;
+        }
+        long intervalHours = Math.max(1, AppConfig.get().getLong("TOKEN_HEALTH_INTERVAL_HOURS", 24));
+        LocalDateTime completedAt = LocalDateTime.parse(current.completedAt, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        return Duration.between(completedAt, LocalDateTime.now()).toHours() >= intervalHours;
+    }
+
+    /**
+     * Verify batches from the checkpoint onwards until the pass completes or the gateway is unavailable
+     */
+    private static void runPass() throws InterruptedException, IOException {
+        Checkpoint current = checkpoint;
+        if (current == null || current.completedAt != null) {
+            current = new Checkpoint();
+            current.passId = IdGenerator.next("thp_");
+            current.startedAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            saveCheckpoint(current);
+            Log.info("Token health pass started", "passId", current.passId);
+        }
+
+        List<Map<String, Object>> methods = JsonStorage.loadPaymentMethods();
+        methods.sort(Comparator.comparing(method -> String.valueOf(method.get("id"))));
+        int batchSize = Math.max(1, AppConfig.get().getInt("TOKEN_HEALTH_BATCH_SIZE", 50));
+
+        List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+        for (Map<String, Object> method : methods) {
+            if (current.lastId != null && String.valueOf(method.get("id")).compareTo(current.lastId) <= 0) {
+                continue;
+            }
+            batch.add(method);
+            if (batch.size() == batchSize) {
+                if (!runBatch(current, batch)) {
+                    return;
+                }
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty() && !runBatch(current, batch)) {
+            return;
+        }
+
+        current.completedAt = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        saveCheckpoint(current);
+        Log.info("Token health pass completed", "passId", current.passId, "checked", current.checked,
+                "valid", current.valid, "expired", current.expired, "invalid", current.invalid);
+    }
+
+    /**
+     * Verify one batch and write the results; returns false if the pass should pause
+     */
+    private static boolean runBatch(Checkpoint current, List<Map<String, Object>> batch)
+            throws InterruptedException, IOException {
+        if (!running) {
+            return false;
+        }
+        Map<String, Map<String, Object>> updates = new ConcurrentHashMap<>();
+        AtomicBoolean unavailable = new AtomicBoolean();
+
+        List<CompletableFuture<Void>> checks = new ArrayList<>(batch.size());
+        for (Map<String, Object> method : batch) {
+            checks.add(CompletableFuture.runAsync(() -> {
+                if (unavailable.get()) {
+                    return;
+                }
+                try {
+                    acquirePermit();
+                    Map<String, Object> update = verify(method);
+                    if (update == null) {
+                        unavailable.set(true);
+                    } else if (!update.isEmpty()) {
+                        updates.put(String.valueOf(method.get("id")), update);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    unavailable.set(true);
+                }
+            }, verifyPool));
+        }
+        try {
+            CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (RuntimeException e) {
+            // The pool was shut down under the batch
+            return false;
+        }
+
+        // Results verified before an outage are kept; the batch is re-run when the pass resumes
+        JsonStorage.updatePaymentMethods(updates);
+        if (unavailable.get()) {
+            gatewayUnavailable.increment();
+            Log.warn("Token health pass paused: gateway unavailable or refusing requests", "passId", current.passId);
+            return false;
+        }
+
+        for (Map<String, Object> update : updates.values()) {
+            Object status = update.get("tokenStatus");
+            if (STATUS_VALID.equals(status)) {
+                current.valid++;
+            } else if (STATUS_EXPIRED.equals(status)) {
+                current.expired++;
+            } else {
+                current.invalid++;
+            }
+        }
+        current.checked += updates.size();
+        current.lastId = String.valueOf(batch.get(batch.size() - 1).get("id"));
+        saveCheckpoint(current);
+        return true;
+    }
+
+    /**
+     * Verify one stored token and return the fields to record: null if the pass should
+     * pause, empty if the token could not be verified and keeps its current status
+     */
+    private static Map<String, Object> verify(Map<String, Object> method) throws InterruptedException {
+        Map<String, Object> update = new HashMap<>();
+        String expiry = (String) method.get("expiry");
+        String status;
+        String message = null;
+        String token = (String) method.get("storedPaymentToken");
+        try {
+            if (token == null || token.isEmpty()) {
+                throw new GatewayException("No stored payment token");
+            }
+            if (MockModeServlet.isMockModeEnabled() || !PaymentUtils.isSdkConfigured()) {
+                if (MockGatewaySimulator.simulateVerify().timedOut) {
+                    return null;
+                }
+            } else {
+                Map<String, String> cardDetails = PaymentUtils.refreshCardDetailsFromToken(token);
+                if (!"00".equals(cardDetails.get("expiryMonth")) && !"00".equals(cardDetails.get("expiryYear"))) {
+                    expiry = cardDetails.get("expiryMonth") + "/" + cardDetails.get("expiryYear");
+                }
+            }
+            status = isExpired(expiry) ? STATUS_EXPIRED : STATUS_VALID;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            if (PaymentUtils.isGatewayUnavailable(e)) {
+                return null;
+            }
+            if (PaymentUtils.isGatewayRefusal(e)) {
+                Log.warn("Token health check refused by the gateway", "error", e.getMessage());
+                return null;
+            }
+            if (!(e instanceof GatewayException)) {
+                unverified.increment();
+                Log.warn("Token health check failed, status unchanged", "paymentMethodId", method.get("id"),
+                        "error", e.getMessage());
+                return Collections.emptyMap();
+            }
+            // Declined verification, or a token the gateway rejects
+            status = STATUS_INVALID;
+            message = e.getMessage();
+        }
+
+        verified.increment();
+        statusCounts.computeIfAbsent(status, k -> new LongAdder()).increment();
+        if (!STATUS_VALID.equals(status)) {
+            Log.warn("Payment method token flagged", "paymentMethodId", method.get("id"), "tokenStatus", status,
+                    "message", message);
+        }
+
+        update.put("tokenStatus", status);
+        update.put("tokenStatusMessage", message);
+        update.put("tokenCheckedAt", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        update.put("expiry", expiry);
+        return update;
+    }
+
+    /**
+     * Whether an MM/YY expiry is in the past; cards are valid through the end of the expiry month
+     */
+    private static boolean isExpired(String expiry) {
+        if (expiry == null) {
+            return false;
+        }
+        try {
+            YearMonth expiresAt = YearMonth.parse(expiry.trim(), DateTimeFormatter.ofPattern("MM/yy"));
+            return expiresAt.isBefore(YearMonth.now());
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static void acquirePermit() throws InterruptedException {
+        double ratePerSecond = AppConfig.get().getDouble("TOKEN_HEALTH_RATE_PER_SECOND", 2.0);
+        long interval = ratePerSecond > 0 ? (long) (1000 / ratePerSecond) : 0;
+        long wait;
+        synchronized (TokenHealthChecker.class) {
+            long now = System.currentTimeMillis();
+            long permitAt = Math.max(now, nextPermitAt);
+            nextPermitAt = permitAt + interval;
+            wait = permitAt - now;
+        }
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+
+    private static Checkpoint loadCheckpoint() throws IOException {
+        if (!Files.exists(CHECKPOINT)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(CHECKPOINT, StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, Checkpoint.class);
+        } catch (RuntimeException e) {
+            Log.warn("Ignoring unreadable token health checkpoint", "error", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the checkpoint to a temporary file and move it into place so a crash never leaves a partial file
+     */
+    private static void saveCheckpoint(Checkpoint current) throws IOException {
+        Path temp = HEALTH_DIR.resolve("checkpoint.json.tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            gson.toJson(current, writer);
+        }
+        Files.move(temp, CHECKPOINT, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = current;
+    }
+}
@@ -0,0 +1,290 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Request-scoped trace
+ *
+ * TraceFilter opens a trace for each request on the request thread; the storage and
+ * gateway layers record stages into it with {@link #record(String, long)}, which is a
+ * no-op when no trace is active (background threads). Each trace carries a request ID
+ * (the client's X-Request-ID, or a generated one) that Log adds to every record.
+ *
+ * Responses get a Server-Timing header summing each stage (storage.load, storage.save,
+ * gateway.charge, serialize, ...) plus the total so far. With TRACE_EXPORT_ENABLED,
+ * a TRACE_SAMPLE_RATE fraction of traces, and every trace slower than TRACE_SLOW_MS,
+ * is queued to a background writer and appended as JSON lines to
+ * data/traces/traces-{date}.jsonl.
+ */
+public final class Trace {
+
+    private static final Path TRACE_DIR = Paths.get("data", "traces");
+    private static final Pattern VALID_REQUEST_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+    private static final String REQUEST_ID_PREFIX = "req_";
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final ThreadLocal<Trace> current = new ThreadLocal<>();
+
+    private static final LongAdder exported = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder exportFailures = new LongAdder();
+
+    private static BlockingQueue<Trace> queue;
+    private static Thread exporter;
+    private static volatile boolean exporting = false;
+
+    private final String requestId;
+    private final String name;
+    private final long startNanos;
+    private final long startMillis;
+    private final boolean sampled;
+
+    private String[] spanNames = new String[8];
+    private long[] spanStarts = new long[8];
+    private long[] spanEnds = new long[8];
+    private int spanCount;
+
+    private long endNanos;
+    private int status;
+
+    private Trace(String requestId, String name, boolean sampled) {
+        this.requestId = requestId;
+        this.name = name;
+        this.startNanos = System.nanoTime();
+        this.startMillis = System.currentTimeMillis();
+        this.sampled = sampled;
+    }
+
+    /**
+     * Start the background exporter if TRACE_EXPORT_ENABLED is set
+     */
+    public static synchronized void start() {
+        if (exporting || !AppConfig.get().getBoolean("TRACE_EXPORT_ENABLED", false)) {
+            return;
+        }
+        try {
+            Files.createDirectories(TRACE_DIR);
+        } catch (IOException e) {
+            Log.warn("Trace export disabled", "error", e.getMessage());
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(AppConfig.get().getInt("TRACE_QUEUE_CAPACITY", 1000));
+        exporting = true;
+        exporter = new Thread(Trace::exportLoop, "trace-exporter");
+        exporter.setDaemon(true);
+        exporter.start();
+    }
+
+    /**
+     * Stop the exporter after writing queued traces
+     */
+    public static synchronized void stop() {
+        if (!exporting) {
+            return;
+        }
+        exporting = false;
+        try {
+            exporter.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Open a trace on the calling thread. A valid client-supplied request ID is kept,
+     * otherwise one is generated.
+     */
+    public static Trace begin(String clientRequestId, String name) {
+        String requestId = clientRequestId != null && VALID_REQUEST_ID.matcher(clientRequestId).matches()
+                ? clientRequestId
+                : IdGenerator.next(REQUEST_ID_PREFIX);
+        boolean sampled = exporting
+                && ThreadLocalRandom.current().nextDouble() < AppConfig.get().getDouble("TRACE_SAMPLE_RATE", 0.01);
+        Trace trace = new Trace(requestId, name, sampled);
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * Close the calling thread's trace and queue it for export if sampled or slow
+     */
+    public static void end(int status) {
+        Trace trace = current.get();
+        if (trace == null) {
+            return;
+        }
+        current.remove();
+        trace.endNanos = System.nanoTime();
+        trace.status = status;
+
+        if (!exporting) {
+            return;
+        }
+        long slowNanos = AppConfig.get().getLong("TRACE_SLOW_MS", 1000) * 1_000_000L;
+        if (trace.sampled || trace.endNanos - trace.startNanos >= slowNanos) {
+            if (!queue.offer(trace)) {
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * Request ID of the calling thread's trace, or null outside a request
+     */
+    public static String currentRequestId() {
+        Trace trace = current.get();
+        return trace != null ? trace.requestId : null;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Record a stage that started at startNanos (System.nanoTime()) and ends now
+     */
+    public static void record(String stage, long startNanos) {
+        Trace trace = current.get();
+        if (trace != null) {
+            trace.addSpan(stage, startNanos, System.nanoTime());
+        }
+    }
+
+    /**
+     * Set the Server-Timing header from the stages recorded so far, unless the response
+     * is already committed. Safe to call more than once; the latest call wins.
+     */
+    public static void setServerTiming(HttpServletResponse response) {
+        Trace trace = current.get();
+        if (trace == null || response.isCommitted() || !AppConfig.get().getBoolean("SERVER_TIMING_ENABLED", true)) {
+            return;
+        }
+        response.setHeader("Server-Timing", trace.serverTiming(System.nanoTime()));
+        response.setHeader("Timing-Allow-Origin", "*");
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("exporting", exporting);
+        stats.put("exported", exported.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("exportFailures", exportFailures.sum());
+        stats.put("queued", queue != null ? queue.size() : 0);
+        return stats;
+    }
+
+    private void addSpan(String stage, long start, long end) {
+        if (spanCount == spanNames.length) {
+            int size = spanCount * 2;
+            spanNames = Arrays.copyOf(spanNames, size);
+            spanStarts = Arrays.copyOf(spanStarts, size);
+            spanEnds = Arrays.copyOf(spanEnds, size);
+        }
+        spanNames[spanCount] = stage;
+        spanStarts[spanCount] = start;
+        spanEnds[spanCount] = end;
+        spanCount++;
+    }
+
+    /**
+     * Stage durations summed by name in first-seen order, then the total, e.g.
+     * storage.load;dur=0.41, gateway.charge;dur=351.20, serialize;dur=0.08, total;dur=352.30
+     */
+    private String serverTiming(long nowNanos) {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (int i = 0; i < spanCount; i++) {
+            totals.merge(spanNames[i], spanEnds[i] - spanStarts[i], Long::sum);
+        }
+        StringBuilder header = new StringBuilder(32 + totals.size() * 32);
+        for (Map.Entry<String, Long> stage : totals.entrySet()) {
+            appendTiming(header, stage.getKey(), stage.getValue());
+            header.append(", ");
+        }
+        appendTiming(header, "total", nowNanos - startNanos);
+        return header.toString();
+    }
+
+    private static void appendTiming(StringBuilder header, String stage, long nanos) {
+        header.append(stage).append(";dur=").append(nanos / 1000 / 1000.0);
+    }
+
+    private Map<String, Object> toExport() {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("requestId", requestId);
+        entry.put("name", name);
+        entry.put("status", status);
+        entry.put("start", LocalDateTime.ofInstant(Instant.ofEpochMilli(startMillis), ZONE)
+                .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        entry.put("durationMs", (endNanos - startNanos) / 1000 / 1000.0);
+        List<Map<String, Object>> spans = new ArrayList<>(spanCount);
+        for (int i = 0; i < spanCount; i++) {
+            Map<String, Object> span = new LinkedHashMap<>();
+            span.put("name", spanNames[i]);
+            span.put("offsetMs", (spanStarts[i] - startNanos) / 1000 / 1000.0);
+            span.put("durationMs", (spanEnds[i] - spanStarts[i]) / 1000 / 1000.0);
+            spans.add(span);
+        }
+        entry.put("spans", spans);
+        return entry;
+    }
+
+    private static void exportLoop() {
+        List<Trace> batch = new ArrayList<>();
+        while (exporting || !queue.isEmpty()) {
+            try {
+                Trace first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, 255);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static void writeBatch(List<Trace> batch) {
+        Path file = TRACE_DIR.resolve("traces-" + LocalDate.now(ZONE) + ".jsonl");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Trace trace : batch) {
+                ApiResponse.GSON.toJson(trace.toExport(), writer);
+                writer.newLine();
+            }
+            exported.add(batch.size());
+        } catch (IOException | RuntimeException e) {
+            exportFailures.add(batch.size());
+            Log.warn("Trace export failed", "traces", batch.size(), "error", e.getMessage());
+        }
+    }
+}
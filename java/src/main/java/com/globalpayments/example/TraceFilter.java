@@ -0,0 +1,39 @@
+package com.globalpayments.example;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Opens a request trace (see Trace) and returns its ID in X-Request-ID
+ *
+ * Mapped right after MetricsFilter in web.xml, so rate-limit and admission rejections
+ * carry a request ID too.
+ */
+@WebFilter(filterName = "TraceFilter", urlPatterns = {"/*"}, asyncSupported = true)
+public class TraceFilter implements Filter {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-ID";
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        Trace trace = Trace.begin(request.getHeader(REQUEST_ID_HEADER), request.getMethod() + " " + request.getServletPath());
+        response.setHeader(REQUEST_ID_HEADER, trace.getRequestId());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Trace.end(response.getStatus());
+        }
+    }
+}
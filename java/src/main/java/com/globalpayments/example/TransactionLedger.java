@@ -0,0 +1,402 @@
+package com.globalpayments.example;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only transaction ledger
+ *
+ * Charge results are queued by the request thread and written by a single background
+ * writer, so recording a transaction costs one queue offer on the response path.
+ * Entries are stored as compact JSON lines in numbered segment files under
+ * data/ledger, rolled at LEDGER_SEGMENT_MAX_BYTES. Each entry gets a ledger sequence
+ * number and a monotonic recordedAt time; an in-memory index of file positions by
+ * sequence and by paymentMethodId, plus the last sequence recorded in each millisecond,
+ * is rebuilt from the segments on startup. Queries seek to their time range through that
+ * and read matching entries straight from the segment files, newest first.
+ */
+public final class TransactionLedger {
+
+    private static final Path LEDGER_DIR = Paths.get("data", "ledger");
+    private static final String SEGMENT_PREFIX = "ledger-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+    private static final int BATCH_SIZE = 256;
+
+    private static final Gson gson = new Gson();
+
+    private static final ConcurrentSkipListMap<Long, Position> bySequence = new ConcurrentSkipListMap<>();
+    private static final ConcurrentHashMap<String, ConcurrentSkipListMap<Long, Position>> byPaymentMethod = new ConcurrentHashMap<>();
+    // recordedAt -> highest sequence recorded at that millisecond; recordedAt rises with sequence
+    private static final ConcurrentSkipListMap<Long, Long> byTime = new ConcurrentSkipListMap<>();
+    private static final ConcurrentHashMap<Integer, FileChannel> readers = new ConcurrentHashMap<>();
+
+    private static final LongAdder indexed = new LongAdder();
+    private static final LongAdder appended = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder writeFailures = new LongAdder();
+
+    private static BlockingQueue<Map<String, Object>> queue;
+    private static Thread writer;
+    private static volatile boolean running = false;
+
+    // Writer thread state
+    private static FileChannel segment;
+    private static int segmentNumber;
+    private static long segmentSize;
+    private static long nextSequence = 1;
+    private static long lastRecordedAt;
+
+    /**
+     * Position of one entry in the segment files
+     */
+    private static final class Position {
+        final long sequence;
+        final long recordedAt;
+        final int segment;
+        final long offset;
+        final int length;
+
+        Position(long sequence, long recordedAt, int segment, long offset, int length) {
+            this.sequence = sequence;
+            this.recordedAt = recordedAt;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private TransactionLedger() {
+    }
+
+    /**
+     * Rebuild the index from existing segments and start the writer
+     */
+    public static synchronized void start() {
+        if (running) {
+            return;
+        }
+        try {
+            Files.createDirectories(LEDGER_DIR);
+            rebuildIndex();
+            // Write to a fresh segment so a torn last line from a crash stays isolated
+            boolean lastIsEmpty = segmentNumber > 0 && Files.size(segmentPath(segmentNumber)) == 0;
+            openSegment(lastIsEmpty ? segmentNumber : segmentNumber + 1);
+        } catch (IOException e) {
+            Log.warn("Transaction ledger disabled", "error", e.getMessage());
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(AppConfig.get().getInt("LEDGER_QUEUE_CAPACITY", 10000));
+        running = true;
+        writer = new Thread(TransactionLedger::writeLoop, "ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Log.info("Transaction ledger started", "indexedEntries", indexed.sum());
+    }
+
+    /**
+     * Stop the writer after flushing queued entries
+     */
+    public static synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly(segment);
+        readers.values().forEach(TransactionLedger::closeQuietly);
+        readers.clear();
+    }
+
+    /**
+     * Queue a transaction for writing; never blocks the caller
+     */
+    public static void record(Map<String, Object> transaction) {
+        if (!running || !queue.offer(transaction)) {
+            dropped.increment();
+            // Keep the entry recoverable from the logs if the ledger cannot take it
+            Log.error("Transaction ledger unavailable, entry not recorded", "entry", gson.toJson(transaction));
+        }
+    }
+
+    /**
+     * Stream entries newest first to the consumer as raw JSON
+     *
+     * @param paymentMethodId only entries for this payment method, or null for all
+     * @param fromMillis      oldest recordedAt to include (epoch millis), or null
+     * @param toMillis        newest recordedAt to include (epoch millis), or null
+     * @param beforeSequence  cursor from a previous page (exclusive), or null to start at the newest entry
+     * @param limit           maximum number of entries
+     * @return cursor for the next page, or null if there are no more entries
+     */
+    public static Long query(String paymentMethodId, Long fromMillis, Long toMillis, Long beforeSequence,
+                             int limit, Consumer<String> consumer) throws IOException {
+        NavigableMap<Long, Position> index = paymentMethodId != null
+                ? byPaymentMethod.get(paymentMethodId)
+                : bySequence;
+        if (index == null) {
+            return null;
+        }
+        Long upperSequence = beforeSequence;
+        if (toMillis != null) {
+            // Seek past everything newer than toMillis instead of scanning it
+            Map.Entry<Long, Long> newestInRange = byTime.floorEntry(toMillis);
+            if (newestInRange == null) {
+                return null;
+            }
+            long bound = newestInRange.getValue() + 1;
+            upperSequence = upperSequence != null ? Math.min(upperSequence, bound) : bound;
+        }
+        NavigableMap<Long, Position> candidates = upperSequence != null
+                ? index.headMap(upperSequence, false).descendingMap()
+                : index.descendingMap();
+
+        int count = 0;
+        Long lastSequence = null;
+        for (Position position : candidates.values()) {
+            if (fromMillis != null && position.recordedAt < fromMillis) {
+                // recordedAt is monotonic in sequence order, so nothing older can match
+                return null;
+            }
+            if (count == limit) {
+                return lastSequence;
+            }
+            consumer.accept(read(position));
+            lastSequence = position.sequence;
+            count++;
+        }
+        return null;
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("running", running);
+        stats.put("entries", indexed.sum());
+        stats.put("paymentMethods", byPaymentMethod.size());
+        stats.put("appended", appended.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        stats.put("queued", queue != null ? queue.size() : 0);
+        return stats;
+    }
+
+    private static void writeLoop() {
+        List<Map<String, Object>> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                Map<String, Object> first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                writeFailures.add(batch.size());
+                Log.error("Transaction ledger write failed", e, "entries", batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static void writeBatch(List<Map<String, Object>> batch) throws IOException {
+        if (!segment.isOpen()) {
+            // A failed roll after an earlier write error
+            openSegment(segmentNumber + 1);
+        } else if (segmentSize >= AppConfig.get().getLong("LEDGER_SEGMENT_MAX_BYTES", 16L * 1024 * 1024)) {
+            closeQuietly(segment);
+            openSegment(segmentNumber + 1);
+        }
+
+        StringBuilder lines = new StringBuilder(batch.size() * 256);
+        List<Position> positions = new ArrayList<>(batch.size());
+        List<String> paymentMethodIds = new ArrayList<>(batch.size());
+        long offset = segmentSize;
+
+        for (Map<String, Object> transaction : batch) {
+            long recordedAt = Math.max(lastRecordedAt, System.currentTimeMillis());
+            lastRecordedAt = recordedAt;
+            long sequence = nextSequence++;
+
+            Map<String, Object> entry = new HashMap<>(transaction);
+            entry.put("seq", sequence);
+            entry.put("recordedAt", recordedAt);
+            String line = gson.toJson(entry);
+            int length = line.getBytes(StandardCharsets.UTF_8).length;
+
+            lines.append(line).append('\n');
+            positions.add(new Position(sequence, recordedAt, segmentNumber, offset, length));
+            paymentMethodIds.add((String) transaction.get("paymentMethodId"));
+            offset += length + 1;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            if (AppConfig.get().getBoolean("LEDGER_FSYNC", false)) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            recoverFromFailedWrite();
+            throw e;
+        }
+        segmentSize = offset;
+
+        // Publish only after the bytes are written so readers never see a missing entry
+        for (int i = 0; i < positions.size(); i++) {
+            index(positions.get(i), paymentMethodIds.get(i));
+        }
+        appended.add(batch.size());
+    }
+
+    /**
+     * Part of a batch may have reached the file: take the size from the file, and move to a
+     * new segment if a torn line was left, so later offsets are right and the next entry is
+     * not appended onto it
+     */
+    private static void recoverFromFailedWrite() {
+        try {
+            long size = segment.size();
+            if (size == segmentSize) {
+                return;
+            }
+            segmentSize = size;
+            closeQuietly(segment);
+            openSegment(segmentNumber + 1);
+        } catch (IOException e) {
+            // The next batch reopens a segment
+            closeQuietly(segment);
+        }
+    }
+
+    private static void index(Position position, String paymentMethodId) {
+        bySequence.put(position.sequence, position);
+        byTime.merge(position.recordedAt, position.sequence, Math::max);
+        indexed.increment();
+        if (paymentMethodId != null) {
+            byPaymentMethod.computeIfAbsent(paymentMethodId, k -> new ConcurrentSkipListMap<>())
+                    .put(position.sequence, position);
+        }
+    }
+
+    private static String read(Position position) throws IOException {
+        FileChannel channel = readers.computeIfAbsent(position.segment, number -> {
+            try {
+                return FileChannel.open(segmentPath(number), StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open ledger segment " + number, e);
+            }
+        });
+        ByteBuffer buffer = ByteBuffer.allocate(position.length);
+        long offset = position.offset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Ledger segment " + position.segment + " is truncated");
+            }
+            offset += read;
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    private static void rebuildIndex() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(LEDGER_DIR)) {
+            files.filter(p -> segmentNumber(p) > 0).forEach(segments::add);
+        }
+        segments.sort((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+
+        for (Path path : segments) {
+            int number = segmentNumber(path);
+            segmentNumber = Math.max(segmentNumber, number);
+            long offset = 0;
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int length = line.getBytes(StandardCharsets.UTF_8).length;
+                    try {
+                        JsonObject entry = JsonParser.parseString(line).getAsJsonObject();
+                        long sequence = entry.get("seq").getAsLong();
+                        long recordedAt = entry.get("recordedAt").getAsLong();
+                        String paymentMethodId = entry.has("paymentMethodId") && !entry.get("paymentMethodId").isJsonNull()
+                                ? entry.get("paymentMethodId").getAsString()
+                                : null;
+                        index(new Position(sequence, recordedAt, number, offset, length), paymentMethodId);
+                        nextSequence = Math.max(nextSequence, sequence + 1);
+                        lastRecordedAt = Math.max(lastRecordedAt, recordedAt);
+                    } catch (RuntimeException e) {
+                        Log.warn("Skipping unreadable ledger entry", "segment", path.getFileName(), "offset", offset);
+                    }
+                    offset += length + 1;
+                }
+            }
+        }
+    }
+
+    private static void openSegment(int number) throws IOException {
+        segment = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentNumber = number;
+        segmentSize = segment.size();
+    }
+
+    private static Path segmentPath(int number) {
+        return LEDGER_DIR.resolve(SEGMENT_PREFIX + String.format("%06d", number) + SEGMENT_SUFFIX);
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.warn("Error closing ledger segment", "error", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.globalpayments.example;
+
+import com.google.gson.stream.JsonWriter;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Transactions Endpoint
+ *
+ * GET /transactions - Charge history from the transaction ledger, newest first
+ *                     - paymentMethodId: only charges for this payment method
+ *                     - from / to: recorded time range (ISO local date-time or epoch millis)
+ *                     - cursor: nextCursor from the previous page
+ *                     - limit: page size (default 50, max 500)
+ */
+@WebServlet(name = "TransactionsServlet", urlPatterns = {"/transactions"}, loadOnStartup = 1)
+public class TransactionsServlet extends HttpServlet {
+
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        handleCORS(response);
+
+        String paymentMethodId = request.getParameter("paymentMethodId");
+        Long from;
+        Long to;
+        Long cursor;
+        int limit;
+        try {
+            from = parseTime(request.getParameter("from"));
+            to = parseTime(request.getParameter("to"));
+            cursor = parseLong(request.getParameter("cursor"));
+            Long requestedLimit = parseLong(request.getParameter("limit"));
+            limit = requestedLimit != null ? (int) Math.max(1, Math.min(MAX_LIMIT, requestedLimit)) : DEFAULT_LIMIT;
+        } catch (IllegalArgumentException e) {
+            sendErrorResponse(response, 400, e.getMessage(), "VALIDATION_ERROR");
+            return;
+        }
+
+        // Entries are copied from the ledger segments straight into the response
+        JsonWriter writer = new JsonWriter(response.getWriter());
+        try {
+            writer.beginObject();
+            writer.name("success").value(true);
+            writer.name("data").beginObject();
+            writer.name("transactions").beginArray();
+            Long nextCursor = TransactionLedger.query(paymentMethodId, from, to, cursor, limit, entry -> {
+                try {
+                    writer.jsonValue(entry);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            writer.endArray();
+            writer.name("nextCursor").value(nextCursor);
+            writer.endObject();
+            writer.name("message").value("Transactions retrieved successfully");
+            writer.name("timestamp").value(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            writer.endObject();
+            writer.flush();
+        } catch (Exception e) {
+            // The response may already be partly written, so it cannot be turned into an error response
+            System.err.println("Error streaming transactions: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void doOptions(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        handleCORS(response);
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    private void handleCORS(HttpServletResponse response) {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.setHeader("Access-Control-Allow-Methods", "GET, OPTIONS");
+        response.setHeader("Access-Control-Allow-Headers", "Content-Type, Authorization, X-Request-ID");
+    }
+
+    private void sendErrorResponse(HttpServletResponse response, int statusCode, String message, String errorCode)
+            throws IOException {
+        ApiResponse.sendError(response, statusCode, message, errorCode);
+    }
+
+    private static Long parseTime(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            try {
+                return LocalDateTime.parse(value.trim(), DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ex) {
+                throw new IllegalArgumentException("Invalid time: " + value);
+            }
+        }
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.globalpayments.example;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory cache with time-to-live expiry and single-flight loading.
+ *
+ * Concurrent lookups of the same missing key share one loader call; failed
+ * loads are never cached. When the cache grows past its maximum size, expired
+ * entries are dropped first and then the entries closest to expiry.
+ */
+public class TtlCache<K, V> {
+
+    /**
+     * Loads a value on cache miss
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws Exception;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TtlCache(String name, int maxSize, long ttlMillis) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new IllegalArgumentException("Cache size and TTL must be positive");
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    /**
+     * Return the cached value for key, or load it once for all concurrent callers
+     */
+    public V get(K key, Loader<V> loader) throws Exception {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<V> pending = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        misses.increment();
+        try {
+            // A load for this key may have completed between the lookup above and claiming the slot
+            Entry<V> raced = entries.get(key);
+            if (raced != null && raced.expiresAt - System.nanoTime() > 0) {
+                pending.complete(raced.value);
+                return raced.value;
+            }
+
+            V value = loader.load();
+            if (value != null) {
+                put(key, value);
+            }
+            pending.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Errors too: waiters block on pending with no timeout, so it must always complete
+            loadFailures.increment();
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    /**
+     * Return the cached value if present and not expired, otherwise null
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Store a value, evicting if the cache exceeds its maximum size
+     */
+    public void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Snapshot of cache counters for diagnostics
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum() + coalesced.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("name", name);
+        stats.put("size", entries.size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlNanos / 1_000_000_000L);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("hitRatio", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        return stats;
+    }
+
+    private V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Drop expired entries, then trim the entries nearest expiry down to 90% of capacity
+     * so that a full cache does not rescan on every insert
+     */
+    private synchronized void evict() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().expiresAt - now <= 0) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+
+        int target = Math.max(1, maxSize - maxSize / 10);
+        int excess = entries.size() - target;
+        if (excess <= 0) {
+            return;
+        }
+
+        List<Map.Entry<K, Entry<V>>> byExpiry = new ArrayList<>(entries.entrySet());
+        byExpiry.sort(Comparator.comparingLong(e -> e.getValue().expiresAt - now));
+        for (int i = 0; i < excess && i < byExpiry.size(); i++) {
+            Map.Entry<K, Entry<V>> e = byExpiry.get(i);
+            if (entries.remove(e.getKey(), e.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+}
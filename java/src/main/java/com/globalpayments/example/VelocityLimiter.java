@@ -0,0 +1,291 @@
+package com.globalpayments.example;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory velocity limits for charges
+ *
+ * Caps the number and total amount of charge attempts per payment method and per
+ * client (remote address) over a rolling VELOCITY_WINDOW_SECONDS window. Each key
+ * has a ring of time buckets updated with atomic operations only, so a check is a
+ * handful of CAS/add operations and never takes a lock or touches storage.
+ *
+ * Payment method and client windows live in separate maps, each bounded to
+ * VELOCITY_MAX_KEYS, so a client rotating through source addresses can only crowd
+ * out other clients and never resets a payment method's window. A window that has
+ * seen no charge for a whole window length is idle and can be dropped, since it
+ * holds nothing that still counts.
+ *
+ * A charge is added first and rolled back if it pushes a window over a limit, so
+ * concurrent requests cannot jointly slip past a limit between check and update.
+ */
+public final class VelocityLimiter {
+
+    public static final String PAYMENT_METHOD_COUNT = "VELOCITY_LIMIT_PAYMENT_METHOD_COUNT";
+    public static final String PAYMENT_METHOD_AMOUNT = "VELOCITY_LIMIT_PAYMENT_METHOD_AMOUNT";
+    public static final String CLIENT_COUNT = "VELOCITY_LIMIT_CLIENT_COUNT";
+    public static final String CLIENT_AMOUNT = "VELOCITY_LIMIT_CLIENT_AMOUNT";
+
+    private static final int BUCKETS = 10;
+    private static final int SWEEP_BATCH = 64;
+
+    private static final KeySpace paymentMethods = new KeySpace();
+    private static final KeySpace clients = new KeySpace();
+
+    private static final ConcurrentHashMap<String, LongAdder> rejections = new ConcurrentHashMap<>();
+    private static final LongAdder checks = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+    private static final LongAdder overflowed = new LongAdder();
+
+    /**
+     * Result of a velocity check: null reason means the charge is allowed
+     */
+    public static final class Decision {
+        public final String reason;
+        public final long retryAfterSeconds;
+
+        private Decision(String reason, long retryAfterSeconds) {
+            this.reason = reason;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public boolean isAllowed() {
+            return reason == null;
+        }
+    }
+
+    private static final Decision ALLOWED = new Decision(null, 0);
+
+    /**
+     * Sliding window of charge counts and amounts (in minor units) split into time buckets
+     */
+    private static final class Window {
+        final AtomicLongArray epochs = new AtomicLongArray(BUCKETS);
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        final AtomicLongArray amounts = new AtomicLongArray(BUCKETS);
+        volatile long lastUsedEpoch;
+
+        Window(long epoch) {
+            // Not idle before its first charge is added
+            this.lastUsedEpoch = epoch;
+        }
+
+        boolean isIdle(long epoch) {
+            return epoch - lastUsedEpoch >= BUCKETS;
+        }
+
+        /**
+         * Add to the current bucket, resetting it first if it still holds an older epoch
+         */
+        int add(long epoch, long count, long amount) {
+            int index = (int) (epoch % BUCKETS);
+            long bucketEpoch = epochs.get(index);
+            // An add racing with the reset of a recycled bucket can be lost; that only happens
+            // at a bucket boundary and only ever loosens a limit
+            if (bucketEpoch != epoch && epochs.compareAndSet(index, bucketEpoch, epoch)) {
+                counts.set(index, 0);
+                amounts.set(index, 0);
+            }
+            counts.addAndGet(index, count);
+            amounts.addAndGet(index, amount);
+            lastUsedEpoch = epoch;
+            return index;
+        }
+
+        void rollback(int index, long count, long amount) {
+            counts.addAndGet(index, -count);
+            amounts.addAndGet(index, -amount);
+        }
+
+        long count(long epoch) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (epoch - epochs.get(i) < BUCKETS) {
+                    total += counts.get(i);
+                }
+            }
+            return total;
+        }
+
+        long amount(long epoch) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                if (epoch - epochs.get(i) < BUCKETS) {
+                    total += amounts.get(i);
+                }
+            }
+            return total;
+        }
+    }
+
+    private VelocityLimiter() {
+    }
+
+    /**
+     * Whether limits apply to a request in the given mode
+     */
+    public static boolean appliesTo(RequestMode.Mode mode) {
+        AppConfig config = AppConfig.get();
+        if (!config.getBoolean("VELOCITY_LIMITS_ENABLED", true)) {
+            return false;
+        }
+        return mode == RequestMode.Mode.LIVE || config.getBoolean("VELOCITY_APPLY_TO_MOCK", false);
+    }
+
+    /**
+     * Count a charge attempt against the payment method and client windows, rejecting it if either is over its limit
+     */
+    public static Decision check(String paymentMethodId, String clientId, BigDecimal amount) {
+        checks.increment();
+        AppConfig config = AppConfig.get();
+        long windowMillis = Math.max(BUCKETS, config.getLong("VELOCITY_WINDOW_SECONDS", 60) * 1000);
+        long bucketMillis = windowMillis / BUCKETS;
+        long epoch = System.currentTimeMillis() / bucketMillis;
+        long minorUnits = amount.movePointRight(2).longValue();
+
+        Window paymentMethodWindow = paymentMethods.window(paymentMethodId, epoch, config);
+        int paymentMethodIndex = paymentMethodWindow.add(epoch, 1, minorUnits);
+        String reason = overLimit(paymentMethodWindow, epoch,
+                config.getLong("VELOCITY_PM_MAX_CHARGES", 5),
+                config.getLong("VELOCITY_PM_MAX_AMOUNT", 500) * 100,
+                PAYMENT_METHOD_COUNT, PAYMENT_METHOD_AMOUNT);
+        if (reason != null) {
+            paymentMethodWindow.rollback(paymentMethodIndex, 1, minorUnits);
+            return reject(reason, bucketMillis);
+        }
+
+        Window clientWindow = clients.window(clientId, epoch, config);
+        int clientIndex = clientWindow.add(epoch, 1, minorUnits);
+        reason = overLimit(clientWindow, epoch,
+                config.getLong("VELOCITY_CLIENT_MAX_CHARGES", 30),
+                config.getLong("VELOCITY_CLIENT_MAX_AMOUNT", 2000) * 100,
+                CLIENT_COUNT, CLIENT_AMOUNT);
+        if (reason != null) {
+            clientWindow.rollback(clientIndex, 1, minorUnits);
+            paymentMethodWindow.rollback(paymentMethodIndex, 1, minorUnits);
+            return reject(reason, bucketMillis);
+        }
+        return ALLOWED;
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Long> rejected = new HashMap<>();
+        rejections.forEach((reason, count) -> rejected.put(reason, count.sum()));
+        stats.put("trackedPaymentMethods", paymentMethods.size.get());
+        stats.put("trackedClients", clients.size.get());
+        stats.put("checks", checks.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("overflowed", overflowed.sum());
+        stats.put("rejections", rejected);
+        return stats;
+    }
+
+    private static String overLimit(Window window, long epoch, long maxCount, long maxAmount,
+                                    String countReason, String amountReason) {
+        if (maxCount > 0 && window.count(epoch) > maxCount) {
+            return countReason;
+        }
+        if (maxAmount > 0 && window.amount(epoch) > maxAmount) {
+            return amountReason;
+        }
+        return null;
+    }
+
+    private static Decision reject(String reason, long bucketMillis) {
+        rejections.computeIfAbsent(reason, k -> new LongAdder()).increment();
+        // The oldest bucket leaves the window at the next bucket boundary
+        long retryAfterMillis = bucketMillis - (System.currentTimeMillis() % bucketMillis);
+        return new Decision(reason, Math.max(1, (retryAfterMillis + 999) / 1000));
+    }
+
+    /**
+     * Windows of one kind of key, bounded to VELOCITY_MAX_KEYS
+     *
+     * At the bound, each new key first sweeps the next SWEEP_BATCH windows for idle
+     * ones; if there is still no room it shares one overflow window with every other
+     * key that could not get its own. Live windows are never evicted, and the shared
+     * window makes the limit stricter, not looser, for the keys that land in it.
+     */
+    private static final class KeySpace {
+        final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+        // Windows in the map, reserved before inserting so the bound is never exceeded
+        final AtomicLong size = new AtomicLong();
+        final AtomicBoolean sweeping = new AtomicBoolean();
+        // Where the next sweep resumes; guarded by sweeping
+        Iterator<Window> sweepCursor;
+        volatile Window overflow;
+
+        Window window(String key, long epoch, AppConfig config) {
+            Window window = windows.get(key);
+            if (window != null) {
+                return window;
+            }
+            long maxKeys = Math.max(1, config.getLong("VELOCITY_MAX_KEYS", 100000));
+            if (size.get() >= maxKeys) {
+                sweep(epoch);
+            }
+            if (size.incrementAndGet() > maxKeys) {
+                size.decrementAndGet();
+                overflowed.increment();
+                return overflowWindow(epoch);
+            }
+            Window created = new Window(epoch);
+            Window existing = windows.putIfAbsent(key, created);
+            if (existing != null) {
+                size.decrementAndGet();
+                return existing;
+            }
+            return created;
+        }
+
+        private Window overflowWindow(long epoch) {
+            Window shared = overflow;
+            if (shared == null) {
+                synchronized (this) {
+                    shared = overflow;
+                    if (shared == null) {
+                        shared = new Window(epoch);
+                        overflow = shared;
+                    }
+                }
+            }
+            return shared;
+        }
+
+        /**
+         * Drop idle windows among the next SWEEP_BATCH, resuming where the previous
+         * sweep stopped; one thread sweeps at a time
+         */
+        private void sweep(long epoch) {
+            if (!sweeping.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                for (int i = 0; i < SWEEP_BATCH; i++) {
+                    if (sweepCursor == null || !sweepCursor.hasNext()) {
+                        sweepCursor = windows.values().iterator();
+                        if (!sweepCursor.hasNext()) {
+                            return;
+                        }
+                    }
+                    if (sweepCursor.next().isIdle(epoch)) {
+                        sweepCursor.remove();
+                        size.decrementAndGet();
+                        evictions.increment();
+                    }
+                }
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+}
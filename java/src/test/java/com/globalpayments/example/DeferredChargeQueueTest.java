@@ -0,0 +1,74 @@
+package com.globalpayments.example;
+
+import com.global.api.entities.exceptions.GatewayTimeoutException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs with DEFERRED_CHARGES_ENABLED set by the surefire configuration in pom.xml
+ */
+class DeferredChargeQueueTest {
+
+    private static final long COMPLETION_TIMEOUT_MILLIS = 10_000;
+
+    @BeforeAll
+    static void startQueue() {
+        DeferredChargeQueue.start();
+        assertTrue(DeferredChargeQueue.isRunning(), "deferred charge queue did not start");
+    }
+
+    @AfterAll
+    static void stopQueue() {
+        DeferredChargeQueue.stop();
+        DeferredChargeQueue.gateway = PaymentUtils::processPaymentWithSDK;
+    }
+
+    @Test
+    void replayAfterTimeoutReusesTheLiveAttemptsIdempotencyKey() throws Exception {
+        List<String> keys = new CopyOnWriteArrayList<>();
+        DeferredChargeQueue.gateway = (token, amount, currency, networkTransactionId, idempotencyKey) -> {
+            keys.add(idempotencyKey);
+            if (keys.size() == 1) {
+                // The gateway may still have charged the card
+                throw new GatewayTimeoutException();
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("transactionId", "txn_replayed");
+            return result;
+        };
+
+        Map<String, Object> card = new HashMap<>();
+        card.put("storedPaymentToken", "tok_deferred_test");
+        card.put("cardBrand", "visa");
+        card.put("last4", "4242");
+        String paymentMethodId = (String) JsonStorage.addPaymentMethod(card).get("id");
+
+        // No client key: the queue has to make one up before the live attempt
+        DeferredChargeQueue.Outcome outcome = DeferredChargeQueue.chargeOrDefer(paymentMethodId, "tok_deferred_test",
+                null, new BigDecimal("25.00"), "USD", null);
+        assertTrue(outcome.isDeferred(), "a timed-out charge should be deferred");
+
+        DeferredChargeQueue.DeferredCharge charge = outcome.deferred;
+        long deadline = System.currentTimeMillis() + COMPLETION_TIMEOUT_MILLIS;
+        while (!DeferredChargeQueue.STATUS_COMPLETED.equals(charge.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(DeferredChargeQueue.STATUS_COMPLETED, charge.getStatus());
+        assertEquals(2, keys.size(), "one live attempt and one replay");
+        assertNotNull(keys.get(0));
+        assertEquals(keys.get(0), keys.get(1), "the replay must reuse the live attempt's idempotency key");
+        assertEquals(keys.get(0), charge.toMap().get("idempotencyKey"));
+    }
+}